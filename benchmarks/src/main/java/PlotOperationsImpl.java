@@ -0,0 +1,97 @@
+import benchmarks.PlotOperations;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/* Реализация измеряемых операций (см. benchmarks.PlotOperations).
+ * Находится в пакете по умолчанию, чтобы обращаться к классам приложения,
+ * в том числе к защищённым методам рисования слоёв GraphicsDisplay.
+ */
+public class PlotOperationsImpl implements PlotOperations {
+    private PointSeries series;
+    private GraphicsDisplay display;
+
+    public void prepare(int points, int width, int height) {
+        // Упорядоченная по X синусоида с шумом; начальное значение генератора постоянно,
+        // чтобы данные совпадали от запуска к запуску
+        SplittableRandom random = new SplittableRandom(42);
+        double[] xs = new double[points];
+        double[] ys = new double[points];
+        for (int i = 0; i < points; i++) {
+            xs[i] = i * 0.01;
+            ys[i] = 100 * Math.sin(i * 1e-4) + random.nextDouble(-5, 5);
+        }
+        series = new PointSeries(xs, ys, points);
+        series.summary();
+        series.pyramid();
+        series.markerClasses();
+        display = new GraphicsDisplay();
+        display.setSize(width, height);
+        display.setLayerCacheEnabled(false);
+        display.showGraphics(series);
+        // Первое рисование вычисляет видимую область и масштаб, которые используют методы слоёв
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D canvas = image.createGraphics();
+        try {
+            display.paint(canvas);
+        } finally {
+            canvas.dispose();
+        }
+    }
+
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            double[] xs = series.xs();
+            double[] ys = series.ys();
+            for (int i = 0; i < series.size(); i++) {
+                out.writeDouble(xs[i]);
+                out.writeDouble(ys[i]);
+            }
+        }
+    }
+
+    public Object load(File file) throws IOException {
+        PointSeries loaded = GraphicsFileLoader.load(file);
+        loaded.summary();
+        loaded.pyramid();
+        loaded.markerClasses();
+        loaded.statistics();
+        return loaded;
+    }
+
+    public Object scanBounds() {
+        return SeriesSummary.compute(series.xs(), series.ys(), series.size());
+    }
+
+    public Object computeStatistics() {
+        return SeriesStatistics.compute(series.xs(), series.ys(), series.size());
+    }
+
+    public void paintGraphics(Graphics2D canvas) {
+        display.paintGraphics(canvas);
+    }
+
+    public void paintMarkers(Graphics2D canvas) {
+        display.paintMarkers(canvas);
+    }
+
+    public void paintGrid(Graphics2D canvas) {
+        display.paintGrid(canvas);
+    }
+
+    public int countEvenDigits() {
+        double[] ys = series.ys();
+        int count = 0;
+        for (int i = 0; i < series.size(); i++) {
+            if (MarkerClassification.hasOnlyEvenDigits(ys[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,33 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Просмотр всех точек: вычисление границ, статистики и проверка цифр Y для раскраски маркеров
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class AnalysisBenchmark {
+    @Benchmark
+    public Object scanBounds(SyntheticSeries series) {
+        return series.operations.scanBounds();
+    }
+
+    @Benchmark
+    public Object statistics(SyntheticSeries series) {
+        return series.operations.computeStatistics();
+    }
+
+    @Benchmark
+    public int hasOnlyEvenDigits(SyntheticSeries series) {
+        return series.operations.countEvenDigits();
+    }
+}
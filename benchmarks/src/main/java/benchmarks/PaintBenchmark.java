@@ -0,0 +1,57 @@
+package benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Рисование слоёв графика в изображение вне экрана (без кэша слоёв)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class PaintBenchmark {
+    private BufferedImage image;
+    private Graphics2D canvas;
+
+    @Setup
+    public void setUp() {
+        image = new BufferedImage(SyntheticSeries.WIDTH, SyntheticSeries.HEIGHT, BufferedImage.TYPE_INT_RGB);
+        canvas = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        canvas.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintGraphics(SyntheticSeries series) {
+        series.operations.paintGraphics(canvas);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintMarkers(SyntheticSeries series) {
+        series.operations.paintMarkers(canvas);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintGrid(SyntheticSeries series) {
+        series.operations.paintGrid(canvas);
+        return image;
+    }
+}
@@ -0,0 +1,46 @@
+package benchmarks;
+
+import java.awt.Graphics2D;
+import java.io.File;
+import java.io.IOException;
+
+/* Операции приложения, время которых измеряется.
+ * Классы приложения находятся в пакете по умолчанию, а JMH требует, чтобы бенчмарки
+ * были в именованном пакете; из именованного пакета классы пакета по умолчанию
+ * недоступны. Поэтому операции реализуются классом PlotOperationsImpl в пакете
+ * по умолчанию, который создаётся по имени (см. create) и вызывается через этот интерфейс.
+ */
+public interface PlotOperations {
+    // Подготовить синтетический набор из points точек и компонент рисования размером width x height
+    void prepare(int points, int width, int height);
+
+    // Записать подготовленные точки в файл в формате приложения (пары X, Y)
+    void write(File file) throws IOException;
+
+    // Загрузить файл так же, как Main.openGraphics: чтение, сводка, пирамида, раскраска маркеров
+    Object load(File file) throws IOException;
+
+    // Просмотр точек для вычисления границ
+    Object scanBounds();
+
+    // Статистика значений Y для панели сводки (один проход)
+    Object computeStatistics();
+
+    // Рисование отдельных слоёв на холст изображения, размеры которого заданы в prepare
+    void paintGraphics(Graphics2D canvas);
+
+    void paintMarkers(Graphics2D canvas);
+
+    void paintGrid(Graphics2D canvas);
+
+    // Количество точек, Y которых состоит только из чётных цифр (проверка каждой точки заново)
+    int countEvenDigits();
+
+    static PlotOperations create() {
+        try {
+            return (PlotOperations) Class.forName("PlotOperationsImpl").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Не найдена реализация операций PlotOperationsImpl", ex);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/* Синтетический набор точек заданного размера и компонент рисования, настроенный на него.
+ * Общее состояние всех бенчмарков; готовится один раз на запуск (trial).
+ */
+@State(Scope.Benchmark)
+public class SyntheticSeries {
+    // Размеры изображения - как у окна приложения по умолчанию
+    public static final int WIDTH = 800;
+    public static final int HEIGHT = 600;
+
+    @Param({"1000", "100000", "1000000", "10000000", "50000000"})
+    public int points;
+
+    public PlotOperations operations;
+
+    @Setup
+    public void setUp() {
+        operations = PlotOperations.create();
+        operations.prepare(points, WIDTH, HEIGHT);
+    }
+}
@@ -0,0 +1,281 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/* Пакетное построение графиков без окна: каждый файл с точками превращается в PNG.
+ * Рисование выполняется тем же компонентом GraphicsDisplay, что и в окне приложения,
+ * но на холсте изображения в памяти. Файлы обрабатываются параллельно (по умолчанию
+ * столько потоков, сколько ядер процессора); одновременно в памяти держится не больше
+ * заданного объёма данных и изображений.
+ *
+ * Запуск: java -Djava.awt.headless=true BatchRenderer [параметры] файл-или-каталог...
+ * (или java Main --batch [параметры] ...)
+ */
+public class BatchRenderer {
+    // Размеры изображения по умолчанию - как у окна приложения
+    private static final int DEFAULT_WIDTH = 800;
+    private static final int DEFAULT_HEIGHT = 600;
+    // Единица учёта памяти - килобайт (чтобы бюджет в несколько гигабайт помещался в int)
+    private static final int MEMORY_UNIT = 1024;
+
+    // Параметры построения
+    private int width = DEFAULT_WIDTH;
+    private int height = DEFAULT_HEIGHT;
+    private boolean showAxis = true;
+    private boolean showGrid = false;
+    private boolean showMarkers = true;
+    private boolean rotate = false;
+    private Decimator.Mode decimationMode = Decimator.Mode.M4;
+    private File outputDirectory = null;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    // Бюджет памяти под одновременно обрабатываемые файлы, байт
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+    private final List<File> inputs = new ArrayList<>();
+
+    // Бюджет памяти в единицах учёта и семафор, выдающий его потокам
+    private int memoryUnits;
+    private Semaphore memory;
+    // Компонент рисования для каждого потока (компонент не потокобезопасен)
+    private final ThreadLocal<GraphicsDisplay> displays = ThreadLocal.withInitial(this::createDisplay);
+    private final AtomicInteger rendered = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        BatchRenderer renderer = new BatchRenderer();
+        try {
+            renderer.parseArguments(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+        List<File> files = renderer.collectFiles();
+        if (files.isEmpty()) {
+            System.err.println("Не найдено ни одного файла с точками");
+            System.exit(2);
+        }
+        int failures = renderer.render(files);
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void printUsage() {
+        System.err.println("Использование: BatchRenderer [параметры] файл-или-каталог...");
+        System.err.println("  -o каталог       каталог для изображений (по умолчанию - рядом с файлами)");
+        System.err.println("  -w ширина        ширина изображения, по умолчанию " + DEFAULT_WIDTH);
+        System.err.println("  -h высота        высота изображения, по умолчанию " + DEFAULT_HEIGHT);
+        System.err.println("  --grid           показать сетку");
+        System.err.println("  --rotate         повернуть оси");
+        System.err.println("  --no-axis        не показывать оси");
+        System.err.println("  --no-markers     не показывать маркеры");
+        System.err.println("  --lttb           сглаживающее прореживание точек");
+        System.err.println("  --threads N      количество потоков, по умолчанию - по числу ядер");
+        System.err.println("  --memory МБ      объём памяти под одновременно обрабатываемые файлы");
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--batch":
+                    // Ключ, по которому Main передаёт управление пакетному режиму
+                    break;
+                case "-o":
+                    outputDirectory = new File(value(args, ++i, arg));
+                    break;
+                case "-w":
+                    width = positive(value(args, ++i, arg), arg);
+                    break;
+                case "-h":
+                    height = positive(value(args, ++i, arg), arg);
+                    break;
+                case "--grid":
+                    showGrid = true;
+                    break;
+                case "--rotate":
+                    rotate = true;
+                    break;
+                case "--no-axis":
+                    showAxis = false;
+                    break;
+                case "--no-markers":
+                    showMarkers = false;
+                    break;
+                case "--lttb":
+                    decimationMode = Decimator.Mode.LTTB;
+                    break;
+                case "--threads":
+                    threads = positive(value(args, ++i, arg), arg);
+                    break;
+                case "--memory":
+                    memoryBudget = positive(value(args, ++i, arg), arg) * 1024L * 1024L;
+                    break;
+                default:
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+                    }
+                    inputs.add(new File(arg));
+            }
+        }
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("Не указаны файлы или каталоги");
+        }
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Не указано значение параметра " + option);
+        }
+        return args[index];
+    }
+
+    private static int positive(String value, String option) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException ex) {
+            // Сообщение об ошибке формируется ниже
+        }
+        throw new IllegalArgumentException("Значение параметра " + option + " должно быть положительным целым: " + value);
+    }
+
+    // Список файлов: указанные файлы и все файлы с точками указанных каталогов (без вложенных), по алфавиту
+    private List<File> collectFiles() {
+        List<File> files = new ArrayList<>();
+        for (File input : inputs) {
+            if (input.isDirectory()) {
+                File[] children = input.listFiles(GraphicsFileLoader::isDataFile);
+                if (children != null) {
+                    Arrays.sort(children);
+                    for (File child : children) {
+                        // Уже построенные изображения не считаются файлами с точками (файлы сводок
+                        // отброшены GraphicsFileLoader.isDataFile)
+                        if (!child.getName().endsWith(".png")) {
+                            files.add(child);
+                        }
+                    }
+                }
+            } else {
+                files.add(input);
+            }
+        }
+        return files;
+    }
+
+    // Построить изображения для всех файлов; возвращает количество неудач
+    private int render(List<File> files) {
+        if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            System.err.println("Не удалось создать каталог " + outputDirectory);
+            return files.size();
+        }
+        memoryUnits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / MEMORY_UNIT));
+        memory = new Semaphore(memoryUnits);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        List<Future<?>> tasks = new ArrayList<>();
+        for (File file : files) {
+            tasks.add(executor.submit(() -> renderFile(file)));
+        }
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (Exception ex) {
+                // Ошибки отдельных файлов уже обработаны в renderFile
+            }
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int cores = Math.min(threads, Runtime.getRuntime().availableProcessors());
+        double filesPerSecond = rendered.get() / seconds;
+        System.out.printf("Построено изображений: %d, ошибок: %d, время: %.2f с%n",
+                rendered.get(), failed.get(), seconds);
+        System.out.printf("Производительность: %.2f файлов/с, %.2f файлов/с на ядро (потоков: %d, ядер: %d)%n",
+                filesPerSecond, filesPerSecond / cores, threads, cores);
+        return failed.get();
+    }
+
+    private void renderFile(File file) {
+        int units = memoryUnits(file);
+        try {
+            memory.acquire(units);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            PointSeries series = GraphicsFileLoader.load(file);
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D canvas = image.createGraphics();
+            try {
+                GraphicsDisplay display = displays.get();
+                display.showGraphics(series);
+                display.paint(canvas);
+                // Не держать ссылку на данные после построения
+                display.clearGraphics();
+            } finally {
+                canvas.dispose();
+            }
+            File directory = outputDirectory != null ? outputDirectory : file.getAbsoluteFile().getParentFile();
+            ImageIO.write(image, "png", new File(directory, file.getName() + ".png"));
+            rendered.incrementAndGet();
+        } catch (IOException | RuntimeException ex) {
+            failed.incrementAndGet();
+            System.err.println(file + ": " + ex.getMessage());
+        } finally {
+            memory.release(units);
+        }
+    }
+
+    /* Оценка памяти для обработки файла: массивы координат занимают столько же, сколько файл,
+     * пирамида и раскраска маркеров - около восьмой части, плюс само изображение.
+     * Для сжатого контейнера (PlotContainer) размер массивов берётся из заголовка.
+     * Файл больше всего бюджета обрабатывается в одиночку.
+     */
+    private int memoryUnits(File file) {
+        long data = file.length();
+        try {
+            if (PlotContainer.isContainer(file)) {
+                data = (long) PlotContainer.readHeader(file).getPointCount() * GraphicsFileLoader.PAIR_BYTES;
+            }
+        } catch (IOException ex) {
+            // Ошибка будет выдана при загрузке файла
+        }
+        long bytes = data + data / 8 + 4L * width * height;
+        return (int) Math.min(memoryUnits, Math.max(1, bytes / MEMORY_UNIT));
+    }
+
+    private GraphicsDisplay createDisplay() {
+        GraphicsDisplay display = new GraphicsDisplay();
+        display.setSize(width, height);
+        display.setShowAxis(showAxis);
+        display.setShowGrid(showGrid);
+        display.setShowMarkers(showMarkers);
+        display.setRotate(rotate);
+        display.setDecimationMode(decimationMode);
+        // Каждый слой рисуется один раз, поэтому кэш только занимал бы память
+        display.setLayerCacheEnabled(false);
+        return display;
+    }
+}
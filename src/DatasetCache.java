@@ -0,0 +1,242 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* Кэш недавно открытых наборов данных в памяти, чтобы при возврате к недавнему файлу
+ * график показывался сразу, без повторного чтения. Наборы хранятся в порядке последнего
+ * обращения; суммарный размер (оценка по массивам набора, его пирамиды, маски маркеров
+ * и сетки поиска) ограничен бюджетом, и при превышении вытесняются давно не открывавшиеся
+ * наборы. Набор больше бюджета не кэшируется. Если включено мягкое вытеснение, вытесненные
+ * наборы ещё хранятся по мягким ссылкам (SoftReference) и возвращаются, пока сборщик мусора
+ * не освободит их при нехватке памяти.
+ * Запись кэша привязана к пути, размеру и времени изменения файла: изменённый файл читается заново.
+ */
+public class DatasetCache {
+    // Набор данных файла: загруженный в память или открытый без загрузки
+    public static class Dataset {
+        private final PointSeries series;
+        private final OutOfCoreSeries source;
+        private final long bytes;
+        // Размер и время изменения файла, когда набор был помещён в кэш
+        private final long length;
+        private final long modified;
+
+        private Dataset(PointSeries series, OutOfCoreSeries source, long bytes, long length, long modified) {
+            this.series = series;
+            this.source = source;
+            this.bytes = bytes;
+            this.length = length;
+            this.modified = modified;
+        }
+
+        // Набор, загруженный в память (null для файла, открытого без загрузки)
+        public PointSeries getSeries() {
+            return series;
+        }
+
+        // Файл, открытый без загрузки (null для набора в памяти)
+        public OutOfCoreSeries getSource() {
+            return source;
+        }
+
+        // Оценка занимаемой набором памяти в байтах
+        public long getBytes() {
+            return bytes;
+        }
+
+        private boolean matches(File file) {
+            return file.length() == length && file.lastModified() == modified;
+        }
+    }
+
+    // Наборы по путям файлов в порядке обращения (первый - самый давний)
+    private final LinkedHashMap<String, Dataset> datasets = new LinkedHashMap<>(16, 0.75f, true);
+    // Вытесненные наборы при мягком вытеснении
+    private final LinkedHashMap<String, SoftReference<Dataset>> evicted = new LinkedHashMap<>();
+    private long budget;
+    private boolean softEviction;
+    // Суммарный размер наборов в datasets
+    private long bytes = 0;
+    // Счётчики обращений и вытеснений
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public DatasetCache(long budget) {
+        this.budget = budget;
+    }
+
+    /* Набор файла из кэша; null, если его нет, он освобождён сборщиком мусора
+     * или файл изменился после того, как набор был помещён в кэш.
+     */
+    public synchronized Dataset get(File file) {
+        String key = keyOf(file);
+        Dataset dataset = datasets.get(key);
+        if (dataset == null) {
+            SoftReference<Dataset> reference = evicted.remove(key);
+            dataset = reference != null ? reference.get() : null;
+            if (dataset != null && dataset.matches(file)) {
+                // Набор, ещё не освобождённый сборщиком мусора, возвращается в кэш
+                insert(key, dataset);
+            }
+        }
+        if (dataset == null || !dataset.matches(file)) {
+            remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return dataset;
+    }
+
+    // Истина, если набор файла есть в кэше (без учёта в счётчиках и без изменения порядка)
+    public synchronized boolean contains(File file) {
+        String key = keyOf(file);
+        for (Map.Entry<String, Dataset> entry : datasets.entrySet()) {
+            if (entry.getKey().equals(key)) {
+                return entry.getValue().matches(file);
+            }
+        }
+        SoftReference<Dataset> reference = evicted.get(key);
+        Dataset dataset = reference != null ? reference.get() : null;
+        return dataset != null && dataset.matches(file);
+    }
+
+    // Поместить в кэш набор, загруженный из файла в память; false, если набор больше бюджета
+    public synchronized boolean put(File file, PointSeries series) {
+        return put(file, new Dataset(series, null, bytesOf(series), file.length(), file.lastModified()));
+    }
+
+    // Поместить в кэш файл, открытый без загрузки в память (в куче у него только сведения о частях)
+    public synchronized boolean put(File file, OutOfCoreSeries source) {
+        return put(file, new Dataset(null, source, bytesOf(source), file.length(), file.lastModified()));
+    }
+
+    private boolean put(File file, Dataset dataset) {
+        String key = keyOf(file);
+        remove(key);
+        if (dataset.bytes > budget) {
+            return false;
+        }
+        insert(key, dataset);
+        return true;
+    }
+
+    private void insert(String key, Dataset dataset) {
+        datasets.put(key, dataset);
+        bytes += dataset.bytes;
+        evict();
+    }
+
+    private void remove(String key) {
+        Dataset removed = datasets.remove(key);
+        if (removed != null) {
+            bytes -= removed.bytes;
+        }
+        evicted.remove(key);
+    }
+
+    // Вытеснять самые давние наборы, пока суммарный размер больше бюджета
+    private void evict() {
+        Iterator<Map.Entry<String, Dataset>> iterator = datasets.entrySet().iterator();
+        while (bytes > budget && iterator.hasNext()) {
+            Map.Entry<String, Dataset> entry = iterator.next();
+            iterator.remove();
+            bytes -= entry.getValue().bytes;
+            evictions++;
+            if (softEviction) {
+                evicted.put(entry.getKey(), new SoftReference<>(entry.getValue()));
+            }
+        }
+    }
+
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    // Изменить бюджет; при уменьшении лишние наборы вытесняются сразу
+    public synchronized void setBudget(long budget) {
+        this.budget = budget;
+        evict();
+    }
+
+    public synchronized boolean isSoftEviction() {
+        return softEviction;
+    }
+
+    // Включить или выключить хранение вытесненных наборов по мягким ссылкам
+    public synchronized void setSoftEviction(boolean softEviction) {
+        this.softEviction = softEviction;
+        if (!softEviction) {
+            evicted.clear();
+        }
+    }
+
+    // Убрать все наборы (счётчики сохраняются)
+    public synchronized void clear() {
+        datasets.clear();
+        evicted.clear();
+        bytes = 0;
+    }
+
+    // Количество наборов в кэше (без вытесненных)
+    public synchronized int size() {
+        return datasets.size();
+    }
+
+    // Количество вытесненных наборов, ещё не освобождённых сборщиком мусора
+    public synchronized int softSize() {
+        evicted.values().removeIf(reference -> reference.get() == null);
+        return evicted.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    // Ключ файла - канонический путь (один файл, открытый по разным путям, хранится один раз)
+    private static String keyOf(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException ex) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /* Оценка памяти набора в байтах: массивы координат, пирамида, маска маркеров и, для
+     * неупорядоченных данных, сетка поиска (индекс на точку и начала ячеек).
+     * Вычисленные позже пирамида и сетка учитываются по их ожидаемому размеру.
+     */
+    public static long bytesOf(PointSeries series) {
+        long size = series.size();
+        long total = 8L * series.xs().length + 8L * series.ys().length;
+        total += (size + 63) / 64 * 8;
+        if (series.isSortedByX()) {
+            // Пирамида: по два индекса на корзину, уровни вместе - около 4/3 нулевого уровня
+            total += (size + MinMaxPyramid.BASE_BUCKET - 1) / MinMaxPyramid.BASE_BUCKET * 2 * 4 * 4 / 3;
+        } else {
+            total += 4 * size + 4 * (size / SpatialGrid.POINTS_PER_CELL + 1);
+        }
+        return total;
+    }
+
+    // Оценка памяти файла, открытого без загрузки: границы частей и обзор
+    public static long bytesOf(OutOfCoreSeries source) {
+        return 2L * 8 * source.chunks().count() + bytesOf(source.overview());
+    }
+}
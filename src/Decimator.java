@@ -0,0 +1,248 @@
+import java.util.Arrays;
+
+/* Прореживание точек графика перед построением линии.
+ * На один столбец пикселов экрана приходится не больше нескольких точек, поэтому
+ * стоимость построения и обводки линии пропорциональна ширине окна, а не числу точек.
+ * Режимы:
+ * M4   - для каждого столбца пикселов сохраняются первая, последняя, минимальная и
+ *        максимальная точки; огибающая линии на экране не меняется;
+ * LTTB - алгоритм Largest-Triangle-Three-Buckets: по одной точке на корзину,
+ *        выбранной по наибольшей площади треугольника; линия получается глаже;
+ * NONE - прореживание отключено.
+ * Для неупорядоченных по X данных столбцы не имеют смысла, поэтому вместо M4 и LTTB
+ * отбрасываются только подряд идущие точки, попадающие в один и тот же пиксел.
+ * Точки с нечисловыми координатами пропускаются.
+ */
+public class Decimator {
+    public enum Mode { NONE, M4, LTTB }
+
+    // Буферы результата; переиспользуются между перерисовками
+    private double[] outX = new double[0];
+    private double[] outY = new double[0];
+    private int outSize;
+
+    public double[] xs() {
+        return outX;
+    }
+
+    public double[] ys() {
+        return outY;
+    }
+
+    public int size() {
+        return outSize;
+    }
+
+    /* Проредить точки с индексами [from, to).
+     * originX, originY - мировые координаты левого верхнего угла области отображения,
+     * pixelsPerUnitX, pixelsPerUnitY - сколько пикселов устройства приходится на единицу длины,
+     * columns - количество столбцов пикселов, на которые ложится диапазон X.
+     * Возвращает количество точек результата.
+     */
+    public int decimate(PointSeries series, int from, int to, Mode mode,
+                        double originX, double originY,
+                        double pixelsPerUnitX, double pixelsPerUnitY, int columns) {
+        return decimate(series.xs(), series.ys(), series.isSortedByX(), from, to, mode,
+                originX, originY, pixelsPerUnitX, pixelsPerUnitY, columns);
+    }
+
+    // То же для произвольных массивов координат (например, точек, выбранных из пирамиды MinMaxPyramid)
+    public int decimate(double[] xs, double[] ys, boolean sortedByX, int from, int to, Mode mode,
+                        double originX, double originY,
+                        double pixelsPerUnitX, double pixelsPerUnitY, int columns) {
+        outSize = 0;
+        if (mode == Mode.NONE) {
+            copyFinite(xs, ys, from, to);
+        } else if (!sortedByX) {
+            dedupPixels(xs, ys, from, to, originX, originY, pixelsPerUnitX, pixelsPerUnitY);
+        } else if (mode == Mode.LTTB) {
+            lttb(xs, ys, from, to, Math.max(3, 2 * columns));
+        } else {
+            m4(xs, ys, from, to, originX, pixelsPerUnitX, columns);
+        }
+        return outSize;
+    }
+
+    private void copyFinite(double[] xs, double[] ys, int from, int to) {
+        ensureCapacity(to - from);
+        for (int i = from; i < to; i++) {
+            if (Double.isFinite(xs[i]) && Double.isFinite(ys[i])) {
+                add(xs[i], ys[i]);
+            }
+        }
+    }
+
+    private void m4(double[] xs, double[] ys, int from, int to,
+                    double originX, double pixelsPerUnitX, int columns) {
+        ensureCapacity(Math.min(to - from, 4 * (columns + 2)));
+        long currentColumn = Long.MIN_VALUE;
+        int first = -1, last = -1, min = -1, max = -1;
+        for (int i = from; i < to; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            if (!Double.isFinite(x) || !Double.isFinite(y)) {
+                continue;
+            }
+            // Точки левее и правее области отображения собираются в два крайних столбца:
+            // из них нужны только отрезки, входящие в область
+            long column = (long) Math.floor((x - originX) * pixelsPerUnitX);
+            if (column < 0) {
+                column = -1;
+            } else if (column > columns) {
+                column = columns + 1;
+            }
+            if (column != currentColumn) {
+                if (first >= 0) {
+                    flushColumn(xs, ys, first, min, max, last);
+                }
+                currentColumn = column;
+                first = last = min = max = i;
+            } else {
+                last = i;
+                if (y < ys[min]) min = i;
+                if (y > ys[max]) max = i;
+            }
+        }
+        if (first >= 0) {
+            flushColumn(xs, ys, first, min, max, last);
+        }
+    }
+
+    // Вывести точки столбца в порядке следования, без повторов
+    private void flushColumn(double[] xs, double[] ys, int first, int min, int max, int last) {
+        int low = Math.min(min, max);
+        int high = Math.max(min, max);
+        add(xs[first], ys[first]);
+        if (low != first) {
+            add(xs[low], ys[low]);
+        }
+        if (high != low && high != first) {
+            add(xs[high], ys[high]);
+        }
+        if (last != high && last != low && last != first) {
+            add(xs[last], ys[last]);
+        }
+    }
+
+    private void lttb(double[] xs, double[] ys, int from, int to, int threshold) {
+        int count = to - from;
+        if (count <= threshold) {
+            copyFinite(xs, ys, from, to);
+            return;
+        }
+        ensureCapacity(threshold);
+        // Первая и последняя точки сохраняются всегда, остальные делятся на threshold - 2 корзины
+        int selected = firstFinite(xs, ys, from, to);
+        if (selected < 0) {
+            return;
+        }
+        add(xs[selected], ys[selected]);
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int start = from + 1 + (int) (bucket * bucketSize);
+            int end = Math.min(to - 1, from + 1 + (int) ((bucket + 1) * bucketSize));
+            // Средняя точка следующей корзины - третья вершина треугольника
+            int nextStart = end;
+            int nextEnd = Math.min(to, from + 1 + (int) ((bucket + 2) * bucketSize));
+            double avgX = 0, avgY = 0;
+            int avgCount = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                if (Double.isFinite(xs[j]) && Double.isFinite(ys[j])) {
+                    avgX += xs[j];
+                    avgY += ys[j];
+                    avgCount++;
+                }
+            }
+            if (avgCount > 0) {
+                avgX /= avgCount;
+                avgY /= avgCount;
+            } else {
+                avgX = xs[selected];
+                avgY = ys[selected];
+            }
+            double ax = xs[selected];
+            double ay = ys[selected];
+            double maxArea = -1;
+            int best = -1;
+            for (int j = start; j < end; j++) {
+                if (!Double.isFinite(xs[j]) || !Double.isFinite(ys[j])) {
+                    continue;
+                }
+                double area = Math.abs((ax - avgX) * (ys[j] - ay) - (ax - xs[j]) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    best = j;
+                }
+            }
+            if (best >= 0) {
+                add(xs[best], ys[best]);
+                selected = best;
+            }
+        }
+        int lastIndex = lastFinite(xs, ys, from, to);
+        if (lastIndex > selected) {
+            add(xs[lastIndex], ys[lastIndex]);
+        }
+    }
+
+    private void dedupPixels(double[] xs, double[] ys, int from, int to, double originX, double originY,
+                             double pixelsPerUnitX, double pixelsPerUnitY) {
+        ensureCapacity(Math.min(to - from, 1024));
+        long lastCellX = Long.MIN_VALUE;
+        long lastCellY = Long.MIN_VALUE;
+        int pending = -1;
+        for (int i = from; i < to; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            if (!Double.isFinite(x) || !Double.isFinite(y)) {
+                continue;
+            }
+            long cellX = (long) Math.floor((x - originX) * pixelsPerUnitX);
+            long cellY = (long) Math.floor((originY - y) * pixelsPerUnitY);
+            if (cellX != lastCellX || cellY != lastCellY) {
+                add(x, y);
+                lastCellX = cellX;
+                lastCellY = cellY;
+                pending = -1;
+            } else {
+                pending = i;
+            }
+        }
+        // Последняя точка сохраняется, чтобы линия заканчивалась там же, где данные
+        if (pending >= 0) {
+            add(xs[pending], ys[pending]);
+        }
+    }
+
+    private static int firstFinite(double[] xs, double[] ys, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (Double.isFinite(xs[i]) && Double.isFinite(ys[i])) return i;
+        }
+        return -1;
+    }
+
+    private static int lastFinite(double[] xs, double[] ys, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (Double.isFinite(xs[i]) && Double.isFinite(ys[i])) return i;
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (outX.length < capacity) {
+            outX = new double[capacity];
+            outY = new double[capacity];
+        }
+    }
+
+    private void add(double x, double y) {
+        if (outSize == outX.length) {
+            int capacity = Math.max(16, outX.length * 2);
+            outX = Arrays.copyOf(outX, capacity);
+            outY = Arrays.copyOf(outY, capacity);
+        }
+        outX[outSize] = x;
+        outY[outSize] = y;
+        outSize++;
+    }
+}
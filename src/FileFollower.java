@@ -0,0 +1,199 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/* Слежение за файлом, в конец которого другой процесс дописывает пары (X, Y).
+ * Размер файла периодически опрашивается, и читаются только дописанные байты
+ * (неполная пара в конце файла откладывается до следующего опроса).
+ * Точки хранятся в ограниченном буфере: когда он заполняется, старейшая половина точек
+ * отбрасывается. Пока буфер не переполнен, новые точки дописываются в конец тех же массивов,
+ * поэтому набор точек продлевается методом PointSeries.extend без пересчёта старых точек.
+ * При отбрасывании и при росте буфера создаются новые массивы, и старые наборы,
+ * которые в это время может рисовать поток обработки событий, не меняются.
+ */
+public class FileFollower {
+    // Получатель новых данных; вызывается в потоке слежения
+    public interface Listener {
+        // series - все точки буфера, включая только что прочитанные
+        void appended(PointSeries series);
+        // Ошибка чтения; слежение останавливается
+        void failed(IOException ex);
+    }
+
+    // Интервал опроса размера файла, мс
+    public static final long POLL_INTERVAL = 100;
+    // Емкость буфера точек по умолчанию
+    public static final int DEFAULT_CAPACITY = 8 * 1024 * 1024;
+    // Начальный размер массивов буфера
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private final File file;
+    private final int capacity;
+    private final Listener listener;
+    private ScheduledExecutorService executor;
+    private FileChannel channel;
+    // Позиция в файле, до которой данные уже прочитаны
+    private long position;
+    // Буфер чтения (размер кратен размеру пары) и промежуточный массив для разбора чисел
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(1024 * GraphicsFileLoader.PAIR_BYTES * 64);
+    private final double[] chunk = new double[readBuffer.capacity() / GraphicsFileLoader.DOUBLE_BYTES];
+    // Массивы буфера точек и количество точек в них
+    private double[] xs;
+    private double[] ys;
+    private int size;
+    // Последний переданный получателю набор точек (null, если массивы только что заменены)
+    private PointSeries series;
+
+    public FileFollower(File file, int capacity, Listener listener) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Емкость буфера слишком мала: " + capacity);
+        }
+        this.file = file;
+        this.capacity = capacity;
+        this.listener = listener;
+    }
+
+    public FileFollower(File file, Listener listener) {
+        this(file, DEFAULT_CAPACITY, listener);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // Начать слежение; содержимое файла, уже имеющееся к этому моменту, читается первым опросом
+    public synchronized void start() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        reset();
+        // Из большого файла берутся только последние capacity точек
+        long length = channel.size() / GraphicsFileLoader.PAIR_BYTES * GraphicsFileLoader.PAIR_BYTES;
+        position = Math.max(0, length - (long) capacity * GraphicsFileLoader.PAIR_BYTES);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "file-follower " + file.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::poll, 0, POLL_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    // Остановить слежение и закрыть файл
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        closeChannel();
+    }
+
+    private void reset() {
+        xs = new double[Math.min(capacity, INITIAL_CAPACITY)];
+        ys = new double[xs.length];
+        size = 0;
+        series = null;
+    }
+
+    private synchronized void poll() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            long length = channel.size();
+            if (length < position) {
+                // Файл укорочен (например, создан заново) - начать сначала
+                reset();
+                position = 0;
+            }
+            boolean changed = false;
+            while (length - position >= GraphicsFileLoader.PAIR_BYTES) {
+                readBuffer.clear();
+                long available = (length - position) / GraphicsFileLoader.PAIR_BYTES * GraphicsFileLoader.PAIR_BYTES;
+                readBuffer.limit((int) Math.min(readBuffer.capacity(), available));
+                int read = channel.read(readBuffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                // Разбираются только полные пары; остаток будет прочитан повторно
+                int pairs = read / GraphicsFileLoader.PAIR_BYTES;
+                if (pairs == 0) {
+                    break;
+                }
+                readBuffer.flip();
+                readBuffer.limit(pairs * GraphicsFileLoader.PAIR_BYTES);
+                DoubleBuffer doubles = readBuffer.asDoubleBuffer();
+                int count = doubles.remaining();
+                doubles.get(chunk, 0, count);
+                for (int i = 0; i < count; i += 2) {
+                    add(chunk[i], chunk[i + 1]);
+                }
+                position += (long) pairs * GraphicsFileLoader.PAIR_BYTES;
+                changed = true;
+            }
+            if (changed) {
+                publish();
+            }
+        } catch (IOException ex) {
+            closeChannel();
+            if (executor != null) {
+                executor.shutdown();
+            }
+            listener.failed(ex);
+        }
+    }
+
+    private void add(double x, double y) {
+        if (size == xs.length) {
+            // Старый набор точек может рисоваться в другом потоке, поэтому массивы не меняются
+            // на месте, а заменяются новыми
+            double[] newXs;
+            double[] newYs;
+            int keep;
+            if (xs.length < capacity) {
+                newXs = new double[(int) Math.min(capacity, 2L * xs.length)];
+                keep = size;
+            } else {
+                newXs = new double[capacity];
+                keep = capacity / 2;
+            }
+            newYs = new double[newXs.length];
+            System.arraycopy(xs, size - keep, newXs, 0, keep);
+            System.arraycopy(ys, size - keep, newYs, 0, keep);
+            xs = newXs;
+            ys = newYs;
+            size = keep;
+            series = null;
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    // Передать получателю текущий набор точек; сводка, пирамида и раскраска маркеров готовятся здесь, в потоке слежения
+    private void publish() {
+        if (series == null) {
+            series = new PointSeries(xs, ys, size);
+            series.summary();
+            series.pyramid();
+            series.markerClasses();
+        } else {
+            series = series.extend(size);
+        }
+        listener.appended(series);
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                // Ошибка закрытия файла при остановке не важна
+            }
+            channel = null;
+        }
+    }
+}
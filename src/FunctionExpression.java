@@ -0,0 +1,408 @@
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/* Выражение от x, введённое пользователем, например "sin(x)/x + 0.1*x^2".
+ * Текст разбирается один раз (рекурсивным спуском) и превращается в дерево лямбда-выражений
+ * DoubleUnaryOperator: при вычислении нет ни разбора, ни поиска имён, ни упаковки чисел.
+ * Подвыражения без x вычисляются сразу при разборе (свёртка констант), умножение и деление
+ * на константу и степени с постоянным показателем получают свои узлы.
+ *
+ * Грамматика (пробелы игнорируются):
+ *   выражение := слагаемое (('+' | '-') слагаемое)*
+ *   слагаемое := унарное (('*' | '/') унарное | унарное)*   - знак умножения можно опускать: 2x, 3sin(x)
+ *   унарное   := ('-' | '+') унарное | степень
+ *   степень   := первичное ('^' унарное)?                   - правоассоциативно, -x^2 = -(x^2)
+ *   первичное := число | x | pi | e | функция '(' аргументы ')' | '(' выражение ')'
+ * Функции одного аргумента - FUNCTIONS, двух - BINARY_FUNCTIONS.
+ */
+public class FunctionExpression {
+    // Функции одного аргумента
+    private static final String[] FUNCTIONS = {
+            "sin", "cos", "tan", "tg", "asin", "acos", "atan", "arctg", "sinh", "cosh", "tanh",
+            "exp", "ln", "log", "lg", "log10", "sqrt", "cbrt", "abs", "sign", "floor", "ceil", "round"
+    };
+    private static final DoubleUnaryOperator[] FUNCTION_OPERATORS = {
+            Math::sin, Math::cos, Math::tan, Math::tan, Math::asin, Math::acos, Math::atan, Math::atan,
+            Math::sinh, Math::cosh, Math::tanh,
+            Math::exp, Math::log, Math::log, Math::log10, Math::log10, Math::sqrt, Math::cbrt, Math::abs,
+            Math::signum, Math::floor, Math::ceil, Math::rint
+    };
+    // Функции двух аргументов
+    private static final String[] BINARY_FUNCTIONS = {"pow", "atan2", "min", "max", "hypot", "mod"};
+    private static final DoubleBinaryOperator[] BINARY_OPERATORS = {
+            Math::pow, Math::atan2, Math::min, Math::max, Math::hypot, (a, b) -> a - b * Math.floor(a / b)
+    };
+
+    private final String text;
+    private final DoubleUnaryOperator evaluator;
+    // Истина, если выражение не зависит от x
+    private final boolean constant;
+
+    private FunctionExpression(String text, DoubleUnaryOperator evaluator, boolean constant) {
+        this.text = text;
+        this.evaluator = evaluator;
+        this.constant = constant;
+    }
+
+    /* Разобрать выражение. При ошибке ParseException сообщает, что ожидалось,
+     * а getErrorOffset - позицию ошибки в тексте (от нуля).
+     */
+    public static FunctionExpression parse(String text) throws ParseException {
+        Parser parser = new Parser(text);
+        Node root = parser.expression();
+        parser.skipSpaces();
+        if (parser.position < text.length()) {
+            throw new ParseException("Лишний символ '" + text.charAt(parser.position) + "'", parser.position);
+        }
+        return new FunctionExpression(text.trim(), root.operator, root.constant);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    // Значение выражения в точке x (NaN вне области определения)
+    public double evaluate(double x) {
+        return evaluator.applyAsDouble(x);
+    }
+
+    public boolean isConstant() {
+        return constant;
+    }
+
+    // Вычислитель выражения для циклов, вызывающих его много раз
+    public DoubleUnaryOperator evaluator() {
+        return evaluator;
+    }
+
+    public String toString() {
+        return text;
+    }
+
+    /* Узел дерева: вычислитель и, если подвыражение не зависит от x, его значение
+     * (тогда узел - константа, и операции с ним сворачиваются при разборе).
+     */
+    private static class Node {
+        final DoubleUnaryOperator operator;
+        final boolean constant;
+        final double value;
+        // Истина для самой переменной x
+        final boolean variable;
+
+        private Node(DoubleUnaryOperator operator, boolean constant, double value, boolean variable) {
+            this.operator = operator;
+            this.constant = constant;
+            this.value = value;
+            this.variable = variable;
+        }
+
+        static Node constant(double value) {
+            return new Node(x -> value, true, value, false);
+        }
+
+        static Node variable() {
+            return new Node(x -> x, false, Double.NaN, true);
+        }
+
+        static Node of(DoubleUnaryOperator operator) {
+            return new Node(operator, false, Double.NaN, false);
+        }
+    }
+
+    // Разбор рекурсивным спуском; каждый метод соответствует правилу грамматики
+    private static class Parser {
+        private final String text;
+        private int position = 0;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Node expression() throws ParseException {
+            Node left = term();
+            while (true) {
+                if (accept('+')) {
+                    left = add(left, term());
+                } else if (accept('-')) {
+                    left = subtract(left, term());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        Node term() throws ParseException {
+            Node left = unary();
+            while (true) {
+                if (accept('*')) {
+                    left = multiply(left, unary());
+                } else if (accept('/')) {
+                    left = divide(left, unary());
+                } else if (startsPrimary()) {
+                    // Пропущенный знак умножения: 2x, 2(x + 1), x sin(x)
+                    left = multiply(left, unary());
+                } else {
+                    return left;
+                }
+            }
+        }
+
+        Node unary() throws ParseException {
+            if (accept('-')) {
+                Node operand = unary();
+                if (operand.constant) {
+                    return Node.constant(-operand.value);
+                }
+                DoubleUnaryOperator a = operand.operator;
+                return Node.of(x -> -a.applyAsDouble(x));
+            }
+            if (accept('+')) {
+                return unary();
+            }
+            return power();
+        }
+
+        Node power() throws ParseException {
+            Node base = primary();
+            if (!accept('^')) {
+                return base;
+            }
+            Node exponent = unary();
+            if (base.constant && exponent.constant) {
+                return Node.constant(Math.pow(base.value, exponent.value));
+            }
+            DoubleUnaryOperator a = base.operator;
+            if (exponent.constant) {
+                // Малые целые степени - умножением (быстрее Math.pow)
+                double n = exponent.value;
+                if (n == 2) {
+                    return Node.of(x -> {
+                        double v = a.applyAsDouble(x);
+                        return v * v;
+                    });
+                }
+                if (n == 3) {
+                    return Node.of(x -> {
+                        double v = a.applyAsDouble(x);
+                        return v * v * v;
+                    });
+                }
+                return Node.of(x -> Math.pow(a.applyAsDouble(x), n));
+            }
+            DoubleUnaryOperator b = exponent.operator;
+            return Node.of(x -> Math.pow(a.applyAsDouble(x), b.applyAsDouble(x)));
+        }
+
+        Node primary() throws ParseException {
+            skipSpaces();
+            if (position >= text.length()) {
+                throw new ParseException("Выражение не закончено", position);
+            }
+            char c = text.charAt(position);
+            if (c == '(') {
+                position++;
+                Node inner = expression();
+                expect(')');
+                return inner;
+            }
+            if (Character.isDigit(c) || c == '.') {
+                return Node.constant(number());
+            }
+            if (Character.isLetter(c)) {
+                int start = position;
+                while (position < text.length() && Character.isLetterOrDigit(text.charAt(position))) {
+                    position++;
+                }
+                String name = text.substring(start, position).toLowerCase();
+                return named(name, start);
+            }
+            throw new ParseException("Неожиданный символ '" + c + "'", position);
+        }
+
+        // Переменная, константа или вызов функции с именем name, которое начинается в позиции start
+        private Node named(String name, int start) throws ParseException {
+            switch (name) {
+                case "x":
+                    return Node.variable();
+                case "pi":
+                    return Node.constant(Math.PI);
+                case "e":
+                    return Node.constant(Math.E);
+                default:
+                    break;
+            }
+            for (int i = 0; i < FUNCTIONS.length; i++) {
+                if (FUNCTIONS[i].equals(name)) {
+                    List<Node> arguments = arguments(name, 1);
+                    Node argument = arguments.get(0);
+                    DoubleUnaryOperator function = FUNCTION_OPERATORS[i];
+                    if (argument.constant) {
+                        return Node.constant(function.applyAsDouble(argument.value));
+                    }
+                    DoubleUnaryOperator a = argument.operator;
+                    return Node.of(x -> function.applyAsDouble(a.applyAsDouble(x)));
+                }
+            }
+            for (int i = 0; i < BINARY_FUNCTIONS.length; i++) {
+                if (BINARY_FUNCTIONS[i].equals(name)) {
+                    List<Node> arguments = arguments(name, 2);
+                    Node first = arguments.get(0);
+                    Node second = arguments.get(1);
+                    DoubleBinaryOperator function = BINARY_OPERATORS[i];
+                    if (first.constant && second.constant) {
+                        return Node.constant(function.applyAsDouble(first.value, second.value));
+                    }
+                    DoubleUnaryOperator a = first.operator;
+                    DoubleUnaryOperator b = second.operator;
+                    return Node.of(x -> function.applyAsDouble(a.applyAsDouble(x), b.applyAsDouble(x)));
+                }
+            }
+            throw new ParseException("Неизвестное имя '" + name + "'", start);
+        }
+
+        // Аргументы функции в скобках через запятую; их должно быть ровно count
+        private List<Node> arguments(String name, int count) throws ParseException {
+            skipSpaces();
+            if (position >= text.length() || text.charAt(position) != '(') {
+                throw new ParseException("После " + name + " ожидается '('", position);
+            }
+            position++;
+            List<Node> arguments = new ArrayList<>(count);
+            arguments.add(expression());
+            while (accept(',')) {
+                arguments.add(expression());
+            }
+            if (arguments.size() != count) {
+                throw new ParseException("У функции " + name + " должно быть аргументов: " + count, position);
+            }
+            expect(')');
+            return arguments;
+        }
+
+        // Число: цифры с необязательной дробной частью и порядком (1e-3)
+        private double number() throws ParseException {
+            int start = position;
+            while (position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+                position++;
+            }
+            // Буква e - порядок числа, только если за ней идут цифры (иначе 2e - это 2 * e)
+            if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+                int exponent = position + 1;
+                if (exponent < text.length() && (text.charAt(exponent) == '+' || text.charAt(exponent) == '-')) {
+                    exponent++;
+                }
+                if (exponent < text.length() && Character.isDigit(text.charAt(exponent))) {
+                    position = exponent;
+                    while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                        position++;
+                    }
+                }
+            }
+            try {
+                return Double.parseDouble(text.substring(start, position));
+            } catch (NumberFormatException ex) {
+                throw new ParseException("Неверное число '" + text.substring(start, position) + "'", start);
+            }
+        }
+
+        // Истина, если дальше начинается первичное выражение (для пропущенного знака умножения)
+        private boolean startsPrimary() {
+            skipSpaces();
+            if (position >= text.length()) {
+                return false;
+            }
+            char c = text.charAt(position);
+            return c == '(' || Character.isLetterOrDigit(c) || c == '.';
+        }
+
+        private boolean accept(char c) {
+            skipSpaces();
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws ParseException {
+            if (!accept(c)) {
+                throw new ParseException("Ожидается '" + c + "'", position);
+            }
+        }
+
+        void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private static Node add(Node left, Node right) {
+            if (left.constant && right.constant) {
+                return Node.constant(left.value + right.value);
+            }
+            DoubleUnaryOperator a = left.operator;
+            DoubleUnaryOperator b = right.operator;
+            if (right.constant) {
+                double c = right.value;
+                return Node.of(x -> a.applyAsDouble(x) + c);
+            }
+            return Node.of(x -> a.applyAsDouble(x) + b.applyAsDouble(x));
+        }
+
+        private static Node subtract(Node left, Node right) {
+            if (left.constant && right.constant) {
+                return Node.constant(left.value - right.value);
+            }
+            DoubleUnaryOperator a = left.operator;
+            DoubleUnaryOperator b = right.operator;
+            if (right.constant) {
+                double c = right.value;
+                return Node.of(x -> a.applyAsDouble(x) - c);
+            }
+            return Node.of(x -> a.applyAsDouble(x) - b.applyAsDouble(x));
+        }
+
+        private static Node multiply(Node left, Node right) {
+            if (left.constant && right.constant) {
+                return Node.constant(left.value * right.value);
+            }
+            // Константа всегда справа: c * f = f * c
+            if (left.constant) {
+                Node swap = left;
+                left = right;
+                right = swap;
+            }
+            DoubleUnaryOperator a = left.operator;
+            DoubleUnaryOperator b = right.operator;
+            if (right.constant) {
+                double c = right.value;
+                if (left.variable) {
+                    return Node.of(x -> x * c);
+                }
+                return Node.of(x -> a.applyAsDouble(x) * c);
+            }
+            return Node.of(x -> a.applyAsDouble(x) * b.applyAsDouble(x));
+        }
+
+        private static Node divide(Node left, Node right) {
+            if (left.constant && right.constant) {
+                return Node.constant(left.value / right.value);
+            }
+            DoubleUnaryOperator a = left.operator;
+            DoubleUnaryOperator b = right.operator;
+            if (right.constant) {
+                // Деление на степень двойки заменяется умножением на обратное (оно точное)
+                double c = right.value;
+                double inverse = 1 / c;
+                if (c != 0 && Double.isFinite(inverse) && Math.abs(c) == Math.scalb(1.0, Math.getExponent(c))) {
+                    return Node.of(x -> a.applyAsDouble(x) * inverse);
+                }
+                return Node.of(x -> a.applyAsDouble(x) / c);
+            }
+            return Node.of(x -> a.applyAsDouble(x) / b.applyAsDouble(x));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.DoubleUnaryOperator;
+
+/* Данные графика, заданные выражением от x, а не файлом. Точки не хранятся, а вычисляются
+ * для показываемой области с разрешением экрана: основная сетка - точка на BASE_STEP
+ * пикселов, а там, где середина отрезка отклоняется от хорды больше чем на TOLERANCE пиксела
+ * (большая кривизна) или где функция определена только на одном конце отрезка, отрезок
+ * делится пополам, пока шаг не станет меньше MIN_STEP пиксела. Отрезки основной сетки
+ * обрабатываются параллельно в общем пуле потоков.
+ * Обзор - точки для отрезка [from, to], как если бы он занимал OVERVIEW_COLUMNS столбцов;
+ * при увеличении точки вычисляются заново для видимой части отрезка (sample), а не берутся из обзора.
+ */
+public class FunctionSource {
+    // На сколько столбцов пикселов рассчитан обзор
+    public static final int OVERVIEW_COLUMNS = 2048;
+    // Шаг основной сетки, наименьший шаг деления и допустимое отклонение от хорды, пикселы
+    private static final double BASE_STEP = 2;
+    private static final double MIN_STEP = 1.0 / 8;
+    private static final double TOLERANCE = 0.5;
+    // Во сколько раз точки могут быть гуще нужного, чтобы их ещё можно было показывать
+    private static final double MAX_OVERSAMPLING = 4;
+    // Количество отрезков основной сетки, которые вычисляются одной задачей fork-join
+    private static final int SPLIT_SIZE = 64;
+    // Наибольшее количество отрезков основной сетки (на случай очень большого окна)
+    private static final int MAX_INTERVALS = 1 << 20;
+
+    /* Область [minX, maxX] и разрешение (пикселов на единицу по X и Y), для которых вычислены
+     * точки. Точки годятся для показа другой области, если покрывают её по X и их разрешение
+     * не меньше нужного и не намного больше (contains).
+     */
+    public static class Range {
+        private final double minX;
+        private final double maxX;
+        private final double pixelsPerUnitX;
+        private final double pixelsPerUnitY;
+
+        public Range(double minX, double maxX, double pixelsPerUnitX, double pixelsPerUnitY) {
+            this.minX = minX;
+            this.maxX = maxX;
+            this.pixelsPerUnitX = pixelsPerUnitX;
+            this.pixelsPerUnitY = pixelsPerUnitY;
+        }
+
+        public boolean contains(Range other) {
+            return minX <= other.minX && other.maxX <= maxX
+                    && suits(pixelsPerUnitX, other.pixelsPerUnitX) && suits(pixelsPerUnitY, other.pixelsPerUnitY);
+        }
+
+        private static boolean suits(double available, double needed) {
+            return available >= needed && available <= needed * MAX_OVERSAMPLING;
+        }
+
+        public String toString() {
+            return "[" + minX + ", " + maxX + "] x " + pixelsPerUnitX + "/" + pixelsPerUnitY;
+        }
+    }
+
+    private final FunctionExpression expression;
+    private final double from;
+    private final double to;
+    private final Range overviewRange;
+    private final PointSeries overview;
+
+    /* Построить обзор выражения на отрезке [from, to]. Масштаб по Y оценивается по значениям
+     * на основной сетке так же, как его выбирает отображатель: одинаковым по обеим осям
+     * и таким, чтобы поместился больший из диапазонов.
+     */
+    public FunctionSource(FunctionExpression expression, double from, double to) {
+        if (!(from < to) || !Double.isFinite(from) || !Double.isFinite(to)) {
+            throw new IllegalArgumentException("Неверный отрезок [" + from + ", " + to + "]");
+        }
+        this.expression = expression;
+        this.from = from;
+        this.to = to;
+        DoubleUnaryOperator f = expression.evaluator();
+        int count = (int) (OVERVIEW_COLUMNS / BASE_STEP);
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i <= count; i++) {
+            double y = f.applyAsDouble(from + (to - from) * i / count);
+            if (Double.isFinite(y)) {
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+        }
+        double pixelsPerUnitX = OVERVIEW_COLUMNS / (to - from);
+        double pixelsPerUnitY = maxY - minY > to - from ? OVERVIEW_COLUMNS / (maxY - minY) : pixelsPerUnitX;
+        this.overviewRange = new Range(from, to, pixelsPerUnitX, pixelsPerUnitY);
+        this.overview = sample(overviewRange);
+    }
+
+    public FunctionExpression getExpression() {
+        return expression;
+    }
+
+    public double getFrom() {
+        return from;
+    }
+
+    public double getTo() {
+        return to;
+    }
+
+    public PointSeries overview() {
+        return overview;
+    }
+
+    public Range overviewRange() {
+        return overviewRange;
+    }
+
+    /* Расширить область с каждой стороны на половину её ширины (разрешение то же),
+     * чтобы при небольшом сдвиге точки не приходилось вычислять заново. Расширенная область
+     * не выходит за отрезок [from, to]: за ним функция не рисуется.
+     */
+    public Range widen(Range range) {
+        double margin = (range.maxX - range.minX) / 2;
+        return new Range(Math.max(from, range.minX - margin), Math.min(to, range.maxX + margin),
+                range.pixelsPerUnitX, range.pixelsPerUnitY);
+    }
+
+    // Вычислить точки области range; точки упорядочены по X, первая и последняя - края области
+    public PointSeries sample(Range range) {
+        double columns = (range.maxX - range.minX) * range.pixelsPerUnitX;
+        int intervals = columns > BASE_STEP ? (int) Math.min(MAX_INTERVALS, Math.ceil(columns / BASE_STEP)) : 1;
+        PointBuffer points = ForkJoinPool.commonPool().invoke(new SampleTask(expression.evaluator(), range, intervals, 0, intervals));
+        points.add(range.maxX, expression.evaluate(range.maxX));
+        return new PointSeries(points.xs(), points.ys(), points.size());
+    }
+
+    /* Задача fork-join: точки отрезков основной сетки [first, last) - левый конец каждого
+     * отрезка и точки его деления. Половины диапазона вычисляются параллельно и склеиваются по порядку.
+     */
+    @SuppressWarnings("serial")
+    private static class SampleTask extends RecursiveTask<PointBuffer> {
+        private final DoubleUnaryOperator f;
+        private final Range range;
+        private final int intervals;
+        private final int first;
+        private final int last;
+
+        SampleTask(DoubleUnaryOperator f, Range range, int intervals, int first, int last) {
+            this.f = f;
+            this.range = range;
+            this.intervals = intervals;
+            this.first = first;
+            this.last = last;
+        }
+
+        protected PointBuffer compute() {
+            if (last - first <= SPLIT_SIZE) {
+                PointBuffer points = new PointBuffer(4 * (last - first) + 1);
+                double x0 = gridX(first);
+                double y0 = f.applyAsDouble(x0);
+                for (int i = first; i < last; i++) {
+                    double x1 = gridX(i + 1);
+                    double y1 = f.applyAsDouble(x1);
+                    points.add(x0, y0);
+                    subdivide(points, x0, y0, x1, y1);
+                    x0 = x1;
+                    y0 = y1;
+                }
+                return points;
+            }
+            int middle = (first + last) >>> 1;
+            SampleTask left = new SampleTask(f, range, intervals, first, middle);
+            left.fork();
+            PointBuffer right = new SampleTask(f, range, intervals, middle, last).compute();
+            PointBuffer points = left.join();
+            points.ensureCapacity(points.size() + right.size() + 1);
+            System.arraycopy(right.xs(), 0, points.xs(), points.size(), right.size());
+            System.arraycopy(right.ys(), 0, points.ys(), points.size(), right.size());
+            points.setSize(points.size() + right.size());
+            return points;
+        }
+
+        // X узла index основной сетки (умножением, а не сложением шагов, чтобы ошибки не накапливались)
+        private double gridX(int index) {
+            return index == intervals ? range.maxX : range.minX + (range.maxX - range.minX) * index / intervals;
+        }
+
+        // Добавить точки деления отрезка (x0, x1), концы которого уже вычислены
+        private void subdivide(PointBuffer points, double x0, double y0, double x1, double y1) {
+            double xm = 0.5 * (x0 + x1);
+            double ym = f.applyAsDouble(xm);
+            boolean finite0 = Double.isFinite(y0);
+            boolean finite1 = Double.isFinite(y1);
+            boolean finiteM = Double.isFinite(ym);
+            boolean refine;
+            if (finite0 && finite1 && finiteM) {
+                refine = Math.abs(ym - 0.5 * (y0 + y1)) * range.pixelsPerUnitY > TOLERANCE;
+            } else {
+// Граница области определения уточняется делением, отрезок целиком вне её - нет
+                refine = finite0 || finite1 || finiteM;
+            }
+            if (!refine) {
+                return;
+            }
+            if ((x1 - x0) * range.pixelsPerUnitX <= 2 * MIN_STEP) {
+                points.add(xm, ym);
+                return;
+            }
+            subdivide(points, x0, y0, xm, ym);
+            points.add(xm, ym);
+            subdivide(points, xm, ym, x1, y1);
+        }
+    }
+}
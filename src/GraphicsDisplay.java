@@ -1,22 +1,65 @@
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Paint;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.Stroke;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
 
 @SuppressWarnings("serial")
 public class GraphicsDisplay extends JPanel {
     // Список координат точек для построения графика
-    private Double[][] graphicsData;
+    private PointSeries graphicsData;
+    // Границы и другие характеристики набора точек, вычисленные при загрузке
+    private SeriesSummary summary;
+    // Пирамида минимумов и максимумов для быстрого отображения части графика (null, если не построена)
+    private MinMaxPyramid pyramid;
+    // Данные, не загруженные в память целиком (null для обычных данных); тогда graphicsData -
+    // обзор всего файла или точки увеличенной области, прочитанные из файла
+    private OutOfCoreSeries outOfCore = null;
+    // Прочитанные точки увеличенной области и диапазон частей файла, которому они соответствуют
+    private PointSeries detail = null;
+    private OutOfCoreSeries.Range detailRange = null;
+    // Фоновое чтение точек увеличенной области и читаемый диапазон (null, если чтения нет)
+    private SwingWorker<PointSeries, Void> detailWorker = null;
+    private OutOfCoreSeries.Range requestedRange = null;
+    // Если истина, точки увеличенной области читаются сразу в потоке рисования (копия для экспорта)
+    private boolean synchronousDetail = false;
+    // График функции, заданной выражением (null для данных из файла); тогда graphicsData -
+    // обзор функции или точки, вычисленные для увеличенной области
+    private FunctionSource function = null;
+    // Точки функции, вычисленные для увеличенной области, и область, для которой они вычислены
+    private PointSeries functionSamples = null;
+    private FunctionSource.Range functionRange = null;
+    // Фоновое вычисление точек функции и вычисляемая область (null, если вычисления нет)
+    private SwingWorker<PointSeries, Void> functionWorker = null;
+    private FunctionSource.Range requestedFunctionRange = null;
     // Флаговые переменные, задающие правила отображения графика
     private boolean showAxis = true;
     private boolean rotate = false;
@@ -29,12 +72,110 @@ public class GraphicsDisplay extends JPanel {
     private double maxY;
     // Используемый масштаб отображения
     private double scale;
+    // Сколько пикселов устройства приходится на единицу длины по X и Y с учётом поворота осей
+    private double devicePixelsPerUnitX;
+    private double devicePixelsPerUnitY;
+    // Количество столбцов пикселов устройства, на которые ложится диапазон X
+    private int deviceColumns;
+    // Диапазон индексов точек, попадающих в видимую область по X
+    private int visibleFrom;
+    private int visibleTo;
+    // Видимая область, заданная пользователем масштабированием и сдвигом;
+    // если zoomed - ложь, показывается весь график
+    private boolean zoomed = false;
+    private double viewMinX;
+    private double viewMaxX;
+    private double viewMinY;
+    private double viewMaxY;
+    // Режим слежения за дописываемым файлом: область отображения берётся с запасом,
+    // чтобы новые точки ложились в неё и старое изображение можно было только дополнять
+    private boolean live = false;
+    private Rectangle2D.Double liveBounds = null;
+    // Запас области отображения в режиме слежения (доля диапазона по X справа и по Y с каждой стороны)
+    private static final double LIVE_HEADROOM_X = 0.5;
+    private static final double LIVE_HEADROOM_Y = 0.1;
+    // Параметры видимой области при последней перерисовке - часть ключей кэша слоёв
+    private List<Object> viewKey = null;
+    // Преобразование холста при повороте осей (тождественное без поворота)
+    private AffineTransform rotateTransform = new AffineTransform();
+    // Кэш изображений слоёв графика
+    private LayerCache layerCache = new LayerCache();
+    // Если ложь, слои рисуются прямо на холст (для однократного рисования в изображение)
+    private boolean layerCacheEnabled = true;
+    // Параллельная отрисовка линий и маркеров полосами (null - отрисовка в одном потоке)
+    private TiledRasterizer tiledRasterizer = null;
+    // Статистика отрисовки и признак её показа поверх графика
+    private PaintStatistics statistics = new PaintStatistics();
+    private boolean showStatistics = false;
+    // Размер изображения слоя, который рисуется сейчас, в пикселах устройства (для деления на полосы)
+    private int layerDeviceWidth;
+    private int layerDeviceHeight;
+    // Время рисования содержимого слоя в текущем вызове drawLayer (-1 - слой взят из кэша)
+    private long layerPaintTime;
+    // Сколько слоёв нарисовано заново в текущем кадре
+    private int layersRepainted = 0;
+    // Номер версии данных; увеличивается при каждой загрузке, чтобы кэш слоёв знал о смене данных
+    private int dataVersion = 0;
+    // Размер основных линий креста маркера (половина полного размера)
+    private static final int MARKER_SIZE = 5;
+    // Размер ячейки (в пикселах), в которой рисуется не больше одного маркера каждого цвета
+    private static final int MARKER_CELL = 2;
+    // Занятые маркерами ячейки: сначала биты для чёрных маркеров, затем для синих
+    private long[] occupiedCells = new long[0];
+    // Преобразование координат графика в координаты холста для текущего кадра
+    private ScreenTransform screen = new ScreenTransform();
+    // Буфер точек в координатах холста и пути маркеров; переиспользуются между кадрами
+    private PointBuffer screenPoints = new PointBuffer();
+    private GeneralPath evenMarkers = new GeneralPath();
+    private GeneralPath otherMarkers = new GeneralPath();
+    // Сколько точек преобразуется за один раз при рисовании маркеров
+    private static final int SCREEN_BLOCK = 4096;
+    // Во сколько раз меняется видимая область за один щелчок колеса мыши
+    private static final double ZOOM_STEP = 1.25;
+    // Подготовка линии основного графика: прореживание и перевод в координаты холста
+    private SeriesRenderer curveRenderer = new SeriesRenderer();
+    private Decimator.Mode decimationMode = Decimator.Mode.M4;
+    // Дополнительные наборы точек для сравнения, рисуются под основным графиком
+    private final List<PlotSeries> overlays = new ArrayList<>();
+    // Объединённые границы дополнительных наборов (null, если их нет или у них нет конечных точек)
+    private Rectangle2D.Double overlayBounds = null;
+    // Номер версии списка дополнительных наборов - часть ключа слоя линии
+    private int overlayVersion = 0;
+    // Сколько дополнительных наборов добавлено за всё время (по нему выбираются цвет и перо)
+    private int overlaysAdded = 0;
+    // Цвета и штрихи дополнительных наборов; когда цвета кончаются, меняется штрих
+    private static final Color[] OVERLAY_COLORS = {
+            new Color(0x1F77B4), new Color(0x2CA02C), new Color(0xFF7F0E), new Color(0x9467BD),
+            new Color(0x8C564B), new Color(0xE377C2), new Color(0x7F7F7F), new Color(0x17BECF)};
+    private static final float[][] OVERLAY_DASHES = {null, {10, 5}, {2, 4}};
     // Различные стили черчения линий
     private BasicStroke graphicsStroke;
     private BasicStroke axisStroke;
     private BasicStroke markerStroke;
+    // Расположение делений сетки по осям, перья и шрифт сетки;
+    // пути основных линий, средних линий и коротких делений переиспользуются между кадрами
+    private final TickLayout gridTicksX = new TickLayout(true);
+    private final TickLayout gridTicksY = new TickLayout(false);
+    private final BasicStroke gridStroke = new BasicStroke(1.0f);
+    private final BasicStroke gridMiddleStroke = new BasicStroke(0.5f);
+    private final BasicStroke gridMinorStroke = new BasicStroke(0.3f);
+    private final Font gridFont = new Font("Dialog", Font.PLAIN, 10);
+    private final GeneralPath gridLines = new GeneralPath();
+    private final GeneralPath gridMiddleLines = new GeneralPath();
+    private final GeneralPath gridMinorTicks = new GeneralPath();
+    // Наименьшее расстояние между короткими делениями сетки, пикселов
+    private static final double MIN_MINOR_TICK_SPACING = 3;
     // Различные шрифты отображения надписей
     private Font axisFont;
+    private Font statisticsFont = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    // Точка под курсором мыши - ближайшая к нему не дальше HOVER_RADIUS пикселов (null, если её нет),
+    // и название набора для сравнения, которому она принадлежит (null - основной график)
+    private Point2D.Double hoverPoint = null;
+    private String hoverSeries = null;
+    private static final double HOVER_RADIUS = 20;
+    private Font hoverFont = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+    private BasicStroke hoverStroke = new BasicStroke(2.0f);
+    private BasicStroke hoverLabelStroke = new BasicStroke(1.0f);
 
     public GraphicsDisplay() {
 // Цвет заднего фона области отображения - белый
@@ -52,14 +193,302 @@ public class GraphicsDisplay extends JPanel {
                 BasicStroke.JOIN_MITER, 10.0f, null, 0.0f);
 // Шрифт для подписей осей координат
         axisFont = new Font("Serif", Font.BOLD, 36);
+// Колесо мыши масштабирует график относительно курсора, перетаскивание сдвигает его
+        MouseAdapter navigation = new NavigationListener();
+        addMouseListener(navigation);
+        addMouseMotionListener(navigation);
+        addMouseWheelListener(navigation);
     }
 
     // Данный метод вызывается из обработчика элемента меню "Открыть файл с графиком"
     // главного окна приложения в случае успешной загрузки данных
-    public void showGraphics(Double[][] graphicsData) {
+    public void showGraphics(PointSeries graphicsData) {
+// Новые данные показываются целиком, наборы для сравнения с прежним графиком убираются
+        this.zoomed = false;
+        this.liveBounds = null;
+        clearSeries();
+        updateGraphics(graphicsData);
+    }
+
+    /* Заменить данные графика, сохранив видимую область.
+     * Используется при постепенной загрузке файла: показывается уже прочитанная часть точек.
+     */
+    public void updateGraphics(PointSeries graphicsData) {
+        cancelDetail();
+        cancelSampling();
+        hoverPoint = null;
+        this.outOfCore = null;
+        this.function = null;
+        setGraphicsData(graphicsData);
+        layerCache.invalidate();
+// Запросить перерисовку компонента, т.е. неявно вызвать paintComponent()
+        repaint();
+    }
+
+    /* Показать данные, не загружаемые в память целиком. График целиком рисуется по обзору,
+     * а при увеличении точки видимой области читаются из файла в фоновом потоке
+     * (пока они читаются, показывается обзор).
+     */
+    public void showGraphics(OutOfCoreSeries source) {
+        this.zoomed = false;
+        this.liveBounds = null;
+        cancelDetail();
+        cancelSampling();
+        hoverPoint = null;
+        this.function = null;
+        this.outOfCore = source;
+        clearSeries();
+        setGraphicsData(source.overview());
+        layerCache.invalidate();
+        repaint();
+    }
+
+    /* Показать график функции. График целиком рисуется по обзору, а при увеличении точки
+     * видимой области вычисляются заново с разрешением экрана в фоновом потоке
+     * (пока они вычисляются, показываются прежние точки).
+     */
+    public void showGraphics(FunctionSource source) {
+        this.zoomed = false;
+        this.liveBounds = null;
+        cancelDetail();
+        cancelSampling();
+        hoverPoint = null;
+        this.outOfCore = null;
+        this.function = source;
+        clearSeries();
+        setGraphicsData(source.overview());
+        layerCache.invalidate();
+        repaint();
+    }
+
+    private void setGraphicsData(PointSeries graphicsData) {
 // Сохранить массив точек во внутреннем поле класса
         this.graphicsData = graphicsData;
-// Запросить перерисовку компонента, т.е. неявно вызвать paintComponent()
+// Границы данных вычисляются один раз при загрузке, а не при каждой перерисовке
+// (если загрузчик уже вычислил их в фоновом потоке, берутся готовые значения).
+// Для данных вне памяти границы берутся из обзора - они совпадают с границами всех точек,
+// для функции - тоже из обзора, чтобы график целиком не менялся от точек увеличенной области
+        if (outOfCore != null) {
+            this.summary = outOfCore.overview().summary();
+        } else if (function != null) {
+            this.summary = function.overview().summary();
+        } else {
+            this.summary = graphicsData.summary();
+        }
+// Пирамида для быстрого отображения части графика при увеличении
+        this.pyramid = graphicsData.pyramid();
+        this.dataVersion++;
+    }
+
+    // Убрать график и освободить данные
+    public void clearGraphics() {
+        cancelDetail();
+        cancelSampling();
+        hoverPoint = null;
+        this.outOfCore = null;
+        this.function = null;
+        this.graphicsData = null;
+        this.summary = null;
+        this.pyramid = null;
+        clearSeries();
+        this.dataVersion++;
+        layerCache.invalidate();
+        repaint();
+    }
+
+    /* Добавить точки, дописанные в конец тех же массивов (режим слежения за файлом).
+     * Если видимая область от новых точек не меняется, новые отрезки линии и маркеры
+     * дорисовываются поверх изображений слоёв из кэша, а перерисовывается только
+     * прямоугольник окна, в который они попали. Иначе график перерисовывается целиком.
+     */
+    public void appendGraphics(PointSeries extended) {
+        PointSeries previous = graphicsData;
+        boolean continues = previous != null && !previous.isEmpty()
+                && previous.xs() == extended.xs() && previous.ys() == extended.ys()
+                && extended.size() >= previous.size();
+        if (!continues) {
+            updateGraphics(extended);
+            return;
+        }
+        this.graphicsData = extended;
+        this.summary = extended.summary();
+        this.pyramid = extended.pyramid();
+        int oldVersion = dataVersion++;
+        if (!zoomed && live && (liveBounds == null || !liveBounds.contains(summary.getMinX(), summary.getMinY(),
+                summary.getMaxX() - summary.getMinX(), summary.getMaxY() - summary.getMinY()))) {
+// Новые точки вышли за область отображения - расширить её с запасом и перерисовать всё
+            liveBounds = null;
+            layerCache.invalidate();
+            repaint();
+            return;
+        }
+        if (viewKey == null || (!zoomed && !live)) {
+            repaint();
+            return;
+        }
+// Область не изменилась - дорисовать только новые точки (начиная с последней старой, чтобы линия не прерывалась)
+        int from = previous.size() - 1;
+        int to = extended.size();
+        layerCache.append(LayerCache.Layer.GRAPHICS, Arrays.asList(viewKey, oldVersion, decimationMode, overlayVersion),
+                Arrays.asList(viewKey, dataVersion, decimationMode, overlayVersion),
+                layerCanvas -> {
+                    layerCanvas.transform(rotateTransform);
+                    paintGraphics(layerCanvas, from, to);
+                });
+        layerCache.append(LayerCache.Layer.MARKERS, Arrays.asList(viewKey, oldVersion),
+                Arrays.asList(viewKey, dataVersion),
+                layerCanvas -> {
+                    layerCanvas.transform(rotateTransform);
+                    paintMarkers(layerCanvas, from + 1, to);
+                });
+        repaint(dirtyRectangle(from, to));
+    }
+
+    /* Копия компонента для рисования в другом потоке (например, при экспорте в файл):
+     * те же данные, наборы для сравнения, размер, видимая область и параметры отображения.
+     * Кэш слоёв, параллельная отрисовка, статистика и точка под курсором не переносятся,
+     * а точки увеличенной области данных вне памяти копия при необходимости читает сама
+     * в потоке рисования. Вызывается в потоке обработки событий.
+     */
+    public GraphicsDisplay snapshot() {
+        GraphicsDisplay copy = new GraphicsDisplay();
+        copy.setSize(getSize());
+        copy.layerCacheEnabled = false;
+        copy.synchronousDetail = true;
+        copy.graphicsData = graphicsData;
+        copy.summary = summary;
+        copy.pyramid = pyramid;
+        copy.outOfCore = outOfCore;
+        copy.detail = detail;
+        copy.detailRange = detailRange;
+        copy.function = function;
+        copy.functionSamples = functionSamples;
+        copy.functionRange = functionRange;
+        copy.showAxis = showAxis;
+        copy.rotate = rotate;
+        copy.showMarkers = showMarkers;
+        copy.showGrid = showGrid;
+        copy.decimationMode = decimationMode;
+        copy.zoomed = zoomed;
+        copy.viewMinX = viewMinX;
+        copy.viewMaxX = viewMaxX;
+        copy.viewMinY = viewMinY;
+        copy.viewMaxY = viewMaxY;
+        copy.live = live;
+        copy.liveBounds = liveBounds == null ? null : (Rectangle2D.Double) liveBounds.clone();
+        // У копии наборов свои подготовленные линии - рисование копии не трогает линии окна
+        for (PlotSeries series : overlays) {
+            copy.overlays.add(new PlotSeries(series.getData(), series.getName(), series.getColor(), series.getStroke()));
+        }
+        copy.overlayBounds = overlayBounds == null ? null : (Rectangle2D.Double) overlayBounds.clone();
+        copy.overlaysAdded = overlaysAdded;
+        return copy;
+    }
+
+    // Прямоугольник окна, в который попадают точки [from, to) вместе с маркерами и толщиной линии
+    private Rectangle dirtyRectangle(int from, int to) {
+        double[] xs = graphicsData.xs();
+        double[] ys = graphicsData.ys();
+        double left = Double.POSITIVE_INFINITY, right = Double.NEGATIVE_INFINITY;
+        double top = Double.POSITIVE_INFINITY, bottom = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            if (xs[i] < left) left = xs[i];
+            if (xs[i] > right) right = xs[i];
+            if (ys[i] < bottom) bottom = ys[i];
+            if (ys[i] > top) top = ys[i];
+        }
+        if (!(left <= right) || !(bottom <= top)) {
+            return new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        Rectangle2D.Double area = new Rectangle2D.Double();
+        area.setFrameFromDiagonal(xyToPoint(left, top), xyToPoint(right, bottom));
+        Rectangle dirty = rotateTransform.createTransformedShape(area).getBounds();
+        // Запас на размер маркера и толщину пера
+        dirty.grow(MARKER_SIZE + 4, MARKER_SIZE + 4);
+        return dirty;
+    }
+
+    /* Добавить набор точек для сравнения с основным графиком; он рисуется линией
+     * своего цвета. Объединённые границы дополняются границами нового набора,
+     * остальные наборы при этом не пересчитываются.
+     */
+    public PlotSeries addSeries(PointSeries data, String name) {
+        int index = overlaysAdded++;
+        float[] dash = OVERLAY_DASHES[(index / OVERLAY_COLORS.length) % OVERLAY_DASHES.length];
+        BasicStroke stroke = new BasicStroke(2.0f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 10.0f, dash, 0.0f);
+        PlotSeries series = new PlotSeries(data, name, OVERLAY_COLORS[index % OVERLAY_COLORS.length], stroke);
+        overlays.add(series);
+        Rectangle2D.Double bounds = boundsOf(data.summary());
+        if (bounds != null) {
+            if (overlayBounds == null) {
+                overlayBounds = bounds;
+            } else {
+                overlayBounds.add(bounds);
+            }
+        }
+        overlayVersion++;
+        repaint();
+        return series;
+    }
+
+    // Убрать набор для сравнения; границы пересчитываются по сводкам оставшихся наборов
+    public void removeSeries(PlotSeries series) {
+        if (!overlays.remove(series)) {
+            return;
+        }
+        overlayBounds = null;
+        for (PlotSeries other : overlays) {
+            Rectangle2D.Double bounds = boundsOf(other.getData().summary());
+            if (bounds == null) {
+                continue;
+            }
+            if (overlayBounds == null) {
+                overlayBounds = bounds;
+            } else {
+                overlayBounds.add(bounds);
+            }
+        }
+        overlayVersion++;
+        repaint();
+    }
+
+    // Убрать все наборы для сравнения (при показе нового основного графика)
+    private void clearSeries() {
+        if (overlays.isEmpty()) {
+            return;
+        }
+        overlays.clear();
+        overlayBounds = null;
+        overlayVersion++;
+    }
+
+    // Наборы для сравнения в порядке добавления
+    public List<PlotSeries> getSeries() {
+        return Collections.unmodifiableList(overlays);
+    }
+
+    // Границы конечных точек набора (null, если таких точек нет)
+    private static Rectangle2D.Double boundsOf(SeriesSummary summary) {
+        if (summary.getFiniteCount() == 0) {
+            return null;
+        }
+        return new Rectangle2D.Double(summary.getMinX(), summary.getMinY(),
+                summary.getMaxX() - summary.getMinX(), summary.getMaxY() - summary.getMinY());
+    }
+
+    // Границы всех показываемых данных: основного графика и наборов для сравнения
+    private Rectangle2D.Double dataBounds() {
+        Rectangle2D.Double bounds = boundsOf(summary);
+        if (overlayBounds != null) {
+            bounds.add(overlayBounds);
+        }
+        return bounds;
+    }
+
+    // Включить или выключить режим слежения за дописываемым файлом
+    public void setLive(boolean live) {
+        this.live = live;
+        this.liveBounds = null;
         repaint();
     }
 
@@ -84,6 +513,86 @@ public class GraphicsDisplay extends JPanel {
         this.showGrid = showGrid;
         repaint();
     }
+
+    // Включить или выключить параллельную отрисовку линий и маркеров полосами
+    public void setTiledRendering(boolean tiledRendering) {
+        tiledRasterizer = tiledRendering ? new TiledRasterizer() : null;
+        layerCache.invalidate();
+        repaint();
+    }
+
+    public boolean isTiledRendering() {
+        return tiledRasterizer != null;
+    }
+
+    public void setShowStatistics(boolean showStatistics) {
+        this.showStatistics = showStatistics;
+        repaint();
+    }
+
+    public PaintStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void setDecimationMode(Decimator.Mode decimationMode) {
+        this.decimationMode = decimationMode;
+        repaint();
+    }
+
+    // Вернуться к отображению всего графика
+    public void resetView() {
+        zoomed = false;
+        repaint();
+    }
+
+    public boolean isZoomed() {
+        return zoomed;
+    }
+
+    // Изменить видимую область в factor раз относительно точки (x, y) графика
+    public void zoom(double x, double y, double factor) {
+        if (!zoomed) {
+            startView();
+        }
+        double newWidth = (viewMaxX - viewMinX) * factor;
+        double newHeight = (viewMaxY - viewMinY) * factor;
+        // Не увеличивать дальше точности чисел double
+        double ulp = Math.max(Math.ulp(x), Math.ulp(y));
+        if (newWidth < ulp * 1e3 || newHeight < ulp * 1e3) {
+            return;
+        }
+        viewMinX = x - (x - viewMinX) * factor;
+        viewMaxX = viewMinX + newWidth;
+        viewMaxY = y + (viewMaxY - y) * factor;
+        viewMinY = viewMaxY - newHeight;
+        repaint();
+    }
+
+    // Сдвинуть видимую область на (dx, dy) в координатах графика
+    public void pan(double dx, double dy) {
+        if (!zoomed) {
+            startView();
+        }
+        viewMinX += dx;
+        viewMaxX += dx;
+        viewMinY += dy;
+        viewMaxY += dy;
+        repaint();
+    }
+
+    // Запомнить текущую показанную область как исходную для масштабирования и сдвига
+    private void startView() {
+        viewMinX = minX;
+        viewMaxX = maxX;
+        viewMinY = minY;
+        viewMaxY = maxY;
+        zoomed = true;
+    }
+
+    // Преобразовать точку окна в координаты графика (обратное к xyToPoint с учётом поворота осей)
+    protected Point2D.Double pointToXY(double screenX, double screenY) {
+        return screen.deviceToWorld(screenX, screenY);
+    }
     // Метод отображения всего компонента, содержащего график
     public void paintComponent(Graphics g) {
         /* Шаг 1 - Вызвать метод предка для заливки области цветом заднего фона
@@ -92,22 +601,44 @@ public class GraphicsDisplay extends JPanel {
          */
         super.paintComponent(g);
 // Шаг 2 - Если данные графика не загружены (при показе компонента при запуске программы) - ничего не делать
-        if (graphicsData == null || graphicsData.length == 0) return;
+        if (graphicsData == null || summary.getFiniteCount() == 0) return;
+// Время кадра и его этапов собирается в статистику отрисовки и в события JFR
+        long frameStart = System.nanoTime();
+        PaintStatistics.FrameEvent frameEvent = new PaintStatistics.FrameEvent();
+        frameEvent.begin();
+        statistics.frameStarted();
 // Шаг 3 - Определить минимальное и максимальное значения для координат X и Y
 // Это необходимо для определения области пространства, подлежащей отображению
 // Еѐ верхний левый угол это (minX, maxY) - правый нижний это (maxX, minY)
-        minX = graphicsData[0][0];
-        maxX = graphicsData[graphicsData.length - 1][0];
-        minY = graphicsData[0][1];
-        maxY = minY;
-// Найти минимальное и максимальное значение функции
-        for (int i = 1; i < graphicsData.length; i++) {
-            if (graphicsData[i][1] < minY) {
-                minY = graphicsData[i][1];
-            }
-            if (graphicsData[i][1] > maxY) {
-                maxY = graphicsData[i][1];
+// Значения берутся из сводки, вычисленной при загрузке, поэтому стоимость не зависит от числа точек.
+// Если пользователь изменил масштаб, берётся выбранная им область
+        if (zoomed) {
+            minX = viewMinX;
+            maxX = viewMaxX;
+            minY = viewMinY;
+            maxY = viewMaxY;
+        } else if (live) {
+// В режиме слежения область берётся с запасом и не меняется, пока новые точки в неё попадают
+            if (liveBounds == null) {
+                Rectangle2D.Double bounds = dataBounds();
+                double width = bounds.getWidth();
+                double height = bounds.getHeight();
+                if (width == 0) width = 1;
+                if (height == 0) height = 1;
+                liveBounds = new Rectangle2D.Double(bounds.getMinX(), bounds.getMinY() - height * LIVE_HEADROOM_Y,
+                        width * (1 + LIVE_HEADROOM_X), height * (1 + 2 * LIVE_HEADROOM_Y));
             }
+            minX = liveBounds.getMinX();
+            maxX = liveBounds.getMaxX();
+            minY = liveBounds.getMinY();
+            maxY = liveBounds.getMaxY();
+        } else {
+// Область охватывает основной график и все наборы для сравнения
+            Rectangle2D.Double bounds = dataBounds();
+            minX = bounds.getMinX();
+            maxX = bounds.getMaxX();
+            minY = bounds.getMinY();
+            maxY = bounds.getMaxY();
         }
 /* Шаг 4 - Определить (исходя из размеров окна) масштабы по осям X
 и Y - сколько пикселов
@@ -143,286 +674,710 @@ minY
             maxX += xIncrement;
             minX -= xIncrement;
         }
-// Шаг 7 - Сохранить текущие настройки холста
-        Graphics2D canvas = (Graphics2D) g;
-        Stroke oldStroke = canvas.getStroke();
-        Color oldColor = canvas.getColor();
-        Paint oldPaint = canvas.getPaint();
-        Font oldFont = canvas.getFont();
-// Шаг 8 - В нужном порядке вызвать методы отображения элементов графика
-// Порядок вызова методов имеет значение, т.к. предыдущий рисунок будет затираться последующим
-// Первыми (если нужно) отрисовываются оси координат.
-
+// При повороте осей ось X ложится вдоль высоты окна и дополнительно масштабируется
+        devicePixelsPerUnitX = rotate ? scale * getSize().getHeight() / getSize().getWidth() : scale;
+        devicePixelsPerUnitY = rotate ? scale * getSize().getWidth() / getSize().getHeight() : scale;
+        deviceColumns = (int) Math.ceil((maxX - minX) * devicePixelsPerUnitX);
+// Для данных вне памяти выбрать, по каким точкам рисовать: по обзору или по точкам увеличенной области
+        if (outOfCore != null) chooseOutOfCoreData();
+// Для функции - по обзору или по точкам, вычисленным для видимой области
+        if (function != null) chooseFunctionData();
+// Для упорядоченных по X данных двоичным поиском найти точки видимой области
+// (плюс по одной соседней точке с каждой стороны, чтобы линия доходила до края окна)
+        if (graphicsData.isSortedByX()) {
+            visibleFrom = Math.max(0, graphicsData.lowerBound(minX) - 1);
+            visibleTo = Math.min(graphicsData.size(), graphicsData.upperBound(maxX) + 1);
+        } else {
+            visibleFrom = 0;
+            visibleTo = graphicsData.size();
+        }
+// Шаг 7 - Вычислить преобразование холста при повороте осей.
+// Преобразование запоминается, чтобы переводить координаты мыши в координаты графика
+        rotateTransform = new AffineTransform();
         if (rotate) {
             // Сохраняем текущее преобразование
-            canvas.translate(getSize().getWidth()/2, getSize().getHeight()/2);
+            rotateTransform.translate(getSize().getWidth()/2, getSize().getHeight()/2);
             // Поворачиваем на 90 градусов против часовой стрелки
-            canvas.rotate(-Math.PI/2);
+            rotateTransform.rotate(-Math.PI/2);
             // Масштабируем, чтобы график занимал всё окно
-            if (getSize().getWidth() > getSize().getHeight()) {
-                canvas.scale(getSize().getHeight()/getSize().getWidth(),
-                        getSize().getWidth()/getSize().getHeight());
-            } else {
-                canvas.scale(getSize().getHeight()/getSize().getWidth(),
-                        getSize().getWidth()/getSize().getHeight());
-            }
+            rotateTransform.scale(getSize().getHeight()/getSize().getWidth(),
+                    getSize().getWidth()/getSize().getHeight());
             // Возвращаем в центр
-            canvas.translate(-getSize().getWidth()/2, -getSize().getHeight()/2);
+            rotateTransform.translate(-getSize().getWidth()/2, -getSize().getHeight()/2);
         }
+        screen.set(minX, maxY, scale, rotateTransform);
+        long viewTime = System.nanoTime() - frameStart;
+// Шаг 8 - В нужном порядке наложить слои элементов графика
+// Порядок наложения имеет значение, т.к. предыдущий рисунок будет затираться последующим.
+// Каждый слой берётся из кэша и перерисовывается, только если изменились размер окна,
+// данные, видимая область или параметры, от которых он зависит
+        Graphics2D canvas = (Graphics2D) g;
+// Сохранить текущие настройки холста: слои рисуются на копиях холста, но сводка статистики
+// и подпись точки под курсором - на нём самом
+        Stroke oldStroke = canvas.getStroke();
+        Color oldColor = canvas.getColor();
+        Paint oldPaint = canvas.getPaint();
+        Font oldFont = canvas.getFont();
+        AffineTransform deviceTransform = canvas.getTransform();
+        double deviceScaleX = deviceTransform.getScaleX();
+        double deviceScaleY = deviceTransform.getScaleY();
+        viewKey = Arrays.asList(getWidth(), getHeight(), deviceScaleX, deviceScaleY,
+                rotate, minX, maxX, minY, maxY);
+// Первыми (если нужно) отрисовываются оси координат.
+        if (showAxis) drawLayer(canvas, LayerCache.Layer.AXIS, viewKey, this::paintAxis);
 
-        if (showAxis) paintAxis(canvas);
-
-        if(showGrid) paintGrid(canvas);
+        if (showGrid) drawLayer(canvas, LayerCache.Layer.GRID, viewKey, this::paintGrid);
 
 // Затем отображается сам график
-        paintGraphics(canvas);
+// (линия и маркеры зависят также от данных, поэтому в их ключи входит номер версии данных)
+        drawLayer(canvas, LayerCache.Layer.GRAPHICS, Arrays.asList(viewKey, dataVersion, decimationMode, overlayVersion),
+                this::paintGraphics);
 // Затем (если нужно) отображаются маркеры точек, по которым строился график.
-        if (showMarkers) paintMarkers(canvas);
-// Шаг 9 - Восстановить старые настройки холста
+        if (showMarkers) drawLayer(canvas, LayerCache.Layer.MARKERS, Arrays.asList(viewKey, dataVersion), this::paintMarkers);
+        statistics.frameFinished(viewTime, System.nanoTime() - frameStart);
+        frameEvent.end();
+        if (frameEvent.shouldCommit()) {
+            frameEvent.width = getWidth();
+            frameEvent.height = getHeight();
+            frameEvent.points = graphicsData.size();
+            frameEvent.layersRepainted = layersRepainted;
+            frameEvent.commit();
+        }
+        layersRepainted = 0;
+// Сводка статистики рисуется поверх графика и не кэшируется
+        if (showStatistics) paintStatistics(canvas);
+// Значения точки под курсором - тоже поверх всего
+        if (hoverPoint != null) paintHover(canvas);
+// Восстановить старые настройки холста
         canvas.setFont(oldFont);
         canvas.setPaint(oldPaint);
         canvas.setColor(oldColor);
         canvas.setStroke(oldStroke);
     }
 
-    private void paintGrid(Graphics2D canvas) {
-        // Шаги сетки для осей X и Y
-        double gridStepX = calculateGridStep(maxX - minX);
-        double gridStepY = calculateGridStep(maxY - minY);
+    /* Найти точку основного графика или набора для сравнения, ближайшую к точке окна
+     * (screenX, screenY), и показать её значения. Расстояние считается в пикселах окна
+     * с учётом поворота осей (при повороте меняются только масштабы по осям).
+     */
+    private void updateHover(double screenX, double screenY) {
+        Point2D.Double point = null;
+        String series = null;
+        Point2D.Double cursor = graphicsData != null && viewKey != null ? pointToXY(screenX, screenY) : null;
+        if (cursor != null) {
+            double radius = HOVER_RADIUS;
+            int index = graphicsData.nearest(cursor.x, cursor.y, devicePixelsPerUnitX, devicePixelsPerUnitY, radius);
+            if (index >= 0) {
+                point = new Point2D.Double(graphicsData.getX(index), graphicsData.getY(index));
+                radius = hoverDistance(cursor, point);
+            }
+// Точка набора для сравнения показывается, только если она строго ближе
+            for (PlotSeries overlay : overlays) {
+                PointSeries data = overlay.getData();
+                index = data.nearest(cursor.x, cursor.y, devicePixelsPerUnitX, devicePixelsPerUnitY, radius);
+                if (index >= 0) {
+                    point = new Point2D.Double(data.getX(index), data.getY(index));
+                    series = overlay.getName();
+                    radius = hoverDistance(cursor, point);
+                }
+            }
+        }
+        if (!Objects.equals(point, hoverPoint) || !Objects.equals(series, hoverSeries)) {
+            hoverPoint = point;
+            hoverSeries = series;
+            repaint();
+        }
+    }
+
+    // Расстояние между точками графика в пикселах окна
+    private double hoverDistance(Point2D.Double a, Point2D.Double b) {
+        return Math.hypot((a.x - b.x) * devicePixelsPerUnitX, (a.y - b.y) * devicePixelsPerUnitY);
+    }
 
-        // Начальные координаты сетки
-        double startX = Math.floor(minX / gridStepX) * gridStepX;
-        double startY = Math.floor(minY / gridStepY) * gridStepY;
+    // Скрыть значения точки под курсором
+    private void clearHover() {
+        if (hoverPoint != null) {
+            hoverPoint = null;
+            repaint();
+        }
+    }
 
-        // Сохраняем старые настройки
-        Stroke oldStroke = canvas.getStroke();
-        Color oldColor = canvas.getColor();
-        Font oldFont = canvas.getFont();
+    // Обвести точку под курсором и показать рядом её координаты
+    private void paintHover(Graphics2D canvas) {
+        Point2D center = screen.getWorldToDevice().transform(hoverPoint, null);
+        canvas.setStroke(hoverStroke);
+        canvas.setColor(Color.MAGENTA);
+        canvas.draw(new Ellipse2D.Double(center.getX() - 6, center.getY() - 6, 12, 12));
+        String text = (hoverSeries != null ? hoverSeries + ": " : "")
+                + String.format("x = %.6g, y = %.6g", hoverPoint.x, hoverPoint.y);
+        canvas.setFont(hoverFont);
+        FontMetrics metrics = canvas.getFontMetrics();
+        int width = metrics.stringWidth(text) + 8;
+        int height = metrics.getHeight() + 4;
+// Подпись справа снизу от точки, а у края окна - с другой стороны
+        int left = (int) center.getX() + 10;
+        int top = (int) center.getY() + 10;
+        if (left + width > getWidth()) left = (int) center.getX() - 10 - width;
+        if (top + height > getHeight()) top = (int) center.getY() - 10 - height;
+        canvas.setColor(new Color(255, 255, 255, 220));
+        canvas.fillRect(left, top, width, height);
+        canvas.setColor(Color.DARK_GRAY);
+        canvas.setStroke(hoverLabelStroke);
+        canvas.drawRect(left, top, width, height);
+        canvas.drawString(text, left + 4, top + 2 + metrics.getAscent());
+    }
 
-        // Настройки для сетки
-        canvas.setStroke(new BasicStroke(1.0f));
-        canvas.setColor(Color.GRAY);
-        canvas.setFont(new Font("Dialog", Font.PLAIN, 10));
-
-        // Рисуем вертикальные линии сетки
-        double x = startX;
-        while (x <= maxX) {
-            Point2D.Double point1 = xyToPoint(x, minY);
-            Point2D.Double point2 = xyToPoint(x, maxY);
-
-            // Основная линия сетки
-            canvas.drawLine((int)point1.x, (int)point1.y, (int)point2.x, (int)point2.y);
-
-            // Рисуем деления внутри ячейки
-            if (x + gridStepX <= maxX) {
-                double subStep = gridStepX / 10;
-                for (int i = 1; i < 10; i++) {
-                    double subX = x + i * subStep;
-                    Point2D.Double subPoint1 = xyToPoint(subX, minY);
-                    Point2D.Double subPoint2 = xyToPoint(subX, maxY);
-
-                    // Для пятого деления (середина) делаем линию длиннее
-                    if (i == 5) {
-                        canvas.setStroke(new BasicStroke(0.5f));
-                        canvas.drawLine((int)subPoint1.x, (int)subPoint1.y,
-                                (int)subPoint2.x, (int)subPoint2.y);
-                    } else {
-                        // Короткие штрихи для остальных делений
-                        canvas.setStroke(new BasicStroke(0.3f));
-                        double shortLineLength = (maxY - minY) / 50;
-                        Point2D.Double subPoint2Short = xyToPoint(subX, minY + shortLineLength);
-                        canvas.drawLine((int)subPoint1.x, (int)subPoint1.y,
-                                (int)subPoint2Short.x, (int)subPoint2Short.y);
-                    }
-                }
+    /* Если в видимую область попадает немного частей файла, рисовать по всем их точкам
+     * (когда они прочитаны), иначе - по обзору. Смена набора точек меняет номер версии данных,
+     * поэтому слои линии и маркеров перерисовываются.
+     */
+    private void chooseOutOfCoreData() {
+        OutOfCoreSeries.Range range = outOfCore.detailRange(minX, maxX, deviceColumns);
+        PointSeries data = outOfCore.overview();
+        if (range != null) {
+            if (detailRange != null && detailRange.contains(range)) {
+                data = detail;
+            } else if (synchronousDetail) {
+                data = readDetailNow(range);
+            } else {
+                requestDetail(range);
+            }
+        }
+        if (data != graphicsData) {
+            setGraphicsData(data);
+        }
+    }
+
+    /* Начать чтение точек частей needed (с запасом по краям) в фоновом потоке,
+     * если они ещё не читаются. Незаконченное чтение другого диапазона отменяется.
+     */
+    private void requestDetail(OutOfCoreSeries.Range needed) {
+        if (requestedRange != null && requestedRange.contains(needed)) {
+            return;
+        }
+        if (detailWorker != null) {
+            detailWorker.cancel(true);
+        }
+// Прежние точки области больше не подходят - освободить память до чтения новых
+        detail = null;
+        detailRange = null;
+        OutOfCoreSeries source = outOfCore;
+        OutOfCoreSeries.Range range = source.widen(needed);
+        requestedRange = range;
+        detailWorker = new SwingWorker<PointSeries, Void>() {
+            protected PointSeries doInBackground() throws IOException {
+                PointSeries points = source.readDetail(range);
+// Сводка, пирамида и раскраска маркеров вычисляются здесь, чтобы не занимать поток обработки событий
+                points.summary();
+                points.pyramid();
+                points.markerClasses();
+                if (!points.isSortedByX()) points.spatialGrid();
+                return points;
             }
 
-            // Подписи координат
-            canvas.drawString(String.format("%.2f", x), (int)point1.x - 20, getHeight() - 5);
-            x += gridStepX;
-        }
-
-        // Рисуем горизонтальные линии сетки
-        double y = startY;
-        while (y <= maxY) {
-            Point2D.Double point1 = xyToPoint(minX, y);
-            Point2D.Double point2 = xyToPoint(maxX, y);
-
-            // Основная линия сетки
-            canvas.drawLine((int)point1.x, (int)point1.y, (int)point2.x, (int)point2.y);
-
-            // Рисуем деления внутри ячейки
-            if (y + gridStepY <= maxY) {
-                double subStep = gridStepY / 10;
-                for (int i = 1; i < 10; i++) {
-                    double subY = y + i * subStep;
-                    Point2D.Double subPoint1 = xyToPoint(minX, subY);
-                    Point2D.Double subPoint2 = xyToPoint(maxX, subY);
-
-                    // Для пятого деления (середина) делаем линию длиннее
-                    if (i == 5) {
-                        canvas.setStroke(new BasicStroke(0.5f));
-                        canvas.drawLine((int)subPoint1.x, (int)subPoint1.y,
-                                (int)subPoint2.x, (int)subPoint2.y);
-                    } else {
-                        // Короткие штрихи для остальных делений
-                        canvas.setStroke(new BasicStroke(0.3f));
-                        double shortLineLength = (maxX - minX) / 50;
-                        Point2D.Double subPoint2Short = xyToPoint(minX + shortLineLength, subY);
-                        canvas.drawLine((int)subPoint1.x, (int)subPoint1.y,
-                                (int)subPoint2Short.x, (int)subPoint2Short.y);
-                    }
+            protected void done() {
+// Результаты отменённого чтения не показываются
+                if (detailWorker != this) return;
+                detailWorker = null;
+                requestedRange = null;
+                try {
+                    detail = get();
+                    detailRange = range;
+                    repaint();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+// Точки не прочитаны - график остаётся нарисованным по обзору
                 }
             }
+        };
+        detailWorker.execute();
+    }
 
-            // Подписи координат
-            canvas.drawString(String.format("%.2f", y), 5, (int)point1.y + 5);
-            y += gridStepY;
+    // Прочитать точки частей range в этом потоке; при ошибке чтения остаётся обзор
+    private PointSeries readDetailNow(OutOfCoreSeries.Range range) {
+        OutOfCoreSeries.Range widened = outOfCore.widen(range);
+        try {
+            PointSeries points = outOfCore.readDetail(widened);
+            points.summary();
+            points.pyramid();
+            points.markerClasses();
+            detail = points;
+            detailRange = widened;
+            return points;
+        } catch (IOException ex) {
+            return outOfCore.overview();
         }
-
-        // Восстанавливаем настройки
-        canvas.setStroke(oldStroke);
-        canvas.setColor(oldColor);
-        canvas.setFont(oldFont);
     }
 
-    // Вспомогательная функция для расчета оптимального шага сетки
-    private double calculateGridStep(double range) {
-        // Желаемое количество делений (от 5 до 20)
-        int desiredDivisions = 10;
+    /* Рисовать функцию по обзору, если его точек достаточно для видимой области, иначе -
+     * по точкам, вычисленным для неё. Пока точки новой области вычисляются, рисуются прежние:
+     * при увеличении они грубее нужного, но не пропадают.
+     */
+    private void chooseFunctionData() {
+// Функция задана только на своём отрезке: и целиком, и при увеличении вычисляется лишь его видимая часть
+        double from = Math.max(minX, function.getFrom());
+        double to = Math.min(maxX, function.getTo());
+        FunctionSource.Range needed = new FunctionSource.Range(from, to, devicePixelsPerUnitX, devicePixelsPerUnitY);
+        PointSeries data = graphicsData;
+// Отрезок функции не виден (окно сдвинуто за его край) - вычислять нечего, рисуется обзор
+        if (!(from < to) || function.overviewRange().contains(needed)) {
+            data = function.overview();
+        } else if (functionRange != null && functionRange.contains(needed)) {
+            data = functionSamples;
+        } else if (synchronousDetail) {
+            data = sampleNow(needed);
+        } else {
+            requestSampling(needed);
+        }
+        if (data != graphicsData) {
+            setGraphicsData(data);
+        }
+    }
 
-        // Находим приближенный шаг
-        double roughStep = range / desiredDivisions;
+    /* Начать вычисление точек функции для области needed (с запасом по краям) в фоновом
+     * потоке, если они ещё не вычисляются. Незаконченное вычисление другой области отменяется.
+     */
+    private void requestSampling(FunctionSource.Range needed) {
+        if (requestedFunctionRange != null && requestedFunctionRange.contains(needed)) {
+            return;
+        }
+        if (functionWorker != null) {
+            functionWorker.cancel(true);
+        }
+        FunctionSource source = function;
+        FunctionSource.Range range = source.widen(needed);
+        requestedFunctionRange = range;
+        functionWorker = new SwingWorker<PointSeries, Void>() {
+            protected PointSeries doInBackground() {
+                PointSeries points = source.sample(range);
+// Сводка, пирамида и раскраска маркеров вычисляются здесь, чтобы не занимать поток обработки событий
+                points.summary();
+                points.pyramid();
+                points.markerClasses();
+                return points;
+            }
 
-        // Получаем порядок величины шага
-        double power = Math.floor(Math.log10(roughStep));
-        double magnitude = Math.pow(10, power);
+            protected void done() {
+// Результаты отменённого вычисления не показываются
+                if (functionWorker != this) return;
+                functionWorker = null;
+                requestedFunctionRange = null;
+                try {
+                    functionSamples = get();
+                    functionRange = range;
+                    repaint();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+// Точки не вычислены - остаются прежние
+                }
+            }
+        };
+        functionWorker.execute();
+    }
 
-        // Нормализованный шаг (от 0.1 до 1.0)
-        double normalizedStep = roughStep / magnitude;
+    // Вычислить точки функции для области needed в этом потоке
+    private PointSeries sampleNow(FunctionSource.Range needed) {
+        FunctionSource.Range range = function.widen(needed);
+        PointSeries points = function.sample(range);
+        points.summary();
+        points.pyramid();
+        points.markerClasses();
+        functionSamples = points;
+        functionRange = range;
+        return points;
+    }
 
-        // Выбираем ближайший "красивый" шаг
-        double[] steps = {0.1, 0.2, 0.5, 1.0, 20.0,50.0,100.0};
-        double bestStep = steps[0];
-        double minDiff = Math.abs(normalizedStep - steps[0]);
+    // Отменить вычисление точек функции и забыть уже вычисленные
+    private void cancelSampling() {
+        if (functionWorker != null) {
+            functionWorker.cancel(true);
+            functionWorker = null;
+        }
+        requestedFunctionRange = null;
+        functionSamples = null;
+        functionRange = null;
+    }
 
-        for (double step : steps) {
-            double diff = Math.abs(normalizedStep - step);
-            if (diff < minDiff) {
-                minDiff = diff;
-                bestStep = step;
-            }
+    // Отменить чтение точек увеличенной области и забыть уже прочитанные
+    private void cancelDetail() {
+        if (detailWorker != null) {
+            detailWorker.cancel(true);
+            detailWorker = null;
         }
+        requestedRange = null;
+        detail = null;
+        detailRange = null;
+    }
 
-        return bestStep * magnitude;
+    // Показать сводку статистики отрисовки в левом верхнем углу окна
+    private void paintStatistics(Graphics2D canvas) {
+        List<String> lines = statistics.describe();
+        canvas.setFont(statisticsFont);
+        FontMetrics metrics = canvas.getFontMetrics();
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+        int lineHeight = metrics.getHeight();
+        canvas.setColor(new Color(255, 255, 255, 210));
+        canvas.fillRect(4, 4, width + 12, lineHeight * lines.size() + 8);
+        canvas.setColor(Color.DARK_GRAY);
+        canvas.drawRect(4, 4, width + 12, lineHeight * lines.size() + 8);
+        int y = 8 + metrics.getAscent();
+        for (String line : lines) {
+            canvas.drawString(line, 10, y);
+            y += lineHeight;
+        }
     }
 
-    // Отрисовка графика по прочитанным координатам
-    protected void paintGraphics(Graphics2D canvas) {
-// Выбрать линию для рисования графика
-        canvas.setStroke(graphicsStroke);
-// Выбрать цвет линии
-        canvas.setColor(Color.RED);
-/* Будем рисовать линию графика как путь, состоящий из множества
-сегментов (GeneralPath)
-* Начало пути устанавливается в первую точку графика, после чего
-прямой соединяется со
-* следующими точками
-*/
-        GeneralPath graphics = new GeneralPath();
-        for (int i = 0; i < graphicsData.length; i++) {
-// Преобразовать значения (x,y) в точку на экране point
-            Point2D.Double point = xyToPoint(graphicsData[i][0],
-                    graphicsData[i][1]);
-            if (i > 0) {
-// Не первая итерация цикла - вести линию в точку point
-                graphics.lineTo(point.getX(), point.getY());
-            } else {
-// Первая итерация цикла - установить начало пути в точку point
-                graphics.moveTo(point.getX(), point.getY());
+    // Наложить на холст слой из кэша, при необходимости перерисовав его
+    private void drawLayer(Graphics2D canvas, LayerCache.Layer layer, Object key, LayerCache.LayerPainter painter) {
+        long drawStart = System.nanoTime();
+        PaintStatistics.LayerEvent layerEvent = new PaintStatistics.LayerEvent();
+        layerEvent.begin();
+        layerPaintTime = -1;
+        // Содержимое слоя рисуется с замером времени; если слой взят из кэша, замера нет
+        LayerCache.LayerPainter timedPainter = layerCanvas -> {
+            long paintStart = System.nanoTime();
+            statistics.layerPaintStarted(layer);
+            layerCanvas.transform(rotateTransform);
+            painter.paint(layerCanvas);
+            layerPaintTime = System.nanoTime() - paintStart;
+        };
+// Размер берётся по преобразованию холста до поворота осей: после поворота на 90 градусов
+// масштабы по X и Y в преобразовании равны нулю
+        double deviceScaleX = canvas.getTransform().getScaleX();
+        double deviceScaleY = canvas.getTransform().getScaleY();
+        int width = (int) Math.ceil(getWidth() * deviceScaleX);
+        int height = (int) Math.ceil(getHeight() * deviceScaleY);
+        layerDeviceWidth = width;
+        layerDeviceHeight = height;
+        if (layerCacheEnabled) {
+            BufferedImage image = layerCache.get(layer, key, width, height, deviceScaleX, deviceScaleY, timedPainter);
+            canvas.drawImage(image, 0, 0, getWidth(), getHeight(), null);
+        } else {
+            Graphics2D layerCanvas = (Graphics2D) canvas.create();
+            try {
+                timedPainter.paint(layerCanvas);
+            } finally {
+                layerCanvas.dispose();
             }
         }
-// Отобразить график
-        canvas.draw(graphics);
+        statistics.layerDrawn(layer, layerPaintTime, System.nanoTime() - drawStart);
+        if (layerPaintTime >= 0) {
+            layersRepainted++;
+        }
+        layerEvent.end();
+        if (layerEvent.shouldCommit()) {
+            layerEvent.layer = layer.name();
+            layerEvent.cached = layerPaintTime < 0;
+            layerEvent.pointsDrawn = statistics.getPointsDrawn(layer);
+            layerEvent.pointsCulled = statistics.getPointsCulled(layer);
+            layerEvent.commit();
+        }
     }
 
+    // Включить или выключить кэш слоёв; без кэша каждый слой рисуется прямо на холст
+    public void setLayerCacheEnabled(boolean layerCacheEnabled) {
+        this.layerCacheEnabled = layerCacheEnabled;
+        layerCache.invalidate();
+        repaint();
+    }
 
+    // Количество попаданий и промахов кэша слоёв
+    public long getLayerCacheHits() {
+        return layerCache.getHits();
+    }
 
-    protected void paintMarkers(Graphics2D canvas) {
-        // Установить специальное перо для черчения контуров маркеров
-        canvas.setStroke(markerStroke);
-        // Выбрать красный цвет для контуров маркеров
+    public long getLayerCacheMisses() {
+        return layerCache.getMisses();
+    }
 
-        //canvas.setColor(Color.GREEN);
+    /* Сетка: основные линии, средние линии ячеек и короткие дополнительные деления.
+     * Расположение делений вычисляется TickLayout один раз для области отображения,
+     * линии каждого вида собираются в один путь, поэтому число вызовов рисования
+     * не зависит от диапазона (три пути и по подписи на основное деление).
+     */
+    protected void paintGrid(Graphics2D canvas) {
+        // Сохраняем старые настройки
+        Stroke oldStroke = canvas.getStroke();
+        Color oldColor = canvas.getColor();
+        Font oldFont = canvas.getFont();
 
-        // Организовать цикл по всем точкам графика
-        for (Double[] point : graphicsData) {
-            // Получить координаты точки
-            Point2D.Double center = xyToPoint(point[0], point[1]);
+        FontRenderContext context = canvas.getFontRenderContext();
+        gridTicksX.layout(minX, maxX, scale, gridFont, context);
+        gridTicksY.layout(minY, maxY, scale, gridFont, context);
+        double left = screen.userX(minX);
+        double right = screen.userX(maxX);
+        double top = screen.userY(maxY);
+        double bottom = screen.userY(minY);
+        gridLines.reset();
+        gridMiddleLines.reset();
+        gridMinorTicks.reset();
 
-            if (hasOnlyEvenDigits(point[1])) {
-                canvas.setColor(Color.BLUE);
-            } else {
-                canvas.setColor(Color.BLACK); // Иначе красным
-            }
-            // Размер основных линий креста (половина полного размера)
-            int mainSize = 5; // полный размер будет 11 точек
-            // Размер перпендикулярных линий на концах (полная длина)
-            int crossSize = 4; // по 2 точки в каждую сторону
+        // Вертикальные линии: основные - через всю высоту, средние - тоньше,
+        // остальные дополнительные деления - короткими штрихами снизу
+        for (int i = 0; i < gridTicksX.getTickCount(); i++) {
+            double lineX = screen.userX(gridTicksX.getTick(i));
+            gridLines.moveTo(lineX, bottom);
+            gridLines.lineTo(lineX, top);
+        }
+        double shortLineLength = (bottom - top) / 50;
+        appendMinorTicks(gridTicksX, minX, maxX, true, bottom, top, shortLineLength);
+        // Горизонтальные линии - аналогично, короткие штрихи слева
+        for (int i = 0; i < gridTicksY.getTickCount(); i++) {
+            double lineY = screen.userY(gridTicksY.getTick(i));
+            gridLines.moveTo(left, lineY);
+            gridLines.lineTo(right, lineY);
+        }
+        shortLineLength = (right - left) / 50;
+        appendMinorTicks(gridTicksY, minY, maxY, false, left, right, shortLineLength);
 
-            // Рисуем горизонтальную линию креста
-            canvas.draw(new Line2D.Double(
-                    center.x - mainSize, center.y,
-                    center.x + mainSize, center.y));
+        canvas.setColor(Color.GRAY);
+        canvas.setStroke(gridStroke);
+        canvas.draw(gridLines);
+        canvas.setStroke(gridMiddleStroke);
+        canvas.draw(gridMiddleLines);
+        canvas.setStroke(gridMinorStroke);
+        canvas.draw(gridMinorTicks);
 
-            // Рисуем вертикальную линию креста
-            canvas.draw(new Line2D.Double(
-                    center.x, center.y - mainSize,
-                    center.x, center.y + mainSize));
+        // Подписи координат: по оси X - внизу окна по центру линии, по оси Y - слева по середине линии
+        for (int i = 0; i < gridTicksX.getTickCount(); i++) {
+            Rectangle2D bounds = gridTicksX.getLabelBounds(i);
+            double lineX = screen.userX(gridTicksX.getTick(i));
+            canvas.drawGlyphVector(gridTicksX.getLabel(i), (float) (lineX - bounds.getCenterX()), getHeight() - 5);
+        }
+        for (int i = 0; i < gridTicksY.getTickCount(); i++) {
+            Rectangle2D bounds = gridTicksY.getLabelBounds(i);
+            double lineY = screen.userY(gridTicksY.getTick(i));
+            canvas.drawGlyphVector(gridTicksY.getLabel(i), 5, (float) (lineY - bounds.getCenterY()));
+        }
 
-            // Рисуем перпендикулярные линии на концах
-            // Верхний конец
-            canvas.draw(new Line2D.Double(
-                    center.x - crossSize/2, center.y + mainSize,
-                    center.x + crossSize/2, center.y + mainSize
-            ));
+        // Восстанавливаем настройки
+        canvas.setStroke(oldStroke);
+        canvas.setColor(oldColor);
+        canvas.setFont(oldFont);
+    }
 
-            // Нижний конец
-            canvas.draw(new Line2D.Double(
-                    center.x - crossSize/2, center.y - mainSize,
-                    center.x + crossSize/2, center.y - mainSize
-            ));
+    /* Добавить в пути сетки дополнительные деления оси с делениями ticks в области [min, max].
+     * vertical - деления оси X (вертикальные линии от from до to по Y холста),
+     * иначе оси Y (горизонтальные от from до to по X). Среднее деление ячейки - линия
+     * через всю область, остальные - штрихи длиной shortLength от from.
+     */
+    private void appendMinorTicks(TickLayout ticks, double min, double max, boolean vertical,
+                                  double from, double to, double shortLength) {
+        double minorStep = ticks.getMinorStep();
+        if (!(minorStep > 0)) {
+            return;
+        }
+        // Слишком частые короткие штрихи сливаются - тогда рисуются только средние линии
+        boolean shortTicks = minorStep * scale >= MIN_MINOR_TICK_SPACING;
+        long first = (long) Math.ceil(min / minorStep);
+        long last = (long) Math.floor(max / minorStep);
+        double direction = Math.signum(to - from);
+        for (long j = first; j <= last; j++) {
+            int position = (int) Math.floorMod(j, (long) TickLayout.MINOR_DIVISIONS);
+            if (position == 0 || (!shortTicks && position != TickLayout.MINOR_DIVISIONS / 2)) {
+                continue;
+            }
+            double value = j * minorStep;
+            double at = vertical ? screen.userX(value) : screen.userY(value);
+            GeneralPath path = position == TickLayout.MINOR_DIVISIONS / 2 ? gridMiddleLines : gridMinorTicks;
+            double end = path == gridMiddleLines ? to : from + direction * Math.abs(shortLength);
+            if (vertical) {
+                path.moveTo(at, from);
+                path.lineTo(at, end);
+            } else {
+                path.moveTo(from, at);
+                path.lineTo(end, at);
+            }
+        }
+    }
 
-            // Левый конец
-            canvas.draw(new Line2D.Double(
-                    center.x - mainSize, center.y - crossSize/2,
-                    center.x - mainSize, center.y + crossSize/2
-            ));
+    /* Отрисовка графика по прочитанным координатам. Линии основного графика и наборов для
+     * сравнения, для которых изменилась область отображения или данные, готовятся (прореживание
+     * и перевод в координаты холста) параллельно в общем пуле потоков; затем все линии
+     * обводятся на холсте в этом потоке. Линия, уже подготовленная для той же области
+     * и тех же данных, повторно не готовится, поэтому добавление или удаление набора
+     * для сравнения не пересчитывает ни основной график, ни другие наборы.
+     */
+    protected void paintGraphics(Graphics2D canvas) {
+        List<Object> key = Arrays.asList(viewKey, decimationMode);
+        Decimator.Mode mode = decimationMode;
+        double left = minX, right = maxX, top = maxY;
+        double ppuX = devicePixelsPerUnitX, ppuY = devicePixelsPerUnitY;
+        int columns = deviceColumns;
+        ScreenTransform transform = screen;
+        List<Callable<GeneralPath>> tasks = new ArrayList<>();
+        for (PlotSeries series : overlays) {
+            PointSeries data = series.getData();
+            if (data.summary().getFiniteCount() == 0) {
+                continue;
+            }
+            SeriesRenderer renderer = series.getRenderer();
+            tasks.add(() -> renderer.prepareVisible(key, data, mode, left, right, top, ppuX, ppuY, columns, transform));
+        }
+// Основной график: точки вне видимой области уже отброшены двоичным поиском
+        List<Object> curveKey = Arrays.asList(viewKey, dataVersion, decimationMode);
+        PointSeries data = graphicsData;
+        MinMaxPyramid curvePyramid = pyramid;
+        int from = visibleFrom, to = visibleTo;
+        tasks.add(() -> curveRenderer.prepare(curveKey, data, curvePyramid, from, to, mode,
+                left, top, ppuX, ppuY, columns, transform));
+        try {
+            if (tasks.size() == 1) {
+                tasks.get(0).call();
+            } else {
+                for (Future<GeneralPath> prepared : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                    prepared.get();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Ошибка подготовки линии графика", ex.getCause());
+        } catch (Exception ex) {
+            throw new IllegalStateException("Ошибка подготовки линии графика", ex);
+        }
+// Наборы для сравнения рисуются первыми, чтобы основной график был поверх них
+        List<TiledRasterizer.Outline> outlines = new ArrayList<>();
+        for (PlotSeries series : overlays) {
+            if (series.getData().summary().getFiniteCount() == 0) {
+                continue;
+            }
+            SeriesRenderer renderer = series.getRenderer();
+            outlines.add(new TiledRasterizer.Outline(renderer.getPath(), series.getStroke(), series.getColor()));
+            statistics.addPoints(LayerCache.Layer.GRAPHICS, renderer.getPointsDrawn(), renderer.getPointsCulled());
+        }
+        statistics.addPoints(LayerCache.Layer.GRAPHICS, curveRenderer.getPointsDrawn(),
+                curveRenderer.getPointsCulled() + graphicsData.size() - (visibleTo - visibleFrom));
+// Красная линия основного графика особым пером
+        outlines.add(new TiledRasterizer.Outline(curveRenderer.getPath(), graphicsStroke, Color.RED));
+        drawOutlines(canvas, outlines);
+    }
 
-            // Правый конец
-            canvas.draw(new Line2D.Double(
-                    center.x + mainSize, center.y - crossSize/2,
-                    center.x + mainSize, center.y + crossSize/2
-            ));
+    // Отрисовка участка линии графика по точкам с индексами [from, to) (дорисовка новых точек)
+    protected void paintGraphics(Graphics2D canvas, int from, int to) {
+// Проредить точки и перевести их в координаты холста
+        GeneralPath graphics = curveRenderer.prepare(graphicsData, pyramid, from, to, decimationMode,
+                minX, maxY, devicePixelsPerUnitX, devicePixelsPerUnitY, deviceColumns, screen);
+        statistics.addPoints(LayerCache.Layer.GRAPHICS, curveRenderer.getPointsDrawn(), curveRenderer.getPointsCulled());
+// Отобразить график: красная линия особым пером
+        drawOutlines(canvas, Collections.singletonList(new TiledRasterizer.Outline(graphics, graphicsStroke, Color.RED)));
+    }
 
+    /* Обвести контуры на холсте. В режиме параллельной отрисовки холст делится на полосы,
+     * которые рисуются одновременно в разных потоках (см. TiledRasterizer)
+     */
+    private void drawOutlines(Graphics2D canvas, List<TiledRasterizer.Outline> outlines) {
+        if (tiledRasterizer != null) {
+// Размер изображения слоя запомнен в drawLayer; дорисовка новых точек (appendGraphics)
+// идёт на то же изображение, поэтому размер подходит и для неё
+            tiledRasterizer.draw(canvas, layerDeviceWidth, layerDeviceHeight, outlines);
+            return;
+        }
+        for (TiledRasterizer.Outline outline : outlines) {
+            canvas.setStroke(outline.stroke);
+            canvas.setColor(outline.color);
+            canvas.draw(outline.path);
         }
     }
 
-    protected boolean hasOnlyEvenDigits(double value) {
-        // Получаем целую часть числа
-        int integerPart = (int) Math.abs(value);
 
-        // Преобразуем число в строку для анализа цифр
-        String numStr = String.valueOf(integerPart);
 
-        // Проверяем каждую цифру
-        for (int i = 0; i < numStr.length(); i++) {
-            int digit = Character.getNumericValue(numStr.charAt(i));
-            if (digit % 2 != 0) { // Если цифра нечётная
-                return false;
+    protected void paintMarkers(Graphics2D canvas) {
+        // Рисуются только маркеры точек видимой области
+        statistics.addPoints(LayerCache.Layer.MARKERS, 0, graphicsData.size() - (visibleTo - visibleFrom));
+        paintMarkers(canvas, visibleFrom, visibleTo);
+    }
+
+    // Отрисовка маркеров точек с индексами [from, to)
+    protected void paintMarkers(Graphics2D canvas, int from, int to) {
+        // Маркеры собираются в два пути - по одному на каждый цвет - и рисуются
+        // двумя вызовами draw вместо шести вызовов на каждую точку
+        evenMarkers.reset();
+        otherMarkers.reset();
+        // Маркер не рисуется, если в той же ячейке размером MARKER_CELL пикселов уже есть маркер
+        // того же цвета: при таком наложении он всё равно не виден. Поэтому число рисуемых
+        // маркеров ограничено размером окна, а не количеством точек
+        int cellsX = getWidth() / MARKER_CELL + 1;
+        int cellsY = getHeight() / MARKER_CELL + 1;
+        int cells = cellsX * cellsY;
+        if (occupiedCells.length < 2 * ((cells + 63) >>> 6)) {
+            occupiedCells = new long[2 * ((cells + 63) >>> 6)];
+        } else {
+            Arrays.fill(occupiedCells, 0L);
+        }
+        int evenOffset = (cells + 63) >>> 6;
+        MarkerClassification classes = graphicsData.markerClasses();
+        // Организовать цикл по точкам графика; координаты преобразуются блоками
+        // по SCREEN_BLOCK точек в переиспользуемый буфер
+        double[] xs = graphicsData.xs();
+        double[] ys = graphicsData.ys();
+        int drawn = 0;
+        for (int block = from; block < to; block += SCREEN_BLOCK) {
+            int blockEnd = Math.min(to, block + SCREEN_BLOCK);
+            screen.transform(xs, ys, block, blockEnd, screenPoints);
+            double[] centerX = screenPoints.xs();
+            double[] centerY = screenPoints.ys();
+            for (int i = block; i < blockEnd; i++) {
+                // Получить координаты точки
+                double x = centerX[i - block];
+                double y = centerY[i - block];
+                // Маркеры за пределами окна не рисуются (NaN тоже не проходит эти сравнения)
+                if (!(x >= -MARKER_SIZE && x <= getWidth() + MARKER_SIZE
+                        && y >= -MARKER_SIZE && y <= getHeight() + MARKER_SIZE)) {
+                    continue;
+                }
+                boolean even = classes.hasOnlyEvenDigits(i);
+                int cellX = Math.min(cellsX - 1, Math.max(0, (int) x / MARKER_CELL));
+                int cellY = Math.min(cellsY - 1, Math.max(0, (int) y / MARKER_CELL));
+                int cell = cellY * cellsX + cellX;
+                int word = (even ? evenOffset : 0) + (cell >>> 6);
+                long bit = 1L << cell;
+                if ((occupiedCells[word] & bit) != 0) {
+                    continue;
+                }
+                occupiedCells[word] |= bit;
+                appendMarker(even ? evenMarkers : otherMarkers, x, y);
+                drawn++;
             }
         }
-        return true;
+        statistics.addPoints(LayerCache.Layer.MARKERS, drawn, (to - from) - drawn);
+        // Контуры маркеров чертятся специальным пером; точки, у которых целая часть Y
+        // состоит только из чётных цифр, выделяются синим
+        drawOutlines(canvas, Arrays.asList(
+                new TiledRasterizer.Outline(otherMarkers, markerStroke, Color.BLACK),
+                new TiledRasterizer.Outline(evenMarkers, markerStroke, Color.BLUE)));
+    }
+
+    // Добавить в путь маркер-крест с центром (x, y) и перпендикулярными штрихами на концах
+    private static void appendMarker(GeneralPath path, double x, double y) {
+        // Размер основных линий креста (половина полного размера)
+        int mainSize = MARKER_SIZE; // полный размер будет 11 точек
+        // Размер перпендикулярных линий на концах (половина длины)
+        int crossHalf = 2; // по 2 точки в каждую сторону
+        // Горизонтальная и вертикальная линии креста
+        path.moveTo(x - mainSize, y);
+        path.lineTo(x + mainSize, y);
+        path.moveTo(x, y - mainSize);
+        path.lineTo(x, y + mainSize);
+        // Перпендикулярные линии на концах: верхний, нижний, левый и правый
+        path.moveTo(x - crossHalf, y + mainSize);
+        path.lineTo(x + crossHalf, y + mainSize);
+        path.moveTo(x - crossHalf, y - mainSize);
+        path.lineTo(x + crossHalf, y - mainSize);
+        path.moveTo(x - mainSize, y - crossHalf);
+        path.lineTo(x - mainSize, y + crossHalf);
+        path.moveTo(x + mainSize, y - crossHalf);
+        path.lineTo(x + mainSize, y + crossHalf);
+    }
+
+    // Истина, если целая часть модуля value состоит только из чётных цифр
+    protected boolean hasOnlyEvenDigits(double value) {
+        return MarkerClassification.hasOnlyEvenDigits(value);
     }
 
 
@@ -513,4 +1468,49 @@ minY
         return new Point2D.Double(deltaX * scale, deltaY * scale);
     }
 
-}
\ No newline at end of file
+    // Обработчик мыши: колесо - масштабирование относительно курсора, перетаскивание - сдвиг
+    private class NavigationListener extends MouseAdapter {
+        // Предыдущее положение курсора при перетаскивании (null - перетаскивания нет)
+        private Point dragPoint;
+
+        public void mousePressed(MouseEvent e) {
+            if (graphicsData != null) {
+                dragPoint = e.getPoint();
+            }
+        }
+
+        public void mouseReleased(MouseEvent e) {
+            dragPoint = null;
+        }
+
+        public void mouseMoved(MouseEvent e) {
+            updateHover(e.getX(), e.getY());
+        }
+
+        public void mouseExited(MouseEvent e) {
+            clearHover();
+        }
+
+        public void mouseDragged(MouseEvent e) {
+            if (dragPoint == null) return;
+            // Обе точки переводятся одним и тем же преобразованием, поэтому сдвиг верен,
+            // даже если окно ещё не перерисовано после предыдущего сдвига
+            Point2D.Double previous = pointToXY(dragPoint.x, dragPoint.y);
+            Point2D.Double current = pointToXY(e.getX(), e.getY());
+            dragPoint = e.getPoint();
+            clearHover();
+            if (previous == null || current == null) return;
+            // Сдвинуть область так, чтобы взятая точка осталась под курсором
+            pan(previous.x - current.x, previous.y - current.y);
+        }
+
+        public void mouseWheelMoved(MouseWheelEvent e) {
+            if (graphicsData == null) return;
+            Point2D.Double center = pointToXY(e.getX(), e.getY());
+            if (center == null) return;
+            clearHover();
+            // Прокрутка от себя - увеличение, на себя - уменьшение
+            zoom(center.x, center.y, Math.pow(ZOOM_STEP, e.getPreciseWheelRotation()));
+        }
+    }
+}
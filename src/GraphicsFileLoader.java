@@ -0,0 +1,107 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/* Загрузчик файлов с данными графика.
+ * Файл - это последовательность пар чисел double (X, Y) в порядке big-endian
+ * (именно так их записывает DataOutputStream). Вместо чтения каждого числа
+ * через DataInputStream файл отображается в память (FileChannel.map), а числа
+ * извлекаются блоками через представление DoubleBuffer.
+ * Файлы-контейнеры с заголовком и индексом (PlotContainer) распознаются по магическому
+ * числу в начале и читаются через PlotContainer, поэтому load открывает оба формата.
+ */
+public class GraphicsFileLoader {
+    /* Получатель сведений о ходе загрузки. Вызывается в потоке загрузки после каждого
+     * окна отображения; prefix - уже прочитанные точки (массивы общие с итоговым набором),
+     * total - общее количество точек в файле.
+     */
+    public interface ProgressListener {
+        void loaded(PointSeries prefix, int total);
+    }
+
+    // Размер одного числа double в байтах
+    public static final int DOUBLE_BYTES = Double.SIZE / 8;
+    // Размер одной пары координат (X, Y) в байтах
+    public static final int PAIR_BYTES = 2 * DOUBLE_BYTES;
+    // Размер окна отображения файла в память (кратен размеру пары)
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+    // Размер промежуточного буфера в числах (чётный, чтобы пары не разрывались)
+    private static final int CHUNK_DOUBLES = 8192;
+
+    // Проверить длину файла и вычислить количество пар координат в нём
+    public static int pairCount(long length) throws IOException {
+        if (length % DOUBLE_BYTES != 0) {
+            throw new IOException("Длина файла (" + length + " байт) не кратна размеру числа double: "
+                    + (length % DOUBLE_BYTES) + " лишних байт в конце");
+        }
+        if (length % PAIR_BYTES != 0) {
+            throw new IOException("Файл обрезан: у последней точки нет координаты Y");
+        }
+        long pairs = length / PAIR_BYTES;
+        // Каждая координата хранится в своём массиве, поэтому количество точек ограничено размером массива Java
+        if (pairs > Integer.MAX_VALUE - 8) {
+            throw new IOException("Файл слишком велик: " + pairs + " точек");
+        }
+        return (int) pairs;
+    }
+
+    /* Файл, который можно открыть как файл с точками: не каталог и не служебный файл программы
+     * (файл сводок SummaryCache лежит рядом с файлом данных). Общий признак для выбора файла
+     * в окне и для просмотра каталогов при пакетном построении изображений.
+     */
+    public static boolean isDataFile(File file) {
+        return file.isFile() && !SummaryCache.isSidecar(file);
+    }
+
+    // Прочитать файл целиком и разложить координаты по столбцам X и Y
+    public static PointSeries load(File file) throws IOException {
+        return load(file, null);
+    }
+
+    /* То же с уведомлением о ходе загрузки (listener может быть null).
+     * Если поток загрузки прерван, чтение останавливается с InterruptedIOException.
+     */
+    public static PointSeries load(File file, ProgressListener listener) throws IOException {
+        if (PlotContainer.isContainer(file)) {
+            return PlotContainer.read(file, listener);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            int pairs = pairCount(length);
+            double[] xs = new double[pairs];
+            double[] ys = new double[pairs];
+            // Промежуточный буфер: числа извлекаются из файла блоками, затем раскладываются по столбцам
+            double[] chunk = new double[CHUNK_DOUBLES];
+            int index = 0;
+            long position = 0;
+            // Файлы больше 2 Гб нельзя отобразить одним буфером, поэтому отображаем окнами
+            while (position < length) {
+                long size = Math.min(MAP_WINDOW, length - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                // Порядок байт буфера по умолчанию - big-endian, как в DataOutputStream
+                DoubleBuffer doubles = buffer.asDoubleBuffer();
+                while (doubles.hasRemaining()) {
+                    int count = Math.min(chunk.length, doubles.remaining());
+                    doubles.get(chunk, 0, count);
+                    for (int i = 0; i < count; i += 2) {
+                        xs[index] = chunk[i];
+                        ys[index] = chunk[i + 1];
+                        index++;
+                    }
+                }
+                position += size;
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Загрузка файла отменена");
+                }
+                if (listener != null && index < pairs) {
+                    listener.loaded(new PointSeries(xs, ys, index), pairs);
+                }
+            }
+            return new PointSeries(xs, ys, pairs);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.EnumMap;
+import java.util.Map;
+
+/* Кэш слоёв изображения графика.
+ * Каждый слой (оси, сетка, линия графика, маркеры) рисуется в собственное прозрачное
+ * изображение вне экрана. Изображение помечается ключом - набором всех параметров,
+ * от которых зависит содержимое слоя (размер, данные, видимая область, поворот осей).
+ * Пока ключ не изменился, слой не перерисовывается, а просто накладывается на холст,
+ * поэтому включение и выключение слоёв через меню не требует повторного рисования линии.
+ */
+public class LayerCache {
+    // Слои в порядке наложения
+    public enum Layer { AXIS, GRID, GRAPHICS, MARKERS }
+
+    // Процедура рисования содержимого слоя
+    public interface LayerPainter {
+        void paint(Graphics2D canvas);
+    }
+
+    private final Map<Layer, Entry> entries = new EnumMap<>(Layer.class);
+    // Счётчики попаданий и промахов - для проверки эффективности кэша
+    private long hits;
+    private long misses;
+
+    /* Получить изображение слоя размером width x height пикселов устройства.
+     * Если сохранённое изображение построено для другого ключа, слой перерисовывается:
+     * painter получает холст, уже масштабированный на deviceScaleX, deviceScaleY.
+     */
+    public BufferedImage get(Layer layer, Object key, int width, int height,
+                             double deviceScaleX, double deviceScaleY, LayerPainter painter) {
+        Entry entry = entries.get(layer);
+        if (entry != null && entry.key.equals(key)) {
+            hits++;
+            return entry.image;
+        }
+        misses++;
+        BufferedImage image;
+        if (entry != null && entry.image.getWidth() == width && entry.image.getHeight() == height) {
+            // Размер не изменился - изображение переиспользуется, его нужно только очистить
+            image = entry.image;
+        } else {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        Graphics2D canvas = image.createGraphics();
+        try {
+            canvas.setComposite(AlphaComposite.Clear);
+            canvas.fillRect(0, 0, width, height);
+            canvas.setComposite(AlphaComposite.SrcOver);
+            canvas.scale(deviceScaleX, deviceScaleY);
+            painter.paint(canvas);
+        } finally {
+            canvas.dispose();
+        }
+        entries.put(layer, new Entry(key, image, deviceScaleX, deviceScaleY));
+        return image;
+    }
+
+    /* Дорисовать содержимое поверх сохранённого изображения слоя, не очищая его,
+     * и пометить изображение новым ключом. Так к линии графика добавляются новые точки
+     * без перерисовки старых. Возвращает ложь, если изображение слоя построено не для
+     * ключа expectedKey (тогда слой будет полностью перерисован при следующем обращении).
+     */
+    public boolean append(Layer layer, Object expectedKey, Object newKey, LayerPainter painter) {
+        Entry entry = entries.get(layer);
+        if (entry == null || !entry.key.equals(expectedKey)) {
+            return false;
+        }
+        Graphics2D canvas = entry.image.createGraphics();
+        try {
+            canvas.scale(entry.deviceScaleX, entry.deviceScaleY);
+            painter.paint(canvas);
+        } finally {
+            canvas.dispose();
+        }
+        entries.put(layer, new Entry(newKey, entry.image, entry.deviceScaleX, entry.deviceScaleY));
+        return true;
+    }
+
+    // Забыть все слои (например, при смене данных)
+    public void invalidate() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    private static class Entry {
+        final Object key;
+        final BufferedImage image;
+        final double deviceScaleX;
+        final double deviceScaleY;
+
+        Entry(Object key, BufferedImage image, double deviceScaleX, double deviceScaleY) {
+            this.key = key;
+            this.image = image;
+            this.deviceScaleX = deviceScaleX;
+            this.deviceScaleY = deviceScaleY;
+        }
+    }
+}
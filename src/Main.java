@@ -1,21 +1,34 @@
 import java.awt.BorderLayout;
+import java.awt.GridLayout;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.event.MenuEvent;
 import javax.swing.event.MenuListener;
+import javax.swing.filechooser.FileFilter;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 @SuppressWarnings("serial")
 public class Main extends JFrame {
@@ -29,10 +42,47 @@ private JFileChooser fileChooser = null;
     private JCheckBoxMenuItem showRotateMenuItem;
     private JCheckBoxMenuItem showMarkersMenuItem;
     private JCheckBoxMenuItem showGridMenuItem;
+    private JCheckBoxMenuItem smoothDecimationMenuItem;
+    private JCheckBoxMenuItem showStatisticsMenuItem;
+    private JCheckBoxMenuItem tiledRenderingMenuItem;
+    private JCheckBoxMenuItem showSummaryMenuItem;
+    private JMenuItem resetViewMenuItem;
+    // Подменю со списком графиков для сравнения; пункт убирает соответствующий график
+    private JMenu removeSeriesMenu;
+    private Action addSeriesAction;
+    private Action exportAction;
     // Компонент-отображатель графика
     private GraphicsDisplay display = new GraphicsDisplay();
+    // Боковая панель сводки данных основного графика
+    private StatisticsPanel statisticsPanel = new StatisticsPanel();
     // Флаг, указывающий на загруженность данных графика
     private boolean fileLoaded = false;
+    // Интервал обновления графика при постепенной загрузке, мс
+    private static final long REFRESH_INTERVAL = 250;
+    // Сколько ошибочных строк текстового файла перечисляется в сообщении
+    private static final int MAX_SHOWN_ERRORS = 10;
+    // Наборы недавно открытых файлов в памяти; по умолчанию им отводится четверть кучи
+    private final DatasetCache datasetCache = new DatasetCache(Runtime.getRuntime().maxMemory() / 4);
+    // Недавно открытые файлы (первый - открытый последним) и подменю с ними
+    private final List<File> recentFiles = new ArrayList<>();
+    private static final int MAX_RECENT_FILES = 10;
+    private JMenu recentMenu;
+    // Последние введённые выражение функции и границы отрезка
+    private String functionText = "sin(x)/x";
+    private String functionFrom = "-20";
+    private String functionTo = "20";
+    // Текущая фоновая загрузка файла (null, если загрузки нет)
+    private SwingWorker<?, ?> loadWorker = null;
+    // Индикатор хода загрузки, показывается внизу окна только во время загрузки
+    private JProgressBar progressBar = new JProgressBar(0, 100);
+    private Action cancelLoadAction;
+    // Слежение за дописываемым файлом (null, если слежения нет)
+    private FileFollower follower = null;
+    private JCheckBoxMenuItem followFileMenuItem;
+    // Последний полученный при слежении набор точек, ещё не переданный в окно
+    private final AtomicReference<PointSeries> pendingTail = new AtomicReference<>();
+    // Истина, если при текущем слежении точки уже показаны
+    private boolean tailShown = false;
     public Main() {
 // Вызов конструктора предка Frame
         super("Построение графиков функций на основе заранее подготовленных файлов");
@@ -53,16 +103,100 @@ private JFileChooser fileChooser = null;
 // Создать действие по открытию файла
         Action openGraphicsAction = new AbstractAction("Открыть файл с графиком") {
         public void actionPerformed(ActionEvent event) {
-            if (fileChooser==null) {
-                fileChooser = new JFileChooser();
-                fileChooser.setCurrentDirectory(new File("."));
-            }
+            if (fileChooser==null) fileChooser = createFileChooser();
             if (fileChooser.showOpenDialog(Main.this) == JFileChooser.APPROVE_OPTION)
                 openGraphics(fileChooser.getSelectedFile());
         }
     };
 // Добавить соответствующий элемент меню
 fileMenu.add(openGraphicsAction);
+// Создать действие по импорту точек из текстового файла (CSV или числа через пробел)
+        Action importTextAction = new AbstractAction("Импортировать текстовый файл (CSV)") {
+        public void actionPerformed(ActionEvent event) {
+            if (fileChooser==null) fileChooser = createFileChooser();
+            if (fileChooser.showOpenDialog(Main.this) == JFileChooser.APPROVE_OPTION)
+                importText(fileChooser.getSelectedFile());
+        }
+    };
+fileMenu.add(importTextAction);
+// Создать действие для построения графика функции, заданной выражением от x
+        Action plotFunctionAction = new AbstractAction("Построить график функции...") {
+        public void actionPerformed(ActionEvent event) {
+            plotFunction();
+        }
+    };
+fileMenu.add(plotFunctionAction);
+// Подменю недавно открытых файлов: файл, набор которого сохранён в памяти, показывается сразу.
+// Пункты и сведения о кэше обновляются при каждом показе подменю
+        recentMenu = new JMenu("Недавние файлы");
+        recentMenu.addMenuListener(new RecentMenuListener());
+fileMenu.add(recentMenu);
+// Создать действие по отмене загрузки; доступно, только пока файл загружается
+        cancelLoadAction = new AbstractAction("Отменить загрузку") {
+        public void actionPerformed(ActionEvent event) {
+            cancelLoading();
+        }
+    };
+        cancelLoadAction.setEnabled(false);
+fileMenu.add(cancelLoadAction);
+// Создать действие для слежения за файлом, который дописывается другим процессом
+        Action followFileAction = new AbstractAction("Следить за файлом") {
+        public void actionPerformed(ActionEvent event) {
+            if (followFileMenuItem.isSelected()) {
+                if (fileChooser==null) fileChooser = createFileChooser();
+                if (fileChooser.showOpenDialog(Main.this) == JFileChooser.APPROVE_OPTION) {
+                    followGraphics(fileChooser.getSelectedFile());
+                } else {
+                    followFileMenuItem.setSelected(false);
+                }
+            } else {
+                stopFollowing();
+            }
+        }
+    };
+        followFileMenuItem = new JCheckBoxMenuItem(followFileAction);
+fileMenu.add(followFileMenuItem);
+// Создать действие для добавления графиков из других файлов поверх основного (для сравнения);
+// можно выбрать сразу несколько файлов, они загружаются параллельно
+        addSeriesAction = new AbstractAction("Добавить графики для сравнения") {
+        public void actionPerformed(ActionEvent event) {
+            JFileChooser seriesChooser = createFileChooser();
+            seriesChooser.setCurrentDirectory(fileChooser != null ? fileChooser.getCurrentDirectory() : new File("."));
+            seriesChooser.setMultiSelectionEnabled(true);
+            if (seriesChooser.showOpenDialog(Main.this) == JFileChooser.APPROVE_OPTION) {
+                for (File file : seriesChooser.getSelectedFiles()) {
+                    addGraphics(file);
+                }
+            }
+        }
+    };
+        addSeriesAction.setEnabled(false);
+fileMenu.add(addSeriesAction);
+// Создать действие для сохранения изображения графика в векторный файл (SVG или PDF);
+// файл пишется в фоновом потоке с копии отображателя, окно тем временем остаётся доступным
+        exportAction = new AbstractAction("Экспортировать в SVG/PDF") {
+        public void actionPerformed(ActionEvent event) {
+            JFileChooser exportChooser = new JFileChooser();
+            exportChooser.setCurrentDirectory(fileChooser != null ? fileChooser.getCurrentDirectory() : new File("."));
+            FileNameExtensionFilter svgFilter = new FileNameExtensionFilter("Рисунок SVG", "svg");
+            FileNameExtensionFilter pdfFilter = new FileNameExtensionFilter("Документ PDF", "pdf");
+            exportChooser.addChoosableFileFilter(svgFilter);
+            exportChooser.addChoosableFileFilter(pdfFilter);
+            exportChooser.setFileFilter(svgFilter);
+            if (exportChooser.showSaveDialog(Main.this) == JFileChooser.APPROVE_OPTION) {
+                File file = exportChooser.getSelectedFile();
+// Формат определяется расширением, а без него - выбранным фильтром
+                VectorExporter.Format format = VectorExporter.formatOf(file);
+                if (format == null) {
+                    format = exportChooser.getFileFilter() == pdfFilter ? VectorExporter.Format.PDF : VectorExporter.Format.SVG;
+                    file = new File(file.getPath() + "." + format.getExtension());
+                }
+                new ExportWorker(display.snapshot(), file, format).execute();
+            }
+        }
+    };
+        exportAction.setEnabled(false);
+fileMenu.add(exportAction);
     // Создать пункт меню "График"
     JMenu graphicsMenu = new JMenu("График");
 menuBar.add(graphicsMenu);
@@ -121,56 +255,303 @@ showMarkersMenuItem = new JCheckBoxMenuItem(showMarkersAction);
 graphicsMenu.add(showMarkersMenuItem);
 // Элемент по умолчанию включен (отмечен флажком)
 showMarkersMenuItem.setSelected(true);
+// Способ прореживания линии графика: по умолчанию M4 (огибающая сохраняется точно),
+// при отмеченном флажке - LTTB (более гладкая линия)
+Action smoothDecimationAction = new AbstractAction("Сглаживающее прореживание (LTTB)") {
+public void actionPerformed(ActionEvent event) {
+    display.setDecimationMode(smoothDecimationMenuItem.isSelected() ? Decimator.Mode.LTTB : Decimator.Mode.M4);
+}
+};
+smoothDecimationMenuItem = new JCheckBoxMenuItem(smoothDecimationAction);
+graphicsMenu.add(smoothDecimationMenuItem);
+smoothDecimationMenuItem.setSelected(false);
+// Сводка времени отрисовки кадров и слоёв поверх графика (для поиска медленных перерисовок)
+Action showStatisticsAction = new AbstractAction("Показывать статистику отрисовки") {
+public void actionPerformed(ActionEvent event) {
+    display.setShowStatistics(showStatisticsMenuItem.isSelected());
+}
+};
+showStatisticsMenuItem = new JCheckBoxMenuItem(showStatisticsAction);
+graphicsMenu.add(showStatisticsMenuItem);
+showStatisticsMenuItem.setSelected(false);
+// Линия и маркеры рисуются полосами одновременно на всех ядрах процессора
+Action tiledRenderingAction = new AbstractAction("Параллельная отрисовка полосами") {
+public void actionPerformed(ActionEvent event) {
+    display.setTiledRendering(tiledRenderingMenuItem.isSelected());
+}
+};
+tiledRenderingMenuItem = new JCheckBoxMenuItem(tiledRenderingAction);
+graphicsMenu.add(tiledRenderingMenuItem);
+tiledRenderingMenuItem.setSelected(false);
+// Боковая панель со статистикой значений, вычисленной при загрузке файла
+Action showSummaryAction = new AbstractAction("Показывать сводку данных") {
+public void actionPerformed(ActionEvent event) {
+    statisticsPanel.setVisible(showSummaryMenuItem.isSelected());
+    getContentPane().revalidate();
+}
+};
+showSummaryMenuItem = new JCheckBoxMenuItem(showSummaryAction);
+graphicsMenu.add(showSummaryMenuItem);
+showSummaryMenuItem.setSelected(true);
+// Действие для возврата к отображению всего графика после масштабирования колесом мыши
+Action resetViewAction = new AbstractAction("Показать весь график") {
+public void actionPerformed(ActionEvent event) {
+    display.resetView();
+}
+};
+graphicsMenu.addSeparator();
+resetViewMenuItem = graphicsMenu.add(resetViewAction);
+// Список графиков для сравнения заполняется при каждом показе меню
+removeSeriesMenu = new JMenu("Убрать график для сравнения");
+graphicsMenu.add(removeSeriesMenu);
 // Зарегистрировать обработчик событий, связанных с меню "График"
 graphicsMenu.addMenuListener(new GraphicsMenuListener());
 // Установить GraphicsDisplay в цент граничной компоновки
 getContentPane().add(display, BorderLayout.CENTER);
+// Панель сводки - справа от графика
+getContentPane().add(statisticsPanel, BorderLayout.EAST);
+// Индикатор загрузки располагается внизу окна
+progressBar.setStringPainted(true);
+progressBar.setVisible(false);
+getContentPane().add(progressBar, BorderLayout.SOUTH);
+}
+// Считывание данных графика из существующего файла.
+// Окно выбора файла с точками: файлы сводок, которые программа пишет рядом с файлами данных, не показываются
+private JFileChooser createFileChooser() {
+    JFileChooser chooser = new JFileChooser();
+    chooser.setCurrentDirectory(new File("."));
+    chooser.setAcceptAllFileFilterUsed(false);
+    chooser.setFileFilter(new FileFilter() {
+        public boolean accept(File file) {
+            return file.isDirectory() || GraphicsFileLoader.isDataFile(file);
+        }
+
+        public String getDescription() {
+            return "Файлы с точками";
+        }
+    });
+    return chooser;
 }
-// Считывание данных графика из существующего файла
+// Файл читается в фоновом потоке, окно при этом не блокируется, а уже прочитанная часть
+// графика показывается по мере загрузки. Новая загрузка отменяет незавершённую предыдущую.
+// Файл, который не поместится в памяти, не загружается, а отображается в память (OutOfCoreSeries)
 protected void openGraphics(File selectedFile) {
+// Файлы .csv и .txt импортируются как текстовые
+    if (TextImporter.isTextFile(selectedFile)) {
+        importText(selectedFile);
+        return;
+    }
+    if (showCached(selectedFile)) return;
+    cancelLoading();
+    stopFollowing();
+    boolean outOfCore;
     try {
-// Шаг 1 - Открыть поток чтения данных, связанный с входным файловым потоком
-        DataInputStream in = new DataInputStream(new FileInputStream(selectedFile));
-/* Шаг 2 - Зная объѐм данных в потоке ввода можно вычислить,
-* сколько памяти нужно зарезервировать в массиве:
-* Всего байт в потоке - in.available() байт;
-* Размер одного числа Double - Double.SIZE бит, или
-Double.SIZE/8 байт;
-* Так как числа записываются парами, то число пар меньше в
-2 раза
-*/
-        Double[][] graphicsData = new Double[in.available()/(Double.SIZE/8)/2][];
-// Шаг 3 - Цикл чтения данных (пока в потоке есть данные)
-        int i = 0;
-        while (in.available()>0) {
-// Первой из потока читается координата точки X
-            Double x = in.readDouble();
-// Затем - значение графика Y в точке X
-            Double y = in.readDouble();
-// Прочитанная пара координат добавляется в массив
-            graphicsData[i++] = new Double[] {x, y};
-        }
-// Шаг 4 - Проверка, имеется ли в списке в результате чтения хотя бы одна пара координат
-        if (graphicsData!=null && graphicsData.length>0) {
-// Да - установить флаг загруженности данных
-            fileLoaded = true;
-// Вызывать метод отображения графика
-            display.showGraphics(graphicsData);
+        outOfCore = OutOfCoreSeries.isPreferred(selectedFile);
+    } catch (IOException ex) {
+// Ошибка будет показана фоновой загрузкой
+        outOfCore = false;
+    }
+    statisticsPanel.clear();
+    startLoading(outOfCore ? new OutOfCoreLoadWorker(selectedFile) : new GraphicsLoadWorker(selectedFile), selectedFile);
+}
+// Импорт точек из текстового файла в фоновом потоке; строки с ошибками пропускаются,
+// а их номера показываются после импорта
+protected void importText(File selectedFile) {
+    if (showCached(selectedFile)) return;
+    cancelLoading();
+    stopFollowing();
+    statisticsPanel.clear();
+    startLoading(new TextLoadWorker(selectedFile), selectedFile);
+}
+// Запросить выражение и отрезок и построить график функции. Точки вычисляются по выражению
+// для видимой области (FunctionSource), поэтому файл не нужен, а при увеличении график не грубеет.
+// При ошибке в выражении окно ввода показывается снова с тем же текстом
+protected void plotFunction() {
+    JTextField expressionField = new JTextField(functionText, 24);
+    JTextField fromField = new JTextField(functionFrom, 8);
+    JTextField toField = new JTextField(functionTo, 8);
+    JPanel panel = new JPanel(new GridLayout(0, 2, 4, 4));
+    panel.add(new JLabel("y ="));
+    panel.add(expressionField);
+    panel.add(new JLabel("x от"));
+    panel.add(fromField);
+    panel.add(new JLabel("x до"));
+    panel.add(toField);
+    while (JOptionPane.showConfirmDialog(Main.this, panel, "График функции", JOptionPane.OK_CANCEL_OPTION,
+            JOptionPane.PLAIN_MESSAGE) == JOptionPane.OK_OPTION) {
+        functionText = expressionField.getText();
+        functionFrom = fromField.getText();
+        functionTo = toField.getText();
+        FunctionSource source;
+        try {
+            FunctionExpression expression = parseFunctionPart(functionText, "y", false);
+            double from = parseFunctionPart(functionFrom, "x от", true).evaluate(0);
+            double to = parseFunctionPart(functionTo, "x до", true).evaluate(0);
+            if (!(from < to)) {
+                throw new ParseException("Левый конец отрезка должен быть меньше правого", 0);
+            }
+            source = new FunctionSource(expression, from, to);
+        } catch (ParseException ex) {
+            JOptionPane.showMessageDialog(Main.this, ex.getMessage(), "Ошибка в выражении", JOptionPane.WARNING_MESSAGE);
+            continue;
         }
-// Шаг 5 - Закрыть входной поток
-        in.close();
-    } catch (FileNotFoundException ex) {
-// В случае исключительной ситуации типа "Файл не найден" показать сообщение об ошибке
+        cancelLoading();
+        stopFollowing();
+        fileLoaded = true;
+        addSeriesAction.setEnabled(true);
+        exportAction.setEnabled(true);
+        display.showGraphics(source);
+        statisticsPanel.show(source.overview().summary(), source.overview().statistics());
+        return;
+    }
+}
+// Разобрать поле окна построения функции; сообщение об ошибке указывает поле и позицию в нём.
+// Границы отрезка - тоже выражения (например, 2pi), но без x
+private static FunctionExpression parseFunctionPart(String text, String field, boolean constant) throws ParseException {
+    try {
+        FunctionExpression expression = FunctionExpression.parse(text);
+        if (constant && (!expression.isConstant() || !Double.isFinite(expression.evaluate(0)))) {
+            throw new ParseException("должно быть конечным числом", 0);
+        }
+        return expression;
+    } catch (ParseException ex) {
+        throw new ParseException("Поле \"" + field + "\": " + ex.getMessage()
+                + " (позиция " + (ex.getErrorOffset() + 1) + ")", ex.getErrorOffset());
+    }
+}
+// Показать набор файла из кэша недавних файлов без чтения файла; false, если набора в кэше нет
+private boolean showCached(File selectedFile) {
+    DatasetCache.Dataset dataset = datasetCache.get(selectedFile);
+    if (dataset == null) return false;
+    cancelLoading();
+    stopFollowing();
+    fileLoaded = true;
+    addSeriesAction.setEnabled(true);
+    exportAction.setEnabled(true);
+    if (dataset.getSource() != null) {
+        display.showGraphics(dataset.getSource());
+        statisticsPanel.show(dataset.getSource().summary(), dataset.getSource().statistics());
+    } else {
+        display.showGraphics(dataset.getSeries());
+        statisticsPanel.show(dataset.getSeries().summary(), dataset.getSeries().statistics());
+    }
+    rememberRecent(selectedFile);
+    return true;
+}
+// Поставить файл первым в списке недавних файлов
+private void rememberRecent(File file) {
+    File absolute = file.getAbsoluteFile();
+    recentFiles.remove(absolute);
+    recentFiles.add(0, absolute);
+    if (recentFiles.size() > MAX_RECENT_FILES) {
+        recentFiles.remove(recentFiles.size() - 1);
+    }
+}
+// Запустить фоновую загрузку с индикатором хода в нижней части окна
+private void startLoading(SwingWorker<?, ?> worker, File selectedFile) {
+    loadWorker = worker;
+    loadWorker.addPropertyChangeListener(event -> {
+        if ("progress".equals(event.getPropertyName())) {
+            progressBar.setValue((Integer) event.getNewValue());
+        }
+    });
+    progressBar.setValue(0);
+    progressBar.setString("Загрузка " + selectedFile.getName());
+    progressBar.setVisible(true);
+    cancelLoadAction.setEnabled(true);
+    loadWorker.execute();
+}
+// Добавить график из файла для сравнения с основным. Файл читается в фоновом потоке;
+// пока он читается, основной график и другие графики для сравнения не меняются
+protected void addGraphics(File selectedFile) {
+    new SeriesLoadWorker(selectedFile).execute();
+}
+// Начать слежение за файлом: показываются уже имеющиеся в нём точки, а затем дописываемые.
+// Новые точки читаются в фоновом потоке и передаются в окно не чаще, чем окно успевает их показать
+protected void followGraphics(File selectedFile) {
+    cancelLoading();
+    stopFollowing();
+    statisticsPanel.clear();
+    FileFollower newFollower = new FileFollower(selectedFile, new FileFollower.Listener() {
+        public void appended(PointSeries series) {
+// Статистика вычисляется в потоке слежения; для дополненного набора - только по новым точкам
+            series.statistics();
+// Если предыдущий набор ещё не показан, он просто заменяется новым
+            if (pendingTail.getAndSet(series) == null) {
+                SwingUtilities.invokeLater(Main.this::showPendingTail);
+            }
+        }
+
+        public void failed(IOException ex) {
+            SwingUtilities.invokeLater(() -> {
+                stopFollowing();
+                JOptionPane.showMessageDialog(Main.this, "Ошибка чтения координат точек из файла: " + ex.getMessage(),
+                        "Ошибка слежения за файлом", JOptionPane.WARNING_MESSAGE);
+            });
+        }
+    });
+    try {
+        newFollower.start();
+    } catch (NoSuchFileException ex) {
+        followFileMenuItem.setSelected(false);
         JOptionPane.showMessageDialog(Main.this, "Указанный файл не найден", "Ошибка загрузки данных", JOptionPane.WARNING_MESSAGE);
         return;
     } catch (IOException ex) {
-// В случае ошибки ввода из файлового потока показать сообщение об ошибке
-        JOptionPane.showMessageDialog(Main.this, "Ошибка чтения координат точек из файла", "Ошибка загрузки данных",
+        followFileMenuItem.setSelected(false);
+        JOptionPane.showMessageDialog(Main.this, "Ошибка чтения координат точек из файла: " + ex.getMessage(), "Ошибка загрузки данных",
                 JOptionPane.WARNING_MESSAGE);
         return;
     }
+    follower = newFollower;
+    tailShown = false;
+    followFileMenuItem.setSelected(true);
+    display.setLive(true);
+}
+// Передать в окно последний полученный при слежении набор точек
+private void showPendingTail() {
+    PointSeries series = pendingTail.getAndSet(null);
+    if (series == null || follower == null) return;
+    fileLoaded = true;
+    addSeriesAction.setEnabled(true);
+    exportAction.setEnabled(true);
+// Первый набор показывается целиком, следующие дополняют уже показанный
+    if (!tailShown) {
+        tailShown = true;
+        display.showGraphics(series);
+    } else {
+        display.appendGraphics(series);
+    }
+    statisticsPanel.show(series.summary(), series.statistics());
+}
+// Остановить слежение за файлом, если оно идёт
+protected void stopFollowing() {
+    if (follower != null) {
+        follower.stop();
+        follower = null;
+        pendingTail.set(null);
+        display.setLive(false);
+    }
+    followFileMenuItem.setSelected(false);
+}
+// Отменить текущую загрузку файла, если она идёт
+protected void cancelLoading() {
+    if (loadWorker != null) {
+        loadWorker.cancel(true);
+        loadingFinished();
+    }
+}
+// Скрыть индикатор загрузки
+private void loadingFinished() {
+    loadWorker = null;
+    progressBar.setVisible(false);
+    cancelLoadAction.setEnabled(false);
 }
 public static void main(String[] args) {
+// С ключом --batch изображения строятся без окна (см. BatchRenderer)
+    if (args.length > 0 && args[0].equals("--batch")) {
+        BatchRenderer.main(args);
+        return;
+    }
 // Создать и показать экземпляр главного окна приложения
     Main frame = new Main();
     frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -185,6 +566,22 @@ private class GraphicsMenuListener implements MenuListener {
         showRotateMenuItem.setEnabled(fileLoaded);
         showGridMenuItem.setEnabled(fileLoaded);
         showMarkersMenuItem.setEnabled(fileLoaded);
+        smoothDecimationMenuItem.setEnabled(fileLoaded);
+        showStatisticsMenuItem.setEnabled(fileLoaded);
+        tiledRenderingMenuItem.setEnabled(fileLoaded);
+        showSummaryMenuItem.setEnabled(fileLoaded);
+// Возврат к полному графику имеет смысл, только если масштаб изменён
+        resetViewMenuItem.setEnabled(fileLoaded && display.isZoomed());
+// Пункты подменю соответствуют графикам для сравнения, показанным в данный момент
+        removeSeriesMenu.removeAll();
+        for (PlotSeries series : display.getSeries()) {
+            removeSeriesMenu.add(new AbstractAction(series.getName()) {
+                public void actionPerformed(ActionEvent event) {
+                    display.removeSeries(series);
+                }
+            });
+        }
+        removeSeriesMenu.setEnabled(!display.getSeries().isEmpty());
     }
     // Обработчик, вызываемый после того, как меню исчезло с экрана
     public void menuDeselected(MenuEvent e) {
@@ -193,4 +590,352 @@ private class GraphicsMenuListener implements MenuListener {
     public void menuCanceled(MenuEvent e) {
     }
 }
-}
\ No newline at end of file
+// Класс-слушатель показа подменю "Недавние файлы": пункты строятся заново при каждом показе
+private class RecentMenuListener implements MenuListener {
+    public void menuSelected(MenuEvent e) {
+        recentMenu.removeAll();
+        for (File file : recentFiles) {
+// Файлы, наборы которых сохранены в памяти, отмечаются - они открываются без чтения
+            String name = file.getName() + (datasetCache.contains(file) ? " (в памяти)" : "");
+            JMenuItem item = recentMenu.add(new AbstractAction(name) {
+                public void actionPerformed(ActionEvent event) {
+                    openGraphics(file);
+                }
+            });
+            item.setToolTipText(file.getPath());
+        }
+        if (recentFiles.isEmpty()) {
+            recentMenu.add("Нет недавних файлов").setEnabled(false);
+        }
+        recentMenu.addSeparator();
+// Сведения о кэше: занятая память, попадания, промахи и вытеснения
+        long megabyte = 1024 * 1024;
+        String info = "В памяти наборов: " + datasetCache.size() + ", " + (datasetCache.getBytes() + megabyte - 1) / megabyte
+                + " из " + datasetCache.getBudget() / megabyte + " Мб; попаданий " + datasetCache.getHits()
+                + ", промахов " + datasetCache.getMisses() + ", вытеснено " + datasetCache.getEvictions();
+        if (datasetCache.isSoftEviction()) {
+            info += " (ещё не освобождено " + datasetCache.softSize() + ")";
+        }
+        recentMenu.add(info).setEnabled(false);
+        recentMenu.add(new AbstractAction("Объём памяти для недавних файлов...") {
+            public void actionPerformed(ActionEvent event) {
+                String value = JOptionPane.showInputDialog(Main.this, "Объём памяти для наборов недавних файлов, Мб:",
+                        datasetCache.getBudget() / megabyte);
+                if (value == null) return;
+                try {
+                    long budget = Long.parseLong(value.trim());
+                    if (budget < 0) throw new NumberFormatException();
+                    datasetCache.setBudget(budget * megabyte);
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(Main.this, "Объём памяти должен быть целым неотрицательным числом",
+                            "Ошибка ввода", JOptionPane.WARNING_MESSAGE);
+                }
+            }
+        });
+        JCheckBoxMenuItem softItem = new JCheckBoxMenuItem(new AbstractAction("Хранить вытесненные наборы, пока хватает памяти") {
+            public void actionPerformed(ActionEvent event) {
+                datasetCache.setSoftEviction(((JCheckBoxMenuItem) event.getSource()).isSelected());
+            }
+        });
+        softItem.setSelected(datasetCache.isSoftEviction());
+        recentMenu.add(softItem);
+        recentMenu.add(new AbstractAction("Освободить память недавних файлов") {
+            public void actionPerformed(ActionEvent event) {
+                datasetCache.clear();
+            }
+        });
+    }
+
+    public void menuDeselected(MenuEvent e) {
+    }
+
+    public void menuCanceled(MenuEvent e) {
+    }
+}
+// Фоновая загрузка файла. Промежуточные результаты - уже прочитанная часть точек -
+// передаются в поток обработки событий не чаще одного раза за REFRESH_INTERVAL
+private class GraphicsLoadWorker extends SwingWorker<PointSeries, PointSeries> {
+    private final File file;
+    // Время последней передачи промежуточного результата
+    private long lastPublished = 0;
+    // Истина, если часть графика уже показана
+    private boolean shown = false;
+    // Характеристики из файла сводок (null, если его не было или он устарел)
+    private volatile SummaryCache.Entry cached;
+
+    GraphicsLoadWorker(File file) {
+        this.file = file;
+    }
+
+    protected PointSeries doInBackground() throws IOException {
+        SummaryCache cache = SummaryCache.of(file);
+        cached = cache.read();
+        if (cached != null) {
+// Обзор из файла сводок показывается сразу, пока точки файла ещё читаются
+            PointSeries overview = cached.chunks().overview();
+            overview.summary();
+            overview.pyramid();
+            overview.markerClasses();
+            publish(overview);
+        }
+        PointSeries loaded = GraphicsFileLoader.load(file, (prefix, total) -> {
+            setProgress((int) (100L * prefix.size() / total));
+// Прочитанная часть точек не показывается вместо обзора - обзор охватывает весь график
+            if (cached != null) return;
+            long now = System.currentTimeMillis();
+            if (now - lastPublished >= REFRESH_INTERVAL) {
+                lastPublished = now;
+// Границы, пирамида и раскраска маркеров вычисляются здесь, чтобы не занимать поток обработки событий
+                prefix.summary();
+                prefix.pyramid();
+                prefix.markerClasses();
+                publish(prefix);
+            }
+        });
+// Сохранённые сводка, пирамида, раскраска маркеров и статистика не вычисляются заново
+        PointSeries graphicsData = cached != null ? cached.attach(loaded) : loaded;
+        graphicsData.summary();
+        graphicsData.pyramid();
+        graphicsData.markerClasses();
+// Для неупорядоченных данных - сетка поиска точки под курсором
+        if (!graphicsData.isSortedByX()) graphicsData.spatialGrid();
+// Статистика для панели сводки - один проход по уже прочитанным массивам
+        graphicsData.statistics();
+// Файл сводок записывается, если его не было или в нём нет того, что вычисляется при загрузке в память
+        if (cached == null || !cached.hasMarkerClasses()) {
+            cache.write(SummaryCache.Entry.of(graphicsData));
+        }
+        return graphicsData;
+    }
+
+    protected void process(List<PointSeries> chunks) {
+// Результаты отменённой загрузки не показываются
+        if (loadWorker != this) return;
+        show(chunks.get(chunks.size() - 1));
+        if (cached != null) {
+            statisticsPanel.show(cached.summary(), cached.statistics());
+        }
+    }
+
+    protected void done() {
+        if (loadWorker != this) return;
+        loadingFinished();
+        try {
+            PointSeries graphicsData = get();
+// Проверка, имеется ли в списке в результате чтения хотя бы одна пара координат
+            if (!graphicsData.isEmpty()) {
+                show(graphicsData);
+                statisticsPanel.show(graphicsData.summary(), graphicsData.statistics());
+                datasetCache.put(file, graphicsData);
+                rememberRecent(file);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof NoSuchFileException) {
+// В случае исключительной ситуации типа "Файл не найден" показать сообщение об ошибке
+                JOptionPane.showMessageDialog(Main.this, "Указанный файл не найден", "Ошибка загрузки данных", JOptionPane.WARNING_MESSAGE);
+            } else {
+// В случае ошибки ввода из файлового потока показать сообщение об ошибке
+                JOptionPane.showMessageDialog(Main.this, "Ошибка чтения координат точек из файла: " + ex.getCause().getMessage(), "Ошибка загрузки данных",
+                        JOptionPane.WARNING_MESSAGE);
+            }
+        }
+    }
+
+    private void show(PointSeries graphicsData) {
+// Установить флаг загруженности данных
+        fileLoaded = true;
+        addSeriesAction.setEnabled(true);
+        exportAction.setEnabled(true);
+// Первая порция показывается целиком, следующие - с сохранением выбранной области
+        if (shown) {
+            display.updateGraphics(graphicsData);
+        } else {
+            display.showGraphics(graphicsData);
+            shown = true;
+        }
+    }
+}
+// Фоновое открытие файла без загрузки в память: файл просматривается один раз,
+// чтобы построить обзор; график показывается, когда просмотр закончен
+private class OutOfCoreLoadWorker extends SwingWorker<OutOfCoreSeries, Void> {
+    private final File file;
+
+    OutOfCoreLoadWorker(File file) {
+        this.file = file;
+    }
+
+    protected OutOfCoreSeries doInBackground() throws IOException {
+        SummaryCache cache = SummaryCache.of(file);
+        SummaryCache.Entry cached = cache.read();
+        OutOfCoreSeries source = null;
+        if (cached != null) {
+// Со сведениями из файла сводок файл только отображается в память, без просмотра
+            try {
+                source = OutOfCoreSeries.open(file, cached.chunks(), cached.summary(), cached.statistics());
+            } catch (IOException ex) {
+// Сведения не подошли к файлу - он просматривается, как без файла сводок
+            }
+        }
+        if (source == null) {
+            source = OutOfCoreSeries.open(file,
+                    (points, total) -> setProgress((int) (100 * points / Math.max(1, total))));
+            cache.write(SummaryCache.Entry.of(source));
+        }
+        source.overview().pyramid();
+        source.overview().markerClasses();
+        return source;
+    }
+
+    protected void done() {
+        if (loadWorker != this) return;
+        loadingFinished();
+        try {
+            OutOfCoreSeries source = get();
+            if (source.size() > 0) {
+                fileLoaded = true;
+                addSeriesAction.setEnabled(true);
+                exportAction.setEnabled(true);
+                display.showGraphics(source);
+                statisticsPanel.show(source.summary(), source.statistics());
+                datasetCache.put(file, source);
+                rememberRecent(file);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof NoSuchFileException) {
+                JOptionPane.showMessageDialog(Main.this, "Указанный файл не найден", "Ошибка загрузки данных", JOptionPane.WARNING_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(Main.this, "Ошибка чтения координат точек из файла: " + ex.getCause().getMessage(), "Ошибка загрузки данных",
+                        JOptionPane.WARNING_MESSAGE);
+            }
+        }
+    }
+}
+// Фоновый импорт текстового файла: график показывается, когда разобран весь файл
+private class TextLoadWorker extends SwingWorker<TextImporter.Result, Void> {
+    private final File file;
+
+    TextLoadWorker(File file) {
+        this.file = file;
+    }
+
+    protected TextImporter.Result doInBackground() throws IOException {
+        TextImporter.Result result = TextImporter.read(file,
+                (bytes, total) -> setProgress((int) (100 * bytes / Math.max(1, total))));
+        PointSeries graphicsData = result.getSeries();
+        graphicsData.summary();
+        graphicsData.pyramid();
+        graphicsData.markerClasses();
+        if (!graphicsData.isSortedByX()) graphicsData.spatialGrid();
+        graphicsData.statistics();
+        return result;
+    }
+
+    protected void done() {
+        if (loadWorker != this) return;
+        loadingFinished();
+        try {
+            TextImporter.Result result = get();
+            PointSeries graphicsData = result.getSeries();
+            if (!graphicsData.isEmpty()) {
+                fileLoaded = true;
+                addSeriesAction.setEnabled(true);
+                exportAction.setEnabled(true);
+                display.showGraphics(graphicsData);
+                statisticsPanel.show(graphicsData.summary(), graphicsData.statistics());
+                datasetCache.put(file, graphicsData);
+                rememberRecent(file);
+            }
+            if (result.getMalformedCount() > 0) {
+// Показать первые ошибочные строки с номерами; остальные только подсчитываются
+                StringBuilder message = new StringBuilder("Пропущено строк с ошибками: " + result.getMalformedCount());
+                List<String> errors = result.getErrors();
+                for (int i = 0; i < Math.min(errors.size(), MAX_SHOWN_ERRORS); i++) {
+                    message.append('\n').append(errors.get(i));
+                }
+                if (result.getMalformedCount() > MAX_SHOWN_ERRORS) {
+                    message.append("\n...");
+                }
+                JOptionPane.showMessageDialog(Main.this, message.toString(), "Ошибки в файле " + file.getName(),
+                        JOptionPane.WARNING_MESSAGE);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof NoSuchFileException) {
+                JOptionPane.showMessageDialog(Main.this, "Указанный файл не найден", "Ошибка загрузки данных", JOptionPane.WARNING_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(Main.this, "Ошибка чтения координат точек из файла: " + ex.getCause().getMessage(), "Ошибка загрузки данных",
+                        JOptionPane.WARNING_MESSAGE);
+            }
+        }
+    }
+}
+// Фоновая загрузка файла с графиком для сравнения: файл читается целиком,
+// сводка и пирамида вычисляются в том же фоновом потоке
+private class SeriesLoadWorker extends SwingWorker<PointSeries, Void> {
+    private final File file;
+
+    SeriesLoadWorker(File file) {
+        this.file = file;
+    }
+
+    protected PointSeries doInBackground() throws IOException {
+        PointSeries data = TextImporter.isTextFile(file) ? TextImporter.read(file).getSeries() : GraphicsFileLoader.load(file);
+        data.summary();
+        data.pyramid();
+        if (!data.isSortedByX()) data.spatialGrid();
+        return data;
+    }
+
+    protected void done() {
+        try {
+            PointSeries data = get();
+            if (!data.isEmpty()) {
+                display.addSeries(data, file.getName());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof NoSuchFileException) {
+                JOptionPane.showMessageDialog(Main.this, "Указанный файл не найден: " + file.getName(), "Ошибка загрузки данных", JOptionPane.WARNING_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(Main.this, "Ошибка чтения координат точек из файла " + file.getName() + ": " + ex.getCause().getMessage(), "Ошибка загрузки данных",
+                        JOptionPane.WARNING_MESSAGE);
+            }
+        }
+    }
+}
+// Фоновая запись изображения графика в векторный файл. Рисуется копия отображателя,
+// снятая в потоке обработки событий, поэтому окно можно менять, пока файл пишется
+private class ExportWorker extends SwingWorker<Void, Void> {
+    private final GraphicsDisplay copy;
+    private final File file;
+    private final VectorExporter.Format format;
+
+    ExportWorker(GraphicsDisplay copy, File file, VectorExporter.Format format) {
+        this.copy = copy;
+        this.file = file;
+        this.format = format;
+    }
+
+    protected Void doInBackground() throws IOException {
+        VectorExporter.export(copy, file, format);
+        return null;
+    }
+
+    protected void done() {
+        try {
+            get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            JOptionPane.showMessageDialog(Main.this, "Ошибка записи файла " + file.getName() + ": " + ex.getCause().getMessage(), "Ошибка экспорта",
+                    JOptionPane.WARNING_MESSAGE);
+        }
+    }
+}
+}
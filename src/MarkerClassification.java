@@ -0,0 +1,79 @@
+import java.util.Arrays;
+
+/* Классификация точек для раскраски маркеров: точка выделяется, если целая часть
+ * модуля её Y состоит только из чётных цифр. Признак вычисляется один раз при загрузке
+ * и хранится битовой маской (по биту на точку), поэтому при перерисовке числа не
+ * преобразуются в строки.
+ */
+public class MarkerClassification {
+    // Биты признака "только чётные цифры", по 64 точки в слове
+    private final long[] evenDigits;
+    // Количество классифицированных точек
+    private final int size;
+
+    private MarkerClassification(long[] evenDigits, int size) {
+        this.evenDigits = evenDigits;
+        this.size = size;
+    }
+
+    // Классифицировать точки [0, size)
+    public static MarkerClassification compute(double[] ys, int size) {
+        return extend(null, ys, size);
+    }
+
+    /* Дополнить классификацию previous точками, дописанными в конец массива.
+     * Маска previous не меняется (её может читать другой поток), новая создаётся копированием.
+     */
+    public static MarkerClassification extend(MarkerClassification previous, double[] ys, int size) {
+        int from = previous == null ? 0 : Math.min(previous.size, size);
+        long[] words = previous == null ? new long[(size + 63) >>> 6]
+                : Arrays.copyOf(previous.evenDigits, (size + 63) >>> 6);
+        // В последнем слове старой маски могли остаться биты за её пределами - они перезаписываются
+        for (int i = from; i < size; i++) {
+            long bit = 1L << i;
+            if (hasOnlyEvenDigits(ys[i])) {
+                words[i >>> 6] |= bit;
+            } else {
+                words[i >>> 6] &= ~bit;
+            }
+        }
+        return new MarkerClassification(words, size);
+    }
+
+    /* Классификация с готовой маской (например, из файла сводок SummaryCache);
+     * длина маски должна соответствовать количеству точек.
+     */
+    public static MarkerClassification of(long[] evenDigits, int size) {
+        if (evenDigits.length != (size + 63) >>> 6) {
+            throw new IllegalArgumentException("Длина маски не соответствует количеству точек");
+        }
+        return new MarkerClassification(evenDigits, size);
+    }
+
+    // Прямой доступ к маске для записи в файл; изменять её содержимое нельзя
+    public long[] words() {
+        return evenDigits;
+    }
+
+    public boolean hasOnlyEvenDigits(int index) {
+        return (evenDigits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Истина, если целая часть модуля value состоит только из чётных цифр
+    public static boolean hasOnlyEvenDigits(double value) {
+        // Получаем целую часть числа
+        int integerPart = (int) Math.abs(value);
+        // Проверяем цифры с младшей, отделяя их делением на 10
+        do {
+            if ((integerPart % 10) % 2 != 0) { // Если цифра нечётная
+                return false;
+            }
+            integerPart /= 10;
+        } while (integerPart != 0);
+        return true;
+    }
+}
@@ -0,0 +1,316 @@
+import java.util.Arrays;
+
+/* Многоуровневая пирамида минимумов и максимумов для упорядоченного по X набора точек.
+ * На нулевом уровне точки разбиты на корзины по BASE_BUCKET штук, на каждом следующем
+ * уровне FANOUT соседних корзин объединяются в одну. Для каждой корзины хранятся индексы
+ * точек с минимальным и максимальным Y, поэтому из пирамиды извлекаются настоящие точки
+ * графика, и огибающая линии при увеличенном масштабе не искажается.
+ * При отображении берётся уровень, на котором на один столбец пикселов приходится
+ * хотя бы пара корзин, и просматриваются только корзины видимого диапазона X.
+ */
+public class MinMaxPyramid {
+    // Количество точек в корзине нулевого уровня
+    public static final int BASE_BUCKET = 16;
+    // Во сколько раз корзина следующего уровня больше предыдущей
+    public static final int FANOUT = 4;
+
+    // Координаты точек (общие с набором точек) и количество точек, по которым построена пирамида
+    private final double[] xs;
+    private final double[] ys;
+    private final int size;
+    // Индексы точек с минимальным и максимальным Y для каждой корзины каждого уровня;
+    // -1 - в корзине нет точек с конечными координатами
+    private final int[][] minIndex;
+    private final int[][] maxIndex;
+    // Количество точек в корзине каждого уровня
+    private final long[] bucketSize;
+
+    private MinMaxPyramid(double[] xs, double[] ys, int size, int[][] minIndex, int[][] maxIndex, long[] bucketSize) {
+        this.xs = xs;
+        this.ys = ys;
+        this.size = size;
+        this.minIndex = minIndex;
+        this.maxIndex = maxIndex;
+        this.bucketSize = bucketSize;
+    }
+
+    // Построить пирамиду; для неупорядоченных по X данных пирамида не строится (возвращается null)
+    public static MinMaxPyramid build(PointSeries series) {
+        if (!series.isSortedByX()) {
+            return null;
+        }
+        return extend(null, series.xs(), series.ys(), series.size());
+    }
+
+    /* Достроить пирамиду previous после добавления точек в конец тех же массивов.
+     * Пересчитываются только корзины, начиная с последней (возможно, неполной) корзины
+     * previous, поэтому стоимость пропорциональна числу новых точек, а не всех.
+     * Если previous построена по другим массивам или null, пирамида строится заново.
+     * Упорядоченность точек по X проверяет вызывающий.
+     */
+    public static MinMaxPyramid extend(MinMaxPyramid previous, double[] xs, double[] ys, int size) {
+        if (size < 2 * BASE_BUCKET) {
+            return null;
+        }
+        if (previous != null && (previous.xs != xs || previous.ys != ys || previous.size > size)) {
+            previous = null;
+        }
+        int levels = 1;
+        for (long buckets = (size + BASE_BUCKET - 1) / BASE_BUCKET; buckets > FANOUT; buckets = (buckets + FANOUT - 1) / FANOUT) {
+            levels++;
+        }
+        int[][] minIndex = new int[levels][];
+        int[][] maxIndex = new int[levels][];
+        long[] bucketSize = new long[levels];
+        // Нулевой уровень строится непосредственно по точкам
+        int buckets = (size + BASE_BUCKET - 1) / BASE_BUCKET;
+        int dirty = previous == null ? 0 : previous.size / BASE_BUCKET;
+        minIndex[0] = copyLevel(previous == null ? null : previous.minIndex[0], buckets);
+        maxIndex[0] = copyLevel(previous == null ? null : previous.maxIndex[0], buckets);
+        bucketSize[0] = BASE_BUCKET;
+        for (int b = dirty; b < buckets; b++) {
+            int min = -1, max = -1;
+            int end = Math.min(size, (b + 1) * BASE_BUCKET);
+            for (int i = b * BASE_BUCKET; i < end; i++) {
+                double y = ys[i];
+                if (!Double.isFinite(xs[i]) || !Double.isFinite(y)) {
+                    continue;
+                }
+                if (min < 0 || y < ys[min]) min = i;
+                if (max < 0 || y > ys[max]) max = i;
+            }
+            minIndex[0][b] = min;
+            maxIndex[0][b] = max;
+        }
+        // Следующие уровни строятся по предыдущим
+        for (int level = 1; level < levels; level++) {
+            int[] lowerMin = minIndex[level - 1];
+            int[] lowerMax = maxIndex[level - 1];
+            buckets = (lowerMin.length + FANOUT - 1) / FANOUT;
+            dirty /= FANOUT;
+            boolean reuse = previous != null && level < previous.minIndex.length;
+            minIndex[level] = copyLevel(reuse ? previous.minIndex[level] : null, buckets);
+            maxIndex[level] = copyLevel(reuse ? previous.maxIndex[level] : null, buckets);
+            bucketSize[level] = bucketSize[level - 1] * FANOUT;
+            for (int b = reuse ? dirty : 0; b < buckets; b++) {
+                int min = -1, max = -1;
+                int end = Math.min(lowerMin.length, (b + 1) * FANOUT);
+                for (int j = b * FANOUT; j < end; j++) {
+                    if (lowerMin[j] >= 0 && (min < 0 || ys[lowerMin[j]] < ys[min])) min = lowerMin[j];
+                    if (lowerMax[j] >= 0 && (max < 0 || ys[lowerMax[j]] > ys[max])) max = lowerMax[j];
+                }
+                minIndex[level][b] = min;
+                maxIndex[level][b] = max;
+            }
+        }
+        return new MinMaxPyramid(xs, ys, size, minIndex, maxIndex, bucketSize);
+    }
+
+    /* Пирамида с готовыми индексами корзин (например, из файла сводок SummaryCache) для точек
+     * [0, size) массивов xs и ys. Проверяется, что уровни имеют длины, которые дало бы
+     * построение по size точкам, а индексы указывают на точки набора.
+     */
+    public static MinMaxPyramid of(double[] xs, double[] ys, int size, int[][] minIndex, int[][] maxIndex) {
+        if (size < 2 * BASE_BUCKET || minIndex.length == 0 || minIndex.length != maxIndex.length) {
+            throw new IllegalArgumentException("Неверное количество уровней пирамиды");
+        }
+        long[] bucketSize = new long[minIndex.length];
+        long buckets = (size + BASE_BUCKET - 1) / BASE_BUCKET;
+        bucketSize[0] = BASE_BUCKET;
+        for (int level = 0; level < minIndex.length; level++) {
+            if (level > 0) {
+                buckets = (buckets + FANOUT - 1) / FANOUT;
+                bucketSize[level] = bucketSize[level - 1] * FANOUT;
+            }
+            // Корзин больше FANOUT на всех уровнях, кроме верхнего, как при построении
+            if (level < minIndex.length - 1 && buckets <= FANOUT) {
+                throw new IllegalArgumentException("Неверное количество уровней пирамиды");
+            }
+            if (minIndex[level].length != buckets || maxIndex[level].length != buckets) {
+                throw new IllegalArgumentException("Неверная длина уровня пирамиды " + level);
+            }
+            for (int b = 0; b < buckets; b++) {
+                int min = minIndex[level][b];
+                int max = maxIndex[level][b];
+                // Пустая корзина отмечается -1 в обоих массивах
+                if (min < -1 || min >= size || max < -1 || max >= size || (min < 0) != (max < 0)) {
+                    throw new IllegalArgumentException("Индекс точки вне набора на уровне " + level);
+                }
+            }
+        }
+        if (buckets > FANOUT) {
+            throw new IllegalArgumentException("Неверное количество уровней пирамиды");
+        }
+        return new MinMaxPyramid(xs, ys, size, minIndex, maxIndex, bucketSize);
+    }
+
+    // Прямой доступ к индексам корзин уровня level для записи в файл; изменять их нельзя
+    public int[] minIndex(int level) {
+        return minIndex[level];
+    }
+
+    public int[] maxIndex(int level) {
+        return maxIndex[level];
+    }
+
+    // Копия уровня старой пирамиды нужной длины (старые корзины сохраняются, новые заполняются позже)
+    private static int[] copyLevel(int[] previous, int length) {
+        return previous == null ? new int[length] : Arrays.copyOf(previous, length);
+    }
+
+    /* Выбрать уровень для отображения count точек на columns столбцах пикселов:
+     * самый грубый уровень, на котором на столбец приходится не меньше двух корзин.
+     * -1 означает, что точек мало и выгоднее брать их непосредственно.
+     */
+    public int chooseLevel(int count, int columns) {
+        long maxBucket = count / (2L * Math.max(1, columns));
+        int level = -1;
+        for (int i = 0; i < bucketSize.length && bucketSize[i] <= maxBucket; i++) {
+            level = i;
+        }
+        return level;
+    }
+
+    /* Выбрать точки диапазона индексов [from, to) с уровня level:
+     * неполные корзины на краях диапазона берутся точками целиком,
+     * из полных - точки минимума и максимума в порядке следования.
+     * Точки добавляются в буфер out (предварительно очищенный); пирамида при этом не меняется,
+     * поэтому одну пирамиду можно использовать из нескольких потоков с разными буферами.
+     */
+    public int collect(int from, int to, int level, PointBuffer out) {
+        out.clear();
+        int bucket = (int) bucketSize[level];
+        int firstBucket = (from + bucket - 1) / bucket;
+        int lastBucket = to / bucket;
+        if (firstBucket >= lastBucket) {
+            addRange(out, xs, ys, from, to);
+            return out.size();
+        }
+        addRange(out, xs, ys, from, firstBucket * bucket);
+        int[] mins = minIndex[level];
+        int[] maxs = maxIndex[level];
+        for (int b = firstBucket; b < lastBucket; b++) {
+            int min = mins[b];
+            int max = maxs[b];
+            if (min < 0) {
+                continue;
+            }
+            int low = Math.min(min, max);
+            int high = Math.max(min, max);
+            out.add(xs[low], ys[low]);
+            if (high != low) {
+                out.add(xs[high], ys[high]);
+            }
+        }
+        addRange(out, xs, ys, lastBucket * bucket, to);
+        return out.size();
+    }
+
+    public int levels() {
+        return bucketSize.length;
+    }
+
+    /* Индекс точки, ближайшей к (x, y) в пикселах окна: разность по X умножается на
+     * pixelsPerUnitX, по Y - на pixelsPerUnitY. Учитываются только точки не дальше
+     * maxDistance пикселов; -1, если таких нет. Корзины просматриваются сверху вниз,
+     * ближайшие первыми, а корзины, все точки которых заведомо дальше уже найденной
+     * (по границам корзины: X крайних точек и Y минимума и максимума), пропускаются.
+     */
+    public int nearest(double x, double y, double pixelsPerUnitX, double pixelsPerUnitY, double maxDistance) {
+        NearestSearch search = new NearestSearch(x, y, pixelsPerUnitX, pixelsPerUnitY, maxDistance, levels());
+        int top = levels() - 1;
+        visit(search, top, 0, minIndex[top].length);
+        return search.index;
+    }
+
+    // Состояние поиска ближайшей точки: лучшая найденная точка и квадрат расстояния до неё
+    private static class NearestSearch {
+        final double x;
+        final double y;
+        final double scaleX;
+        final double scaleY;
+        int index = -1;
+        double best;
+        // Нижние границы расстояний и порядок обхода корзин - по массиву на уровень
+        final double[][] bounds;
+        final int[][] order;
+
+        NearestSearch(double x, double y, double scaleX, double scaleY, double maxDistance, int levels) {
+            this.x = x;
+            this.y = y;
+            this.scaleX = scaleX;
+            this.scaleY = scaleY;
+            this.best = maxDistance * maxDistance;
+            bounds = new double[levels][FANOUT];
+            order = new int[levels][FANOUT];
+        }
+    }
+
+    // Просмотреть корзины [from, to) уровня level в порядке возрастания нижней границы расстояния
+    private void visit(NearestSearch search, int level, int from, int to) {
+        double[] bounds = search.bounds[level];
+        int[] order = search.order[level];
+        int count = to - from;
+        for (int i = 0; i < count; i++) {
+            double bound = lowerBound(search, level, from + i);
+            // Вставка в упорядоченный список (корзин не больше FANOUT)
+            int j = i;
+            while (j > 0 && bounds[j - 1] > bound) {
+                bounds[j] = bounds[j - 1];
+                order[j] = order[j - 1];
+                j--;
+            }
+            bounds[j] = bound;
+            order[j] = from + i;
+        }
+        for (int i = 0; i < count; i++) {
+            if (bounds[i] >= search.best) {
+                return;
+            }
+            int bucket = order[i];
+            if (level == 0) {
+                int end = Math.min(size, (bucket + 1) * BASE_BUCKET);
+                for (int k = bucket * BASE_BUCKET; k < end; k++) {
+                    double dx = (xs[k] - search.x) * search.scaleX;
+                    double dy = (ys[k] - search.y) * search.scaleY;
+                    double distance = dx * dx + dy * dy;
+                    // Для нечисловых координат сравнение ложно, и точка пропускается
+                    if (distance < search.best) {
+                        search.best = distance;
+                        search.index = k;
+                    }
+                }
+            } else {
+                int first = bucket * FANOUT;
+                visit(search, level - 1, first, Math.min(minIndex[level - 1].length, first + FANOUT));
+            }
+        }
+    }
+
+    // Квадрат наименьшего возможного расстояния (в пикселах) до точек корзины
+    private double lowerBound(NearestSearch search, int level, int bucket) {
+        int min = minIndex[level][bucket];
+        if (min < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double low = ys[min];
+        double high = ys[maxIndex[level][bucket]];
+        double dy = search.y < low ? low - search.y : search.y > high ? search.y - high : 0;
+        // Точки упорядочены по X, поэтому X корзины лежат между X её крайних точек
+        // (если крайняя точка нечисловая, граница по X неизвестна и не учитывается)
+        long start = bucket * bucketSize[level];
+        long end = Math.min(size, start + bucketSize[level]) - 1;
+        double left = xs[(int) start];
+        double right = xs[(int) end];
+        double dx = search.x < left ? left - search.x : search.x > right ? search.x - right : 0;
+        dx *= search.scaleX;
+        dy *= search.scaleY;
+        return dx * dx + dy * dy;
+    }
+
+    private static void addRange(PointBuffer out, double[] xs, double[] ys, int from, int to) {
+        for (int i = from; i < to; i++) {
+            out.add(xs[i], ys[i]);
+        }
+    }
+}
@@ -0,0 +1,547 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Данные графика, которые не загружаются в память целиком (файлы больше кучи и больше 2 Гб).
+ * Файл исходного формата отображается в память окнами по MAP_WINDOW байт; точки читаются
+ * из отображённых окон по мере надобности, а в куче хранятся только сведения о частях
+ * файла по CHUNK_POINTS точек: границы по X и обзор - до шести точек части
+ * (первая и последняя конечные точки и точки с крайними X и Y) в исходном порядке.
+ * Обзор всего файла - обычный PointSeries, по нему рисуется график целиком;
+ * для увеличенной области, в которую попадает немного частей, точки этих частей
+ * читаются из файла (readDetail). Обзор состоит из настоящих точек набора, и в нём есть
+ * все крайние точки, поэтому границы обзора совпадают с границами всех данных.
+ * Для файла в 20 Гб (1,3 млрд точек) сведения о частях занимают около 40 Мб.
+ * Контейнер (PlotContainer) открывается так же, но частями служат его блоки: их границы
+ * по X берутся из индекса контейнера, а точки увеличенной области читаются и декодируются
+ * только из нужных блоков.
+ */
+public class OutOfCoreSeries {
+    // Получатель сведений о ходе просмотра файла при открытии; вызывается в потоке открытия
+    public interface ProgressListener {
+        void scanned(long points, long total);
+    }
+
+    // Количество точек в части файла
+    public static final int CHUNK_POINTS = 4096;
+    // Наибольшее количество точек, читаемых из файла для увеличенной области
+    public static final int DETAIL_LIMIT = 8 * 1024 * 1024;
+    // Сколько точек обзора приходится на одну часть
+    private static final int OVERVIEW_PER_CHUNK = 6;
+    // Размер окна отображения файла (кратен размеру части, поэтому часть не разрывается окнами)
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+    private static final int WINDOW_POINTS = (int) (MAP_WINDOW / GraphicsFileLoader.PAIR_BYTES);
+    // Сколько точек контейнера декодируется за одно чтение при просмотре
+    private static final int SCAN_BATCH_POINTS = 64 * 1024;
+
+    // Диапазон частей файла [from, to), точки которых читаются для увеличенной области
+    public static class Range {
+        private final int from;
+        private final int to;
+
+        Range(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public boolean contains(Range other) {
+            return from <= other.from && other.to <= to;
+        }
+
+        public boolean equals(Object other) {
+            return other instanceof Range && ((Range) other).from == from && ((Range) other).to == to;
+        }
+
+        public int hashCode() {
+            return 31 * from + to;
+        }
+
+        public String toString() {
+            return "[" + from + ", " + to + ")";
+        }
+    }
+
+    /* Сведения о частях набора: границы частей по X и обзор. Строятся при открытии файла
+     * или по набору, уже загруженному в память (describe), и сохраняются в файле сводок
+     * (SummaryCache), чтобы при следующем открытии файл не просматривался.
+     */
+    public static class Chunks {
+        private final double[] minX;
+        private final double[] maxX;
+        private final PointSeries overview;
+
+        public Chunks(double[] minX, double[] maxX, PointSeries overview) {
+            if (minX.length != maxX.length) {
+                throw new IllegalArgumentException("Количество границ частей по X не совпадает");
+            }
+            this.minX = minX;
+            this.maxX = maxX;
+            this.overview = overview;
+        }
+
+        // Количество частей
+        public int count() {
+            return minX.length;
+        }
+
+        // Прямой доступ к границам частей для записи в файл; изменять их нельзя
+        public double[] minX() {
+            return minX;
+        }
+
+        public double[] maxX() {
+            return maxX;
+        }
+
+        public PointSeries overview() {
+            return overview;
+        }
+    }
+
+    private final File file;
+    private final int size;
+    private final int chunkCount;
+    // Количество точек в части (у контейнера - в блоке) и наибольшее количество частей увеличенной области
+    private final int chunkPoints;
+    private final int detailChunks;
+    // Отображённые окна файла как последовательности чисел double (big-endian); null для контейнера
+    private final DoubleBuffer[] windows;
+    // Индекс блоков контейнера (null для файла исходного формата)
+    private final PlotContainer.Index container;
+    // Границы точек каждой части по X (NaN, если в части нет конечных точек)
+    private final double[] chunkMinX;
+    private final double[] chunkMaxX;
+    private final PointSeries overview;
+    // Сводка по всем точкам файла
+    private final SeriesSummary summary;
+    // Статистика значений всех точек файла; собирается при том же просмотре
+    private final SeriesStatistics statistics;
+
+    private OutOfCoreSeries(File file, int size, DoubleBuffer[] windows, PlotContainer.Index container,
+                            double[] chunkMinX, double[] chunkMaxX,
+                            PointSeries overview, SeriesSummary summary, SeriesStatistics statistics) {
+        this.file = file;
+        this.size = size;
+        this.chunkCount = chunkMinX.length;
+        this.chunkPoints = container != null ? container.getHeader().getBlockSize() : CHUNK_POINTS;
+        this.detailChunks = Math.max(1, DETAIL_LIMIT / chunkPoints);
+        this.windows = windows;
+        this.container = container;
+        this.chunkMinX = chunkMinX;
+        this.chunkMaxX = chunkMaxX;
+        this.overview = overview;
+        this.summary = summary;
+        this.statistics = statistics;
+    }
+
+    /* Истина, если файл исходного формата лучше показывать без загрузки в память:
+     * массивы координат, пирамида и раскраска маркеров заняли бы больше половины кучи.
+     */
+    public static boolean isPreferred(File file) throws IOException {
+        // Для контейнера в памяти окажутся декодированные точки, а не сжатые блоки
+        long length = PlotContainer.isContainer(file)
+                ? (long) PlotContainer.readHeader(file).getPointCount() * GraphicsFileLoader.PAIR_BYTES
+                : file.length();
+        return length + length / 8 > Runtime.getRuntime().maxMemory() / 2;
+    }
+
+    public static OutOfCoreSeries open(File file) throws IOException {
+        return open(file, null);
+    }
+
+    /* Отобразить файл исходного формата в память и построить обзор (listener может быть null).
+     * Части файла просматриваются параллельно в общем пуле потоков.
+     * Если поток открытия прерван, открытие останавливается с InterruptedIOException.
+     */
+    public static OutOfCoreSeries open(File file, ProgressListener listener) throws IOException {
+        if (PlotContainer.isContainer(file)) {
+            return openContainer(file, listener);
+        }
+        DoubleBuffer[] windows = map(file);
+        int size = GraphicsFileLoader.pairCount(file.length());
+        int chunkCount = (size + CHUNK_POINTS - 1) / CHUNK_POINTS;
+        double[] chunkMinX = new double[chunkCount];
+        double[] chunkMaxX = new double[chunkCount];
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicLong scanned = new AtomicLong();
+        List<Future<WindowScan>> tasks = new ArrayList<>(windows.length);
+        for (int i = 0; i < windows.length; i++) {
+            int window = i;
+            int from = i * WINDOW_POINTS;
+            int to = (int) Math.min(size, (long) from + WINDOW_POINTS);
+            tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                WindowScan scan = scanWindow(windows[window], from, to, chunkMinX, chunkMaxX, cancelled);
+                scanned.addAndGet(to - from);
+                return scan;
+            }));
+        }
+        return collect(file, size, windows, null, chunkMinX, chunkMaxX, tasks, scanned, cancelled, listener);
+    }
+
+    /* Открыть контейнер без загрузки в память: в памяти остаётся индекс блоков,
+     * границы частей (блоков) по X берутся из него. Блоки один раз декодируются параллельно
+     * группами по WINDOW_POINTS точек, чтобы построить обзор и статистику.
+     */
+    private static OutOfCoreSeries openContainer(File file, ProgressListener listener) throws IOException {
+        PlotContainer.Index index = PlotContainer.readIndex(file);
+        int size = index.getHeader().getPointCount();
+        int chunkCount = index.count();
+        double[] chunkMinX = new double[chunkCount];
+        double[] chunkMaxX = new double[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            chunkMinX[i] = index.getMinX(i);
+            chunkMaxX[i] = index.getMaxX(i);
+        }
+        int blockSize = index.getHeader().getBlockSize();
+        int blocksPerTask = Math.max(1, WINDOW_POINTS / blockSize);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicLong scanned = new AtomicLong();
+        List<Future<WindowScan>> tasks = new ArrayList<>();
+        for (int first = 0; first < chunkCount; first += blocksPerTask) {
+            int from = first;
+            int to = Math.min(chunkCount, first + blocksPerTask);
+            tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                WindowScan scan = scanBlocks(index, from, to, chunkMinX, chunkMaxX, cancelled);
+                scanned.addAndGet((long) (to - from) * blockSize);
+                return scan;
+            }));
+        }
+        return collect(file, size, null, index, chunkMinX, chunkMaxX, tasks, scanned, cancelled, listener);
+    }
+
+    // Дождаться просмотра частей и собрать из результатов по порядку обзор, сводку и статистику
+    private static OutOfCoreSeries collect(File file, int size, DoubleBuffer[] windows, PlotContainer.Index container,
+                                           double[] chunkMinX, double[] chunkMaxX, List<Future<WindowScan>> tasks,
+                                           AtomicLong scanned, AtomicBoolean cancelled, ProgressListener listener)
+            throws IOException {
+        int chunkCount = chunkMinX.length;
+        // Результаты окон объединяются по порядку: обзор, сводка и статистика складываются из соседних частей
+        SeriesSummary summary = SeriesSummary.compute(new double[0], new double[0], 0);
+        SeriesStatistics statistics = SeriesStatistics.compute(new double[0], new double[0], 0);
+        double[] overviewXs = new double[chunkCount * OVERVIEW_PER_CHUNK];
+        double[] overviewYs = new double[chunkCount * OVERVIEW_PER_CHUNK];
+        int overviewSize = 0;
+        try {
+            for (Future<WindowScan> task : tasks) {
+                WindowScan scan = task.get();
+                summary = SeriesSummary.merge(summary, scan.summary);
+                statistics = SeriesStatistics.merge(statistics, scan.statistics);
+                System.arraycopy(scan.xs, 0, overviewXs, overviewSize, scan.overviewSize);
+                System.arraycopy(scan.ys, 0, overviewYs, overviewSize, scan.overviewSize);
+                overviewSize += scan.overviewSize;
+                if (listener != null) {
+                    listener.scanned(Math.min(size, scanned.get()), size);
+                }
+            }
+        } catch (InterruptedException | CancellationException ex) {
+            cancelled.set(true);
+            throw new InterruptedIOException("Открытие файла отменено");
+        } catch (ExecutionException ex) {
+            cancelled.set(true);
+            // Ошибка чтения (например, повреждённый блок контейнера) передаётся как есть -
+            // пул потоков заворачивает её в RuntimeException
+            for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            throw new IOException("Ошибка просмотра файла: " + ex.getCause(), ex.getCause());
+        }
+        return new OutOfCoreSeries(file, size, windows, container, chunkMinX, chunkMaxX,
+                new PointSeries(overviewXs, overviewYs, overviewSize), summary, statistics);
+    }
+
+    /* Открыть файл с уже известными сведениями о частях, сводкой и статистикой (из файла сводок):
+     * файл только отображается в память и не просматривается. Сведения должны относиться
+     * к этому же файлу - проверяется только согласованность количества точек.
+     */
+    public static OutOfCoreSeries open(File file, Chunks chunks, SeriesSummary summary, SeriesStatistics statistics)
+            throws IOException {
+        DoubleBuffer[] windows = null;
+        PlotContainer.Index container = null;
+        int size;
+        int chunkPoints;
+        if (PlotContainer.isContainer(file)) {
+            container = PlotContainer.readIndex(file);
+            size = container.getHeader().getPointCount();
+            chunkPoints = container.getHeader().getBlockSize();
+        } else {
+            windows = map(file);
+            size = GraphicsFileLoader.pairCount(file.length());
+            chunkPoints = CHUNK_POINTS;
+        }
+        if (summary.getCount() != size || chunks.count() != (size + (long) chunkPoints - 1) / chunkPoints) {
+            throw new IOException("Сведения о частях не соответствуют файлу");
+        }
+        return new OutOfCoreSeries(file, size, windows, container, chunks.minX, chunks.maxX, chunks.overview,
+                summary, statistics);
+    }
+
+    // Отобразить файл в память окнами по MAP_WINDOW байт
+    private static DoubleBuffer[] map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            GraphicsFileLoader.pairCount(length);
+            DoubleBuffer[] windows = new DoubleBuffer[(int) ((length + MAP_WINDOW - 1) / MAP_WINDOW)];
+            for (int i = 0; i < windows.length; i++) {
+                long position = i * MAP_WINDOW;
+                // Отображение остаётся действительным и после закрытия канала
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_WINDOW, length - position)).asDoubleBuffer();
+            }
+            return windows;
+        }
+    }
+
+    /* Сведения о частях набора, уже загруженного в память, - такие же, какие строятся
+     * при открытии файла с этими точками без загрузки.
+     */
+    public static Chunks describe(PointSeries series) {
+        int size = series.size();
+        int chunkCount = (size + CHUNK_POINTS - 1) / CHUNK_POINTS;
+        double[] chunkMinX = new double[chunkCount];
+        double[] chunkMaxX = new double[chunkCount];
+        double[] overviewXs = new double[chunkCount * OVERVIEW_PER_CHUNK];
+        double[] overviewYs = new double[chunkCount * OVERVIEW_PER_CHUNK];
+        int overviewSize = 0;
+        int[] picked = new int[OVERVIEW_PER_CHUNK];
+        for (int start = 0; start < size; start += CHUNK_POINTS) {
+            overviewSize = describeChunk(series.xs(), series.ys(), start, Math.min(CHUNK_POINTS, size - start),
+                    start / CHUNK_POINTS, chunkMinX, chunkMaxX, overviewXs, overviewYs, overviewSize, picked);
+        }
+        return new Chunks(chunkMinX, chunkMaxX, new PointSeries(overviewXs, overviewYs, overviewSize));
+    }
+
+    // Результат просмотра одного окна: сводка и статистика его точек и точки обзора его частей
+    private static class WindowScan {
+        SeriesSummary summary;
+        SeriesStatistics statistics;
+        double[] xs;
+        double[] ys;
+        int overviewSize;
+    }
+
+    // Просмотреть точки [from, to) окна window: границы частей, сводка, статистика и обзор
+    private static WindowScan scanWindow(DoubleBuffer window, int from, int to,
+                                         double[] chunkMinX, double[] chunkMaxX, AtomicBoolean cancelled) {
+        WindowScan scan = new WindowScan();
+        int chunks = (to - from + CHUNK_POINTS - 1) / CHUNK_POINTS;
+        scan.xs = new double[chunks * OVERVIEW_PER_CHUNK];
+        scan.ys = new double[chunks * OVERVIEW_PER_CHUNK];
+        scan.summary = SeriesSummary.compute(new double[0], new double[0], 0);
+        scan.statistics = SeriesStatistics.compute(new double[0], new double[0], 0);
+        double[] chunk = new double[2 * CHUNK_POINTS];
+        double[] xs = new double[CHUNK_POINTS];
+        double[] ys = new double[CHUNK_POINTS];
+        int[] picked = new int[OVERVIEW_PER_CHUNK];
+        for (int start = from; start < to && !cancelled.get(); start += CHUNK_POINTS) {
+            int count = Math.min(CHUNK_POINTS, to - start);
+            window.get(2 * (start - from), chunk, 0, 2 * count);
+            for (int i = 0; i < count; i++) {
+                xs[i] = chunk[2 * i];
+                ys[i] = chunk[2 * i + 1];
+            }
+            scan.summary = SeriesSummary.merge(scan.summary, SeriesSummary.compute(xs, ys, count));
+            scan.statistics = SeriesStatistics.merge(scan.statistics, SeriesStatistics.scan(xs, ys, 0, count, start));
+            scan.overviewSize = describeChunk(xs, ys, 0, count, start / CHUNK_POINTS, chunkMinX, chunkMaxX,
+                    scan.xs, scan.ys, scan.overviewSize, picked);
+        }
+        return scan;
+    }
+
+    /* Просмотреть блоки [from, to) контейнера: сводка, статистика и обзор. Блоки читаются
+     * группами по SCAN_BATCH_POINTS точек. Границы блоков, найденные просмотром, сверяются
+     * с индексом (chunkMinX, chunkMaxX уже заполнены по нему): расхождение - признак повреждения.
+     */
+    private static WindowScan scanBlocks(PlotContainer.Index index, int from, int to,
+                                         double[] chunkMinX, double[] chunkMaxX, AtomicBoolean cancelled)
+            throws IOException {
+        WindowScan scan = new WindowScan();
+        scan.xs = new double[(to - from) * OVERVIEW_PER_CHUNK];
+        scan.ys = new double[(to - from) * OVERVIEW_PER_CHUNK];
+        scan.summary = SeriesSummary.compute(new double[0], new double[0], 0);
+        scan.statistics = SeriesStatistics.compute(new double[0], new double[0], 0);
+        int blockSize = index.getHeader().getBlockSize();
+        int batch = Math.max(1, SCAN_BATCH_POINTS / blockSize);
+        double[] xs = new double[batch * blockSize];
+        double[] ys = new double[batch * blockSize];
+        // Границы, найденные просмотром, для сверки с индексом
+        double[] foundMinX = new double[batch];
+        double[] foundMaxX = new double[batch];
+        int[] picked = new int[OVERVIEW_PER_CHUNK];
+        for (int first = from; first < to && !cancelled.get(); first += batch) {
+            int last = Math.min(to, first + batch);
+            int count = PlotContainer.readRange(index, first, last, xs, ys, 0);
+            int start = (int) ((long) first * blockSize);
+            scan.summary = SeriesSummary.merge(scan.summary, SeriesSummary.compute(xs, ys, count));
+            scan.statistics = SeriesStatistics.merge(scan.statistics, SeriesStatistics.scan(xs, ys, 0, count, start));
+            int offset = 0;
+            for (int block = first; block < last; block++) {
+                int points = index.pointsIn(block);
+                scan.overviewSize = describeChunk(xs, ys, offset, points, block - first, foundMinX, foundMaxX,
+                        scan.xs, scan.ys, scan.overviewSize, picked);
+                if (!same(foundMinX[block - first], chunkMinX[block]) || !same(foundMaxX[block - first], chunkMaxX[block])) {
+                    throw new IOException("Файл повреждён: границы блока " + block + " не совпадают с индексом");
+                }
+                offset += points;
+            }
+        }
+        return scan;
+    }
+
+    private static boolean same(double a, double b) {
+        return a == b || (Double.isNaN(a) && Double.isNaN(b));
+    }
+
+    /* Границы части index по X (её точки - [offset, offset + count) массивов xs и ys)
+     * и её точки обзора, которые дописываются в overviewXs и overviewYs с позиции overviewSize.
+     * Возвращает новое количество точек обзора; picked - рабочий массив.
+     */
+    private static int describeChunk(double[] xs, double[] ys, int offset, int count, int index,
+                                     double[] chunkMinX, double[] chunkMaxX,
+                                     double[] overviewXs, double[] overviewYs, int overviewSize, int[] picked) {
+        // Точки обзора части: первая и последняя конечные, с наименьшим и наибольшим X и Y
+        int first = -1, last = -1, minX = -1, maxX = -1, minY = -1, maxY = -1;
+        for (int i = offset; i < offset + count; i++) {
+            if (!Double.isFinite(xs[i]) || !Double.isFinite(ys[i])) {
+                continue;
+            }
+            if (first < 0) {
+                first = minX = maxX = minY = maxY = i;
+            }
+            last = i;
+            if (xs[i] < xs[minX]) minX = i;
+            if (xs[i] > xs[maxX]) maxX = i;
+            if (ys[i] < ys[minY]) minY = i;
+            if (ys[i] > ys[maxY]) maxY = i;
+        }
+        if (first < 0) {
+            chunkMinX[index] = Double.NaN;
+            chunkMaxX[index] = Double.NaN;
+            return overviewSize;
+        }
+        chunkMinX[index] = xs[minX];
+        chunkMaxX[index] = xs[maxX];
+        picked[0] = first;
+        picked[1] = minX;
+        picked[2] = maxX;
+        picked[3] = minY;
+        picked[4] = maxY;
+        picked[5] = last;
+        Arrays.sort(picked);
+        for (int k = 0; k < OVERVIEW_PER_CHUNK; k++) {
+            // Одна точка может быть крайней сразу по нескольким признакам
+            if (k > 0 && picked[k] == picked[k - 1]) {
+                continue;
+            }
+            overviewXs[overviewSize] = xs[picked[k]];
+            overviewYs[overviewSize] = ys[picked[k]];
+            overviewSize++;
+        }
+        return overviewSize;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public SeriesSummary summary() {
+        return summary;
+    }
+
+    public SeriesStatistics statistics() {
+        return statistics;
+    }
+
+    // Сведения о частях файла (для записи в файл сводок)
+    public Chunks chunks() {
+        return new Chunks(chunkMinX, chunkMaxX, overview);
+    }
+
+    // Обзор всех точек файла (не больше шести точек на часть)
+    public PointSeries overview() {
+        return overview;
+    }
+
+    /* Диапазон частей, точки которых нужны для показа области [minX, maxX] шириной columns
+     * столбцов пикселов; null, если для неё достаточно обзора (на столбец приходится
+     * больше части, или в частях больше DETAIL_LIMIT точек) или в неё не попадает ни одна точка.
+     * Берутся все части от первой до последней, пересекающих область, и по одной соседней
+     * с каждой стороны, чтобы линия доходила до края окна. Границы частей просматриваются
+     * подряд (несколько сотен тысяч сравнений для файла в 20 Гб), поэтому годятся
+     * и для неупорядоченных по X данных.
+     */
+    public Range detailRange(double minX, double maxX, int columns) {
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < chunkCount; i++) {
+            if (chunkMaxX[i] >= minX && chunkMinX[i] <= maxX) {
+                if (first < 0) {
+                    first = i;
+                }
+                last = i;
+            }
+        }
+        if (first < 0) {
+            return null;
+        }
+        first = Math.max(0, first - 1);
+        last = Math.min(chunkCount - 1, last + 1);
+        if (last - first + 1 > Math.min(columns, detailChunks)) {
+            return null;
+        }
+        return new Range(first, last + 1);
+    }
+
+    /* Расширить диапазон частей с каждой стороны на его ширину (в пределах DETAIL_LIMIT точек),
+     * чтобы при небольшом сдвиге области точки не приходилось читать заново.
+     */
+    public Range widen(Range range) {
+        int width = range.to - range.from;
+        int margin = Math.max(0, Math.min(width, (detailChunks - width) / 2));
+        return new Range(Math.max(0, range.from - margin), Math.min(chunkCount, range.to + margin));
+    }
+
+    /* Прочитать из файла все точки частей диапазона range (у контейнера - декодировать
+     * только эти блоки). Если поток прерван, чтение останавливается с InterruptedIOException.
+     */
+    public PointSeries readDetail(Range range) throws IOException {
+        int from = (int) ((long) range.from * chunkPoints);
+        int to = (int) Math.min(size, (long) range.to * chunkPoints);
+        double[] xs = new double[to - from];
+        double[] ys = new double[to - from];
+        if (container != null) {
+            PlotContainer.readRange(container, range.from, range.to, xs, ys, 0);
+            return new PointSeries(xs, ys, to - from);
+        }
+        double[] chunk = new double[2 * CHUNK_POINTS];
+        for (int start = from; start < to; start += CHUNK_POINTS) {
+            int count = Math.min(CHUNK_POINTS, to - start);
+            windows[start / WINDOW_POINTS].get(2 * (start % WINDOW_POINTS), chunk, 0, 2 * count);
+            for (int i = 0; i < count; i++) {
+                xs[start - from + i] = chunk[2 * i];
+                ys[start - from + i] = chunk[2 * i + 1];
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Чтение точек отменено");
+            }
+        }
+        return new PointSeries(xs, ys, to - from);
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/* Статистика отрисовки графика: время кадров и слоёв, количество нарисованных
+ * и отброшенных точек. Время кадров хранится для последних WINDOW кадров,
+ * по ним считаются медиана и 99-й процентиль. Кроме того, кадры и слои
+ * записываются событиями JFR (Java Flight Recorder); пока запись не включена,
+ * события почти ничего не стоят.
+ * Все методы вызываются из потока, рисующего компонент.
+ */
+public class PaintStatistics {
+    // Сколько последних кадров учитывается при вычислении процентилей
+    public static final int WINDOW = 256;
+    private static final int LAYERS = LayerCache.Layer.values().length;
+
+    // Время последних кадров, нс (кольцевой буфер)
+    private final long[] frameTimes = new long[WINDOW];
+    private long frameCount = 0;
+    // Время вычисления видимой области и масштаба в последнем кадре, нс
+    private long lastViewTime = 0;
+    // По слоям: время последнего рисования содержимого (нс, -1 - ещё не рисовался),
+    // время наложения в последнем кадре, был ли слой взят из кэша
+    private final long[] layerPaintTimes = new long[LAYERS];
+    private final long[] layerDrawTimes = new long[LAYERS];
+    private final boolean[] layerCached = new boolean[LAYERS];
+    private final boolean[] layerShown = new boolean[LAYERS];
+    // По слоям: сколько точек нарисовано и сколько отброшено при последнем рисовании
+    private final long[] pointsDrawn = new long[LAYERS];
+    private final long[] pointsCulled = new long[LAYERS];
+
+    public PaintStatistics() {
+        Arrays.fill(layerPaintTimes, -1);
+    }
+
+    // Начало кадра: слои, которые в нём не будут наложены, не показываются в сводке
+    public void frameStarted() {
+        Arrays.fill(layerShown, false);
+    }
+
+    // Содержимое слоя начинает рисоваться заново - счётчики точек обнуляются
+    public void layerPaintStarted(LayerCache.Layer layer) {
+        pointsDrawn[layer.ordinal()] = 0;
+        pointsCulled[layer.ordinal()] = 0;
+    }
+
+    // Учесть точки, нарисованные и отброшенные (вне окна, прореживанием) при рисовании слоя
+    public void addPoints(LayerCache.Layer layer, long drawn, long culled) {
+        pointsDrawn[layer.ordinal()] += drawn;
+        pointsCulled[layer.ordinal()] += culled;
+    }
+
+    /* Слой наложен на холст за drawTime нс; paintTime - время рисования его содержимого
+     * или -1, если слой взят из кэша.
+     */
+    public void layerDrawn(LayerCache.Layer layer, long paintTime, long drawTime) {
+        int index = layer.ordinal();
+        layerShown[index] = true;
+        layerCached[index] = paintTime < 0;
+        layerDrawTimes[index] = drawTime;
+        if (paintTime >= 0) {
+            layerPaintTimes[index] = paintTime;
+        }
+    }
+
+    // Кадр закончен: viewTime - время вычисления области отображения, frameTime - всего кадра, нс
+    public void frameFinished(long viewTime, long frameTime) {
+        lastViewTime = viewTime;
+        frameTimes[(int) (frameCount % WINDOW)] = frameTime;
+        frameCount++;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    // Процентиль (0..100) времени последних кадров, мс; NaN, если кадров ещё не было
+    public double getFramePercentile(double percentile) {
+        int count = (int) Math.min(frameCount, WINDOW);
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long[] sorted = Arrays.copyOf(frameTimes, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+    }
+
+    public long getPointsDrawn(LayerCache.Layer layer) {
+        return pointsDrawn[layer.ordinal()];
+    }
+
+    public long getPointsCulled(LayerCache.Layer layer) {
+        return pointsCulled[layer.ordinal()];
+    }
+
+    // Строки сводки для показа поверх графика
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Кадр: p50 %.2f мс, p99 %.2f мс (кадров: %d)",
+                getFramePercentile(50), getFramePercentile(99), Math.min(frameCount, WINDOW)));
+        lines.add(String.format("Область отображения: %.2f мс", lastViewTime / 1e6));
+        for (LayerCache.Layer layer : LayerCache.Layer.values()) {
+            int index = layer.ordinal();
+            if (!layerShown[index]) {
+                continue;
+            }
+            StringBuilder line = new StringBuilder(layerName(layer)).append(": ");
+            if (layerCached[index]) {
+                line.append(String.format("из кэша %.2f мс", layerDrawTimes[index] / 1e6));
+                if (layerPaintTimes[index] >= 0) {
+                    line.append(String.format(" (рисование %.2f мс)", layerPaintTimes[index] / 1e6));
+                }
+            } else {
+                line.append(String.format("%.2f мс", layerDrawTimes[index] / 1e6));
+            }
+            if (pointsDrawn[index] + pointsCulled[index] > 0) {
+                line.append(String.format(", точек %d, отброшено %d", pointsDrawn[index], pointsCulled[index]));
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    private static String layerName(LayerCache.Layer layer) {
+        switch (layer) {
+            case AXIS:
+                return "Оси";
+            case GRID:
+                return "Сетка";
+            case GRAPHICS:
+                return "Линия";
+            case MARKERS:
+                return "Маркеры";
+            default:
+                return layer.name();
+        }
+    }
+
+    // Событие JFR: перерисовка компонента графика целиком
+    @Name("lab4.PaintFrame")
+    @Label("Paint Frame")
+    @Category({"Lab4", "Paint"})
+    @Description("Перерисовка компонента графика")
+    public static class FrameEvent extends Event {
+        @Label("Width")
+        public int width;
+        @Label("Height")
+        public int height;
+        @Label("Points")
+        @Description("Количество точек набора")
+        public int points;
+        @Label("Layers Repainted")
+        @Description("Сколько слоёв нарисовано заново, а не взято из кэша")
+        public int layersRepainted;
+    }
+
+    // Событие JFR: наложение одного слоя (и его рисование, если слоя нет в кэше)
+    @Name("lab4.PaintLayer")
+    @Label("Paint Layer")
+    @Category({"Lab4", "Paint"})
+    @Description("Рисование слоя графика")
+    public static class LayerEvent extends Event {
+        @Label("Layer")
+        public String layer;
+        @Label("Cached")
+        public boolean cached;
+        @Label("Points Drawn")
+        public long pointsDrawn;
+        @Label("Points Culled")
+        public long pointsCulled;
+    }
+}
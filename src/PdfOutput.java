@@ -0,0 +1,255 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/* Запись фигур холста VectorGraphics2D в одностраничный файл PDF. Операторы рисования
+ * сжимаются (FlateDecode) и пишутся в поток содержимого страницы сразу; длина потока
+ * заранее не известна, поэтому она записывается отдельным объектом после потока.
+ * Страница имеет размер холста (один пиксел - один пункт); ось Y страницы направлена вверх,
+ * поэтому в начале содержимого ставится отражающее преобразование.
+ * Прозрачность цвета не передаётся (для неё нужны графические состояния).
+ */
+public class PdfOutput extends VectorGraphics2D.Output {
+    // Знаков после точки у координат и у коэффициентов преобразования
+    private static final int COORDINATE_DECIMALS = 3;
+    private static final int MATRIX_DECIMALS = 6;
+    // Сколько символов операторов накапливается перед записью в поток
+    private static final int FLUSH_LENGTH = 8192;
+    // Номера объектов файла
+    private static final int CATALOG = 1;
+    private static final int PAGES = 2;
+    private static final int PAGE = 3;
+    private static final int CONTENTS = 4;
+    private static final int LENGTH = 5;
+
+    // Поток файла со счётчиком записанных байт (для таблицы смещений объектов)
+    private final CountingStream file;
+    private final long[] offsets = new long[LENGTH + 1];
+    // Сжимаемый поток содержимого страницы и позиция его начала в файле
+    private final DeflaterOutputStream content;
+    private final long contentStart;
+    private final StringBuilder text = new StringBuilder();
+    private final double[] coordinates = new double[6];
+
+    // Начать документ со страницей размером width x height пунктов
+    public PdfOutput(OutputStream out, int width, int height) throws IOException {
+        file = new CountingStream(out);
+        // Двоичные символы во второй строке - признак двоичного файла для программ передачи
+        write("%PDF-1.4\n%âãÏÓ\n");
+        startObject(CATALOG);
+        write("<< /Type /Catalog /Pages " + PAGES + " 0 R >>\nendobj\n");
+        startObject(PAGES);
+        write("<< /Type /Pages /Kids [" + PAGE + " 0 R] /Count 1 >>\nendobj\n");
+        startObject(PAGE);
+        write("<< /Type /Page /Parent " + PAGES + " 0 R /MediaBox [0 0 " + width + " " + height + "]"
+                + " /Resources << >> /Contents " + CONTENTS + " 0 R >>\nendobj\n");
+        startObject(CONTENTS);
+        write("<< /Length " + LENGTH + " 0 R /Filter /FlateDecode >>\nstream\n");
+        contentStart = file.count;
+        content = new DeflaterOutputStream(new FilterOutputStream(file) {
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            // Закрытие сжимающего потока не должно закрывать файл
+            public void close() throws IOException {
+                flush();
+            }
+        }, new Deflater(Deflater.BEST_COMPRESSION), 65536);
+        // Отражение по Y: начало координат холста - левый верхний угол страницы;
+        // всё рисуемое ограничивается страницей
+        text.append("1 0 0 -1 0 ").append(height).append(" cm\n0 0 ")
+                .append(width).append(' ').append(height).append(" re W n\n");
+    }
+
+    public void fill(Shape shape, AffineTransform transform, Color color) throws IOException {
+        PathIterator path = shape.getPathIterator(null);
+        text.append("q\n");
+        appendTransform(transform);
+        appendColor(color);
+        text.append(" rg\n");
+        appendPath(path);
+        text.append(path.getWindingRule() == PathIterator.WIND_EVEN_ODD ? "f*\nQ\n" : "f\nQ\n");
+        flushText();
+    }
+
+    public void stroke(Shape shape, AffineTransform transform, BasicStroke stroke, Color color) throws IOException {
+        text.append("q\n");
+        appendTransform(transform);
+        appendColor(color);
+        text.append(" RG\n");
+        appendNumber(text, stroke.getLineWidth(), COORDINATE_DECIMALS);
+        text.append(" w ");
+        text.append(stroke.getEndCap() == BasicStroke.CAP_BUTT ? 0 : stroke.getEndCap() == BasicStroke.CAP_ROUND ? 1 : 2);
+        text.append(" J ");
+        text.append(stroke.getLineJoin() == BasicStroke.JOIN_MITER ? 0 : stroke.getLineJoin() == BasicStroke.JOIN_ROUND ? 1 : 2);
+        text.append(" j ");
+        appendNumber(text, stroke.getMiterLimit(), COORDINATE_DECIMALS);
+        text.append(" M");
+        float[] dash = stroke.getDashArray();
+        if (dash != null) {
+            text.append(" [");
+            for (int i = 0; i < dash.length; i++) {
+                if (i > 0) {
+                    text.append(' ');
+                }
+                appendNumber(text, dash[i], COORDINATE_DECIMALS);
+            }
+            text.append("] ");
+            appendNumber(text, stroke.getDashPhase(), COORDINATE_DECIMALS);
+            text.append(" d");
+        }
+        text.append('\n');
+        appendPath(shape.getPathIterator(null));
+        text.append("S\nQ\n");
+        flushText();
+    }
+
+    private void appendTransform(AffineTransform transform) {
+        if (transform.isIdentity()) {
+            return;
+        }
+        appendNumber(text, transform.getScaleX(), MATRIX_DECIMALS);
+        text.append(' ');
+        appendNumber(text, transform.getShearY(), MATRIX_DECIMALS);
+        text.append(' ');
+        appendNumber(text, transform.getShearX(), MATRIX_DECIMALS);
+        text.append(' ');
+        appendNumber(text, transform.getScaleY(), MATRIX_DECIMALS);
+        text.append(' ');
+        appendNumber(text, transform.getTranslateX(), MATRIX_DECIMALS);
+        text.append(' ');
+        appendNumber(text, transform.getTranslateY(), MATRIX_DECIMALS);
+        text.append(" cm\n");
+    }
+
+    private void appendColor(Color color) {
+        appendNumber(text, color.getRed() / 255.0, 3);
+        text.append(' ');
+        appendNumber(text, color.getGreen() / 255.0, 3);
+        text.append(' ');
+        appendNumber(text, color.getBlue() / 255.0, 3);
+    }
+
+    // Операторы построения пути; квадратичные кривые переводятся в кубические
+    private void appendPath(PathIterator path) throws IOException {
+        double currentX = 0, currentY = 0;
+        double startX = 0, startY = 0;
+        for (; !path.isDone(); path.next()) {
+            int type = path.currentSegment(coordinates);
+            switch (type) {
+                case PathIterator.SEG_MOVETO:
+                    appendPoints(1);
+                    text.append("m\n");
+                    currentX = startX = coordinates[0];
+                    currentY = startY = coordinates[1];
+                    break;
+                case PathIterator.SEG_LINETO:
+                    appendPoints(1);
+                    text.append("l\n");
+                    currentX = coordinates[0];
+                    currentY = coordinates[1];
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    double controlX = coordinates[0], controlY = coordinates[1];
+                    double endX = coordinates[2], endY = coordinates[3];
+                    coordinates[0] = currentX + 2.0 / 3 * (controlX - currentX);
+                    coordinates[1] = currentY + 2.0 / 3 * (controlY - currentY);
+                    coordinates[2] = endX + 2.0 / 3 * (controlX - endX);
+                    coordinates[3] = endY + 2.0 / 3 * (controlY - endY);
+                    coordinates[4] = endX;
+                    coordinates[5] = endY;
+                    appendPoints(3);
+                    text.append("c\n");
+                    currentX = endX;
+                    currentY = endY;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    appendPoints(3);
+                    text.append("c\n");
+                    currentX = coordinates[4];
+                    currentY = coordinates[5];
+                    break;
+                default:
+                    text.append("h\n");
+                    currentX = startX;
+                    currentY = startY;
+                    break;
+            }
+            if (text.length() >= FLUSH_LENGTH) {
+                flushText();
+            }
+        }
+    }
+
+    private void appendPoints(int points) {
+        for (int i = 0; i < 2 * points; i++) {
+            appendNumber(text, coordinates[i], COORDINATE_DECIMALS);
+            text.append(' ');
+        }
+    }
+
+    // Записать накопленные операторы в сжимаемый поток содержимого
+    private void flushText() throws IOException {
+        content.write(text.toString().getBytes(StandardCharsets.ISO_8859_1));
+        text.setLength(0);
+    }
+
+    private void startObject(int number) throws IOException {
+        offsets[number] = file.count;
+        write(number + " 0 obj\n");
+    }
+
+    private void write(String s) throws IOException {
+        file.write(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    // Закончить поток содержимого, записать его длину, таблицу смещений объектов и концовку файла
+    public void close() throws IOException {
+        flushText();
+        content.close();
+        long length = file.count - contentStart;
+        write("\nendstream\nendobj\n");
+        startObject(LENGTH);
+        write(length + "\nendobj\n");
+        long xref = file.count;
+        StringBuilder table = new StringBuilder();
+        table.append("xref\n0 ").append(LENGTH + 1).append('\n');
+        table.append("0000000000 65535 f \n");
+        for (int i = 1; i <= LENGTH; i++) {
+            table.append(String.format(Locale.ROOT, "%010d 00000 n \n", offsets[i]));
+        }
+        table.append("trailer\n<< /Size ").append(LENGTH + 1).append(" /Root ").append(CATALOG)
+                .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+        write(table.toString());
+        file.close();
+    }
+
+    // Поток, считающий записанные байты
+    private static class CountingStream extends FilterOutputStream {
+        long count;
+
+        CountingStream(OutputStream out) {
+            super(out);
+        }
+
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,606 @@
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/* Формат файла с индексом (контейнер) для данных графика.
+ * В отличие от исходного формата (пары double без заголовка), в начале файла хранится
+ * заголовок с количеством точек, границами и признаком упорядоченности по X, поэтому
+ * их не нужно вычислять просмотром всех точек. Точки разбиты на блоки по blockSize точек;
+ * для каждого блока в индексе хранятся его расположение в файле и границы точек блока по X,
+ * так что для показа части графика можно читать только нужные блоки: контейнер, не
+ * помещающийся в памяти, открывается без загрузки (OutOfCoreSeries) - в памяти хранится
+ * только индекс (Index), а блоки видимой области читаются по нему (readRange).
+ * Столбцы X и Y кодируются независимо: double, float (с потерей точности) или
+ * XOR-сжатием соседних значений (без потерь).
+ *
+ * Расположение (все числа big-endian, как в DataOutputStream):
+ *   заголовок, HEADER_BYTES байт:
+ *     0  магическое число MAGIC (8 байт)
+ *     8  int версия формата
+ *     12 int флаги (FLAG_SORTED_BY_X)
+ *     16 byte кодирование X, byte кодирование Y, 2 байта резерв
+ *     20 int количество точек в блоке
+ *     24 long количество точек
+ *     32 long количество точек с нечисловыми координатами
+ *     40 double minX, maxX, minY, maxY (только по конечным точкам)
+ *     72 long смещение индекса блоков
+ *     80 int количество блоков
+ *   индекс: для каждого блока BLOCK_ENTRY_BYTES байт -
+ *     long смещение данных блока, int байт столбца X, int байт столбца Y,
+ *     double minX, maxX точек блока (NaN, если конечных точек нет)
+ *   данные блоков: столбец X, затем столбец Y.
+ */
+public class PlotContainer {
+    // Способ хранения столбца координат
+    public enum Encoding {
+        // 8 байт на число, без потерь
+        FLOAT64,
+        // 4 байта на число; точность float (около 7 значащих цифр)
+        FLOAT32,
+        // Первое число блока - 8 байт, остальные - XOR с предыдущим без нулевых байт по краям
+        XOR
+    }
+
+    // Начало файла-контейнера; как число double такие байты дают отрицательное число порядка 1e-280,
+    // поэтому спутать контейнер с файлом исходного формата практически невозможно
+    private static final byte[] MAGIC = {(byte) 0x89, 'L', '4', 'P', 'L', 'T', '\r', '\n'};
+    public static final int VERSION = 2;
+    public static final int FLAG_SORTED_BY_X = 1;
+    public static final int HEADER_BYTES = 96;
+    public static final int BLOCK_ENTRY_BYTES = 32;
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    // Заголовок контейнера
+    public static class Header {
+        private final int version;
+        private final boolean sortedByX;
+        private final Encoding xEncoding;
+        private final Encoding yEncoding;
+        private final int blockSize;
+        private final int pointCount;
+        private final int nonFiniteCount;
+        private final double minX;
+        private final double maxX;
+        private final double minY;
+        private final double maxY;
+        private final long indexOffset;
+        private final int blockCount;
+
+        Header(int version, boolean sortedByX, Encoding xEncoding, Encoding yEncoding, int blockSize,
+               int pointCount, int nonFiniteCount, double minX, double maxX, double minY, double maxY,
+               long indexOffset, int blockCount) {
+            this.version = version;
+            this.sortedByX = sortedByX;
+            this.xEncoding = xEncoding;
+            this.yEncoding = yEncoding;
+            this.blockSize = blockSize;
+            this.pointCount = pointCount;
+            this.nonFiniteCount = nonFiniteCount;
+            this.minX = minX;
+            this.maxX = maxX;
+            this.minY = minY;
+            this.maxY = maxY;
+            this.indexOffset = indexOffset;
+            this.blockCount = blockCount;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public boolean isSortedByX() {
+            return sortedByX;
+        }
+
+        public Encoding getXEncoding() {
+            return xEncoding;
+        }
+
+        public Encoding getYEncoding() {
+            return yEncoding;
+        }
+
+        public int getBlockSize() {
+            return blockSize;
+        }
+
+        public int getPointCount() {
+            return pointCount;
+        }
+
+        public int getNonFiniteCount() {
+            return nonFiniteCount;
+        }
+
+        public double getMinX() {
+            return minX;
+        }
+
+        public double getMaxX() {
+            return maxX;
+        }
+
+        public double getMinY() {
+            return minY;
+        }
+
+        public double getMaxY() {
+            return maxY;
+        }
+
+        public int getBlockCount() {
+            return blockCount;
+        }
+    }
+
+    // Запись индекса: расположение и границы одного блока
+    private static class Block {
+        long offset;
+        int xBytes;
+        int yBytes;
+        double minX = Double.NaN;
+        double maxX = Double.NaN;
+    }
+
+    /* Индекс блоков контейнера: заголовок, расположение и границы каждого блока.
+     * Хранится в памяти, пока контейнер открыт без загрузки; данные блоков читаются по требованию.
+     */
+    public static class Index {
+        private final File file;
+        private final Header header;
+        private final Block[] blocks;
+
+        private Index(File file, Header header, Block[] blocks) {
+            this.file = file;
+            this.header = header;
+            this.blocks = blocks;
+        }
+
+        public Header getHeader() {
+            return header;
+        }
+
+        // Количество блоков
+        public int count() {
+            return blocks.length;
+        }
+
+        // Количество точек в блоке block (последний блок может быть неполным)
+        public int pointsIn(int block) {
+            return (int) Math.min(header.blockSize, header.pointCount - (long) block * header.blockSize);
+        }
+
+        // Границы конечных точек блока по X (NaN, если таких точек нет)
+        public double getMinX(int block) {
+            return blocks[block].minX;
+        }
+
+        public double getMaxX(int block) {
+            return blocks[block].maxX;
+        }
+    }
+
+    // Истина, если файл начинается с магического числа контейнера
+    public static boolean isContainer(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return false;
+            }
+            ByteBuffer start = ByteBuffer.allocate(MAGIC.length);
+            channel.read(start, 0);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (start.get(i) != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public static Header readHeader(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return readHeader(channel);
+        }
+    }
+
+    private static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = readFully(channel, 0, HEADER_BYTES, null);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(i) != MAGIC[i]) {
+                throw new IOException("Файл не является контейнером данных графика");
+            }
+        }
+        int version = buffer.getInt(8);
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия формата файла: " + version);
+        }
+        int flags = buffer.getInt(12);
+        Encoding xEncoding = encoding(buffer.get(16));
+        Encoding yEncoding = encoding(buffer.get(17));
+        int blockSize = buffer.getInt(20);
+        long pointCount = buffer.getLong(24);
+        long nonFiniteCount = buffer.getLong(32);
+        long indexOffset = buffer.getLong(72);
+        int blockCount = buffer.getInt(80);
+        if (pointCount < 0 || pointCount > Integer.MAX_VALUE - 8) {
+            throw new IOException("Недопустимое количество точек в заголовке: " + pointCount);
+        }
+        if (nonFiniteCount < 0 || nonFiniteCount > pointCount) {
+            throw new IOException("Файл повреждён: неверное количество нечисловых точек");
+        }
+        // Смещение в повреждённом заголовке может быть любым - конец индекса вычисляется без переполнения
+        long indexEnd;
+        try {
+            indexEnd = Math.addExact(indexOffset, (long) blockCount * BLOCK_ENTRY_BYTES);
+        } catch (ArithmeticException ex) {
+            indexEnd = Long.MAX_VALUE;
+        }
+        if (blockSize <= 0 || blockCount != (pointCount + blockSize - 1) / blockSize
+                || indexOffset < HEADER_BYTES || indexEnd > channel.size()) {
+            throw new IOException("Файл повреждён: неверный индекс блоков");
+        }
+        return new Header(version, (flags & FLAG_SORTED_BY_X) != 0, xEncoding, yEncoding, blockSize,
+                (int) pointCount, (int) nonFiniteCount,
+                buffer.getDouble(40), buffer.getDouble(48), buffer.getDouble(56), buffer.getDouble(64),
+                indexOffset, blockCount);
+    }
+
+    private static Encoding encoding(byte code) throws IOException {
+        if (code < 0 || code >= Encoding.values().length) {
+            throw new IOException("Неизвестный способ кодирования столбца: " + code);
+        }
+        return Encoding.values()[code];
+    }
+
+    // Прочитать заголовок и индекс блоков контейнера (данные блоков не читаются)
+    public static Index readIndex(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            return new Index(file, header, readIndex(channel, header));
+        }
+    }
+
+    private static Block[] readIndex(FileChannel channel, Header header) throws IOException {
+        ByteBuffer buffer = readFully(channel, header.indexOffset,
+                length((long) header.blockCount * BLOCK_ENTRY_BYTES), null);
+        Block[] blocks = new Block[header.blockCount];
+        for (int i = 0; i < blocks.length; i++) {
+            Block block = new Block();
+            block.offset = buffer.getLong();
+            block.xBytes = buffer.getInt();
+            block.yBytes = buffer.getInt();
+            block.minX = buffer.getDouble();
+            block.maxX = buffer.getDouble();
+            // Смещение проверяется отдельно, чтобы сумма с длинами столбцов не переполнилась
+            if (block.offset < HEADER_BYTES || block.offset > channel.size() || block.xBytes < 0 || block.yBytes < 0
+                    || block.offset + block.xBytes + block.yBytes > channel.size()) {
+                throw new IOException("Файл повреждён: блок " + i + " выходит за пределы файла");
+            }
+            blocks[i] = block;
+        }
+        return blocks;
+    }
+
+    // Прочитать контейнер целиком; сводка набора берётся из заголовка, а не вычисляется
+    public static PointSeries read(File file) throws IOException {
+        return read(file, null);
+    }
+
+    /* То же с уведомлением о ходе загрузки (listener может быть null), как в GraphicsFileLoader.
+     * Если поток загрузки прерван, чтение останавливается с InterruptedIOException.
+     */
+    public static PointSeries read(File file, GraphicsFileLoader.ProgressListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            Block[] blocks = readIndex(channel, header);
+            int count = header.pointCount;
+            double[] xs = new double[count];
+            double[] ys = new double[count];
+            ByteBuffer buffer = null;
+            int index = 0;
+            for (int i = 0; i < blocks.length; i++) {
+                int points = Math.min(header.blockSize, count - index);
+                buffer = readBlock(channel, blocks[i], buffer);
+                decodeBlock(buffer, header, blocks[i], points, xs, ys, index);
+                index += points;
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Загрузка файла отменена");
+                }
+                if (listener != null && index < count && (i & 255) == 255) {
+                    listener.loaded(new PointSeries(xs, ys, index), count);
+                }
+            }
+            SeriesSummary summary = SeriesSummary.of(count, header.minX, header.maxX, header.minY, header.maxY,
+                    header.nonFiniteCount, header.sortedByX,
+                    count > 0 ? xs[0] : Double.NaN, count > 0 ? xs[count - 1] : Double.NaN);
+            return new PointSeries(xs, ys, count, summary);
+        }
+    }
+
+    /* Прочитать точки блоков [from, to) контейнера с индексом index в массивы xs и ys,
+     * начиная с позиции offset. Остальные блоки не читаются. Возвращает количество точек.
+     * Если поток прерван, чтение останавливается с InterruptedIOException.
+     */
+    public static int readRange(Index index, int from, int to, double[] xs, double[] ys, int offset)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(index.file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = null;
+            int position = offset;
+            for (int i = from; i < to; i++) {
+                int points = index.pointsIn(i);
+                buffer = readBlock(channel, index.blocks[i], buffer);
+                decodeBlock(buffer, index.header, index.blocks[i], points, xs, ys, position);
+                position += points;
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Чтение точек отменено");
+                }
+            }
+            return position - offset;
+        }
+    }
+
+    private static ByteBuffer readBlock(FileChannel channel, Block block, ByteBuffer buffer) throws IOException {
+        return readFully(channel, block.offset, length((long) block.xBytes + block.yBytes), buffer);
+    }
+
+    // Длина читаемых данных; в повреждённом файле она может не поместиться в int
+    private static int length(long bytes) throws IOException {
+        if (bytes < 0 || bytes > Integer.MAX_VALUE - 8) {
+            throw new IOException("Файл повреждён: недопустимый размер данных " + bytes);
+        }
+        return (int) bytes;
+    }
+
+    // Прочитать length байт с позиции position (буфер переиспользуется, если он достаточно велик)
+    private static ByteBuffer readFully(FileChannel channel, long position, int length, ByteBuffer buffer)
+            throws IOException {
+        if (buffer == null || buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(length);
+        }
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Файл обрезан");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void decodeBlock(ByteBuffer buffer, Header header, Block block, int points,
+                                    double[] xs, double[] ys, int offset) throws IOException {
+        try {
+            decodeColumn(buffer, header.xEncoding, xs, offset, points);
+            if (buffer.position() != block.xBytes) {
+                throw new IOException("Файл повреждён: неверная длина столбца X");
+            }
+            decodeColumn(buffer, header.yEncoding, ys, offset, points);
+            if (buffer.position() != block.xBytes + block.yBytes) {
+                throw new IOException("Файл повреждён: неверная длина столбца Y");
+            }
+        } catch (RuntimeException ex) {
+            // BufferUnderflowException и т.п. - данные блока не соответствуют кодированию
+            throw new IOException("Файл повреждён: не удалось декодировать блок", ex);
+        }
+    }
+
+    private static void decodeColumn(ByteBuffer buffer, Encoding encoding, double[] values, int offset, int count)
+            throws IOException {
+        switch (encoding) {
+            case FLOAT64:
+                buffer.asDoubleBuffer().get(values, offset, count);
+                buffer.position(buffer.position() + count * Double.BYTES);
+                break;
+            case FLOAT32:
+                for (int i = 0; i < count; i++) {
+                    values[offset + i] = buffer.getFloat();
+                }
+                break;
+            case XOR:
+                long previous = 0;
+                for (int i = 0; i < count; i++) {
+                    long bits;
+                    if (i == 0) {
+                        bits = buffer.getLong();
+                    } else {
+                        // Управляющий байт: старшая тетрада - число нулевых старших байт XOR,
+                        // младшая - число значащих байт, которые следуют за ним
+                        int control = buffer.get() & 0xFF;
+                        int significant = control & 0x0F;
+                        int leading = control >>> 4;
+                        if (leading + significant > 8) {
+                            throw new IOException("Файл повреждён: неверный управляющий байт " + control
+                                    + " в столбце XOR");
+                        }
+                        long xor = 0;
+                        for (int b = 0; b < significant; b++) {
+                            xor = (xor << 8) | (buffer.get() & 0xFF);
+                        }
+                        int trailing = 8 - leading - significant;
+                        if (significant > 0) {
+                            xor <<= 8 * trailing;
+                        }
+                        bits = previous ^ xor;
+                    }
+                    values[offset + i] = Double.longBitsToDouble(bits);
+                    previous = bits;
+                }
+                break;
+        }
+    }
+
+    // Записать набор точек в контейнер с блоками по DEFAULT_BLOCK_SIZE точек
+    public static void write(PointSeries series, File file, Encoding xEncoding, Encoding yEncoding) throws IOException {
+        write(series, file, xEncoding, yEncoding, DEFAULT_BLOCK_SIZE);
+    }
+
+    /* Записать набор точек в контейнер. Границы и упорядоченность в заголовке и индексе
+     * вычисляются по значениям в том виде, в каком они будут прочитаны (для FLOAT32 - после округления).
+     */
+    public static void write(PointSeries series, File file, Encoding xEncoding, Encoding yEncoding, int blockSize)
+            throws IOException {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Недопустимый размер блока: " + blockSize);
+        }
+        int count = series.size();
+        int blockCount = (count + blockSize - 1) / blockSize;
+        // Размеры буферов проверяются до создания файла: при маленьком блоке индекс большого набора,
+        // а при огромном блоке - буфер блока могут не поместиться в массив
+        int indexBytes = writeLength((long) blockCount * BLOCK_ENTRY_BYTES);
+        // Худший случай кодирования XOR - 9 байт на число
+        int blockBytes = writeLength(2L * 9 * blockSize);
+        Block[] blocks = new Block[blockCount];
+        long indexOffset = HEADER_BYTES;
+        long dataOffset = indexOffset + indexBytes;
+        double[] xs = series.xs();
+        double[] ys = series.ys();
+        double[] blockXs = new double[blockSize];
+        double[] blockYs = new double[blockSize];
+        ByteBuffer buffer = ByteBuffer.allocate(blockBytes);
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        int nonFinite = 0;
+        boolean sorted = true;
+        double previousX = Double.NaN;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = dataOffset;
+            for (int i = 0; i < blockCount; i++) {
+                int from = i * blockSize;
+                int points = Math.min(blockSize, count - from);
+                Block block = new Block();
+                double blockMinY = Double.NaN;
+                double blockMaxY = Double.NaN;
+                for (int j = 0; j < points; j++) {
+                    double x = stored(xs[from + j], xEncoding);
+                    double y = stored(ys[from + j], yEncoding);
+                    blockXs[j] = x;
+                    blockYs[j] = y;
+                    if (from + j > 0 && x < previousX) {
+                        sorted = false;
+                    }
+                    previousX = x;
+                    if (!Double.isFinite(x) || !Double.isFinite(y)) {
+                        nonFinite++;
+                        continue;
+                    }
+                    // Сравнения с NaN ложны, поэтому первая конечная точка блока задаёт его границы
+                    if (!(x >= block.minX)) block.minX = x;
+                    if (!(x <= block.maxX)) block.maxX = x;
+                    if (!(y >= blockMinY)) blockMinY = y;
+                    if (!(y <= blockMaxY)) blockMaxY = y;
+                }
+                if (!Double.isNaN(block.minX)) {
+                    minX = Math.min(minX, block.minX);
+                    maxX = Math.max(maxX, block.maxX);
+                    minY = Math.min(minY, blockMinY);
+                    maxY = Math.max(maxY, blockMaxY);
+                }
+                buffer.clear();
+                encodeColumn(buffer, xEncoding, blockXs, points);
+                block.xBytes = buffer.position();
+                encodeColumn(buffer, yEncoding, blockYs, points);
+                block.yBytes = buffer.position() - block.xBytes;
+                buffer.flip();
+                block.offset = position;
+                position += writeFully(channel, buffer, position);
+                blocks[i] = block;
+            }
+            // Индекс и заголовок записываются последними, когда известны расположение и границы блоков
+            ByteBuffer index = ByteBuffer.allocate(indexBytes);
+            for (Block block : blocks) {
+                index.putLong(block.offset);
+                index.putInt(block.xBytes);
+                index.putInt(block.yBytes);
+                index.putDouble(block.minX);
+                index.putDouble(block.maxX);
+            }
+            index.flip();
+            writeFully(channel, index, indexOffset);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.put(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(sorted ? FLAG_SORTED_BY_X : 0);
+            header.put((byte) xEncoding.ordinal());
+            header.put((byte) yEncoding.ordinal());
+            header.putShort((short) 0);
+            header.putInt(blockSize);
+            header.putLong(count);
+            header.putLong(nonFinite);
+            header.putDouble(minX);
+            header.putDouble(maxX);
+            header.putDouble(minY);
+            header.putDouble(maxY);
+            header.putLong(indexOffset);
+            header.putInt(blockCount);
+            header.position(HEADER_BYTES);
+            header.flip();
+            writeFully(channel, header, 0);
+        }
+    }
+
+    // Размер буфера для записи; набор, для которого он не помещается в int, записать с таким блоком нельзя
+    private static int writeLength(long bytes) throws IOException {
+        if (bytes > Integer.MAX_VALUE - 8) {
+            throw new IOException("Слишком большой размер данных для записи (" + bytes
+                    + " байт): измените размер блока");
+        }
+        return (int) bytes;
+    }
+
+    // Значение в том виде, в каком оно будет прочитано из столбца с данным кодированием
+    private static double stored(double value, Encoding encoding) {
+        return encoding == Encoding.FLOAT32 ? (double) (float) value : value;
+    }
+
+    private static void encodeColumn(ByteBuffer buffer, Encoding encoding, double[] values, int count) {
+        switch (encoding) {
+            case FLOAT64:
+                for (int i = 0; i < count; i++) {
+                    buffer.putDouble(values[i]);
+                }
+                break;
+            case FLOAT32:
+                for (int i = 0; i < count; i++) {
+                    buffer.putFloat((float) values[i]);
+                }
+                break;
+            case XOR:
+                long previous = 0;
+                for (int i = 0; i < count; i++) {
+                    long bits = Double.doubleToRawLongBits(values[i]);
+                    if (i == 0) {
+                        buffer.putLong(bits);
+                    } else {
+                        long xor = bits ^ previous;
+                        if (xor == 0) {
+                            buffer.put((byte) 0);
+                        } else {
+                            int leading = Long.numberOfLeadingZeros(xor) / 8;
+                            int trailing = Long.numberOfTrailingZeros(xor) / 8;
+                            int significant = 8 - leading - trailing;
+                            buffer.put((byte) ((leading << 4) | significant));
+                            for (int b = significant - 1; b >= 0; b--) {
+                                buffer.put((byte) (xor >>> (8 * (trailing + b))));
+                            }
+                        }
+                    }
+                    previous = bits;
+                }
+                break;
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+/* Преобразование файлов с точками между исходным форматом (пары double без заголовка)
+ * и контейнером с заголовком и индексом блоков (PlotContainer).
+ * Формат входного файла определяется автоматически; файлы .csv и .txt (или любой файл
+ * с параметром --text) читаются как текст - по два числа в строке (TextImporter).
+ *
+ * Запуск: java PlotFileConverter [параметры] входной-файл выходной-файл
+ */
+public class PlotFileConverter {
+    public static void main(String[] args) {
+        PlotContainer.Encoding xEncoding = PlotContainer.Encoding.XOR;
+        PlotContainer.Encoding yEncoding = PlotContainer.Encoding.XOR;
+        int blockSize = PlotContainer.DEFAULT_BLOCK_SIZE;
+        boolean legacy = false;
+        boolean text = false;
+        File input = null;
+        File output = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "-x":
+                        xEncoding = encoding(value(args, ++i, arg));
+                        break;
+                    case "-y":
+                        yEncoding = encoding(value(args, ++i, arg));
+                        break;
+                    case "--float32":
+                        xEncoding = PlotContainer.Encoding.FLOAT32;
+                        yEncoding = PlotContainer.Encoding.FLOAT32;
+                        break;
+                    case "--block":
+                        blockSize = Integer.parseInt(value(args, ++i, arg));
+                        if (blockSize <= 0) {
+                            throw new IllegalArgumentException("Размер блока должен быть положительным: " + blockSize);
+                        }
+                        break;
+                    case "--legacy":
+                        legacy = true;
+                        break;
+                    case "--text":
+                        text = true;
+                        break;
+                    default:
+                        if (arg.startsWith("-")) {
+                            throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+                        } else if (input == null) {
+                            input = new File(arg);
+                        } else if (output == null) {
+                            output = new File(arg);
+                        } else {
+                            throw new IllegalArgumentException("Лишний параметр: " + arg);
+                        }
+                }
+            }
+            if (output == null) {
+                throw new IllegalArgumentException("Не указаны входной и выходной файлы");
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+        try {
+            PointSeries series;
+            if (text || TextImporter.isTextFile(input)) {
+                TextImporter.Result result = TextImporter.read(input);
+                series = result.getSeries();
+                // Строки с ошибками пропускаются, но о них сообщается
+                for (String error : result.getErrors()) {
+                    System.err.println(input.getName() + ": " + error);
+                }
+                if (result.getMalformedCount() > result.getErrors().size()) {
+                    System.err.println(input.getName() + ": всего строк с ошибками: " + result.getMalformedCount());
+                }
+            } else {
+                series = GraphicsFileLoader.load(input);
+            }
+            if (legacy) {
+                writeLegacy(series, output);
+            } else {
+                PlotContainer.write(series, output, xEncoding, yEncoding, blockSize);
+            }
+            System.out.printf(Locale.ROOT, "%s: %d точек, %d -> %d байт%n",
+                    input.getName(), series.size(), input.length(), output.length());
+        } catch (IOException | OutOfMemoryError ex) {
+            System.err.println(input + ": " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Использование: PlotFileConverter [параметры] входной-файл выходной-файл");
+        System.err.println("  -x кодирование   столбец X: float64, float32 или xor (по умолчанию xor)");
+        System.err.println("  -y кодирование   столбец Y: float64, float32 или xor (по умолчанию xor)");
+        System.err.println("  --float32        оба столбца во float32 (с потерей точности)");
+        System.err.println("  --block N        точек в блоке, по умолчанию " + PlotContainer.DEFAULT_BLOCK_SIZE);
+        System.err.println("  --legacy         записать в исходном формате (пары double без заголовка)");
+        System.err.println("  --text           входной файл текстовый (для .csv и .txt - всегда)");
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Не указано значение параметра " + option);
+        }
+        return args[index];
+    }
+
+    private static PlotContainer.Encoding encoding(String name) {
+        try {
+            return PlotContainer.Encoding.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Неизвестное кодирование: " + name);
+        }
+    }
+
+    // Записать точки парами double, как их записывает DataOutputStream
+    private static void writeLegacy(PointSeries series, File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (int i = 0; i < series.size(); i++) {
+                out.writeDouble(series.getX(i));
+                out.writeDouble(series.getY(i));
+            }
+        }
+    }
+}
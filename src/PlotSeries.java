@@ -0,0 +1,46 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+
+/* Дополнительный набор точек, показываемый поверх основного графика для сравнения.
+ * Рисуется только линией своего цвета и пера (без маркеров). Сводка и пирамида набора
+ * вычисляются один раз при загрузке, подготовленная линия хранится в собственном
+ * SeriesRenderer, поэтому добавление или удаление другого набора её не пересчитывает.
+ */
+public class PlotSeries {
+    private final PointSeries data;
+    private final String name;
+    private final Color color;
+    private final BasicStroke stroke;
+    private final SeriesRenderer renderer = new SeriesRenderer();
+
+    public PlotSeries(PointSeries data, String name, Color color, BasicStroke stroke) {
+        this.data = data;
+        this.name = name;
+        this.color = color;
+        this.stroke = stroke;
+    }
+
+    public PointSeries getData() {
+        return data;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public BasicStroke getStroke() {
+        return stroke;
+    }
+
+    public SeriesRenderer getRenderer() {
+        return renderer;
+    }
+
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.Arrays;
+
+/* Растущий буфер точек, переиспользуемый между перерисовками.
+ * Массивы не уменьшаются, поэтому после первых кадров новые объекты не создаются.
+ */
+public class PointBuffer {
+    private double[] xs;
+    private double[] ys;
+    private int size;
+
+    public PointBuffer() {
+        this(1024);
+    }
+
+    public PointBuffer(int capacity) {
+        xs = new double[capacity];
+        ys = new double[capacity];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (xs.length < capacity) {
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+        }
+    }
+
+    // Задать количество точек после заполнения массивов напрямую (не больше ёмкости)
+    public void setSize(int size) {
+        if (size < 0 || size > xs.length) {
+            throw new IllegalArgumentException("Недопустимый размер буфера: " + size);
+        }
+        this.size = size;
+    }
+
+    public void add(double x, double y) {
+        if (size == xs.length) {
+            ensureCapacity(Math.max(16, xs.length * 2));
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    public double[] xs() {
+        return xs;
+    }
+
+    public double[] ys() {
+        return ys;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,222 @@
+/* Набор точек графика в столбцовом представлении.
+ * Координаты X и Y хранятся в двух параллельных массивах примитивного типа double,
+ * поэтому точка занимает 16 байт, а при рисовании не требуется распаковка объектов Double.
+ */
+public class PointSeries {
+    // Координаты X и Y точек графика
+    private final double[] xs;
+    private final double[] ys;
+    // Количество точек (массивы могут быть длиннее)
+    private final int size;
+    // Сводные характеристики точек (границы, упорядоченность); вычисляются один раз при первом обращении
+    private SeriesSummary summary;
+    // Пирамида минимумов и максимумов; строится при первом обращении
+    private MinMaxPyramid pyramid;
+    private boolean pyramidBuilt;
+    // До такого количества точек ближайшая точка ищется просмотром всех точек
+    private static final int NEAREST_SCAN_LIMIT = 4096;
+    // Признаки раскраски маркеров; вычисляются при первом обращении
+    private MarkerClassification markerClasses;
+    // Сетка для поиска ближайшей точки в неупорядоченном наборе; строится при первом обращении
+    private SpatialGrid spatialGrid;
+    // Статистика значений для панели сводки; вычисляется при первом обращении
+    private SeriesStatistics statistics;
+
+    public PointSeries(double[] xs, double[] ys, int size) {
+        if (xs.length < size || ys.length < size) {
+            throw new IllegalArgumentException("Массивы координат короче количества точек");
+        }
+        this.xs = xs;
+        this.ys = ys;
+        this.size = size;
+    }
+
+    // Набор с заранее известной сводкой (например, прочитанной из заголовка файла)
+    public PointSeries(double[] xs, double[] ys, int size, SeriesSummary summary) {
+        this(xs, ys, size);
+        if (summary.getCount() != size) {
+            throw new IllegalArgumentException("Сводка не соответствует количеству точек");
+        }
+        this.summary = summary;
+    }
+
+    /* Набор с заранее вычисленными характеристиками (например, из файла сводок SummaryCache).
+     * Пирамида должна быть построена по этим же массивам; отсутствующие (null) пирамида,
+     * классификация маркеров и статистика вычисляются, как обычно, при первом обращении.
+     */
+    public PointSeries(double[] xs, double[] ys, int size, SeriesSummary summary, MinMaxPyramid pyramid,
+                       MarkerClassification markerClasses, SeriesStatistics statistics) {
+        this(xs, ys, size, summary);
+        if (markerClasses != null && markerClasses.size() != size) {
+            throw new IllegalArgumentException("Классификация маркеров не соответствует количеству точек");
+        }
+        this.pyramid = pyramid;
+        // Для неупорядоченных данных пирамида не строится, поэтому её отсутствие - готовый результат
+        this.pyramidBuilt = pyramid != null || !summary.isSortedByX();
+        this.markerClasses = markerClasses;
+        this.statistics = statistics;
+    }
+
+    // Создать набор точек из массива вида x0, y0, x1, y1, ...
+    public static PointSeries fromInterleaved(double[] coordinates) {
+        int size = coordinates.length / 2;
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = coordinates[2*i];
+            ys[i] = coordinates[2*i + 1];
+        }
+        return new PointSeries(xs, ys, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double getX(int index) {
+        return xs[index];
+    }
+
+    public double getY(int index) {
+        return ys[index];
+    }
+
+    // Прямой доступ к массивам для циклов рисования; изменять их содержимое нельзя
+    public double[] xs() {
+        return xs;
+    }
+
+    public double[] ys() {
+        return ys;
+    }
+
+    /* Индекс первой точки, у которой X не меньше x (двоичный поиск).
+     * Имеет смысл только для упорядоченных по X данных.
+     */
+    public int lowerBound(double x) {
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (xs[middle] < x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Индекс первой точки, у которой X больше x (двоичный поиск)
+    public int upperBound(double x) {
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (xs[middle] <= x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Сводка по набору точек; при большом количестве точек вычисляется параллельно
+    public synchronized SeriesSummary summary() {
+        if (summary == null) {
+            summary = SeriesSummary.compute(xs, ys, size);
+        }
+        return summary;
+    }
+
+    // Пирамида для быстрого отображения части графика (null для неупорядоченных или малых наборов)
+    public synchronized MinMaxPyramid pyramid() {
+        if (!pyramidBuilt) {
+            pyramid = MinMaxPyramid.build(this);
+            pyramidBuilt = true;
+        }
+        return pyramid;
+    }
+
+    // Классификация точек для раскраски маркеров
+    public synchronized MarkerClassification markerClasses() {
+        if (markerClasses == null) {
+            markerClasses = MarkerClassification.compute(ys, size);
+        }
+        return markerClasses;
+    }
+
+    // Статистика значений Y (минимум, максимум, среднее, интеграл и т. д.)
+    public synchronized SeriesStatistics statistics() {
+        if (statistics == null) {
+            statistics = SeriesStatistics.compute(xs, ys, size);
+        }
+        return statistics;
+    }
+
+    // Сетка для поиска ближайшей точки (строится для любого набора, но нужна только неупорядоченным)
+    public synchronized SpatialGrid spatialGrid() {
+        if (spatialGrid == null) {
+            spatialGrid = SpatialGrid.build(this);
+        }
+        return spatialGrid;
+    }
+
+    /* Индекс точки, ближайшей к (x, y) в пикселах окна: разность по X умножается на pixelsPerUnitX,
+     * по Y - на pixelsPerUnitY (поворот осей меняет только масштабы). Учитываются точки не дальше
+     * maxDistance пикселов; -1, если таких нет. Для упорядоченных по X наборов поиск идёт
+     * по пирамиде, для неупорядоченных - по сетке, небольшие наборы просматриваются целиком.
+     */
+    public int nearest(double x, double y, double pixelsPerUnitX, double pixelsPerUnitY, double maxDistance) {
+        MinMaxPyramid pyramid = pyramid();
+        if (pyramid != null) {
+            return pyramid.nearest(x, y, pixelsPerUnitX, pixelsPerUnitY, maxDistance);
+        }
+        if (size > NEAREST_SCAN_LIMIT) {
+            return spatialGrid().nearest(x, y, pixelsPerUnitX, pixelsPerUnitY, maxDistance);
+        }
+        int index = -1;
+        double best = maxDistance * maxDistance;
+        for (int i = 0; i < size; i++) {
+            double dx = (xs[i] - x) * pixelsPerUnitX;
+            double dy = (ys[i] - y) * pixelsPerUnitY;
+            double distance = dx * dx + dy * dy;
+            if (distance < best) {
+                best = distance;
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    /* Набор из тех же массивов, но с большим количеством точек (точки дописаны в конец массивов).
+     * Сводка, пирамида, классификация маркеров и статистика (если она уже вычислена) достраиваются только по новым точкам. Уже учтённые точки
+     * изменяться не должны - на этом основана возможность рисовать старый набор,
+     * пока в массивы дописываются новые точки.
+     */
+    public PointSeries extend(int newSize) {
+        PointSeries extended = new PointSeries(xs, ys, newSize);
+        extended.summary = SeriesSummary.append(summary(), xs, ys, size, newSize);
+        if (extended.summary.isSortedByX()) {
+            extended.pyramid = MinMaxPyramid.extend(pyramid(), xs, ys, newSize);
+        }
+        extended.pyramidBuilt = true;
+        extended.markerClasses = MarkerClassification.extend(markerClasses(), ys, newSize);
+        SeriesStatistics known;
+        synchronized (this) {
+            known = statistics;
+        }
+        if (known != null) {
+            extended.statistics = SeriesStatistics.append(known, xs, ys, size, newSize);
+        }
+        return extended;
+    }
+
+    // Истина, если точки упорядочены по неубыванию X
+    public boolean isSortedByX() {
+        return summary().isSortedByX();
+    }
+}
@@ -0,0 +1,91 @@
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+
+/* Преобразование координат графика в координаты холста.
+ * Верхнему левому углу холста (0, 0) соответствует точка графика (minX, maxY),
+ * единице длины - scale пикселов. При повороте осей холст дополнительно преобразуется
+ * (поворот и масштабирование, см. GraphicsDisplay.paintComponent); это преобразование
+ * применяется к холсту, чтобы толщина линий и штрихи поворачивались вместе с графиком.
+ * Преобразование вычисляется один раз за кадр и используется всеми процедурами рисования;
+ * массивы координат преобразуются целиком в буферы, которые переиспользуются между кадрами,
+ * поэтому при рисовании не создаётся объектов на каждую точку.
+ */
+public class ScreenTransform {
+    private double originX;
+    private double originY;
+    private double scale;
+    // Координаты графика -> координаты холста
+    private final AffineTransform worldToUser = new AffineTransform();
+    // Преобразование холста при повороте осей (тождественное без поворота)
+    private final AffineTransform userToDevice = new AffineTransform();
+    // Полное преобразование координат графика в пикселы окна
+    private final AffineTransform worldToDevice = new AffineTransform();
+
+    // Задать преобразование: (minX, maxY) - левый верхний угол, scale - масштаб, rotate - поворот холста
+    public void set(double minX, double maxY, double scale, AffineTransform rotate) {
+        this.originX = minX;
+        this.originY = maxY;
+        this.scale = scale;
+        worldToUser.setTransform(scale, 0, 0, -scale, -minX * scale, maxY * scale);
+        userToDevice.setTransform(rotate);
+        worldToDevice.setTransform(userToDevice);
+        worldToDevice.concatenate(worldToUser);
+    }
+
+    // Координата X холста для координаты x графика
+    public double userX(double x) {
+        return (x - originX) * scale;
+    }
+
+    // Координата Y холста для координаты y графика
+    public double userY(double y) {
+        return (originY - y) * scale;
+    }
+
+    /* Преобразовать точки [from, to) в координаты холста; результат записывается в out
+     * с нулевого индекса (прежнее содержимое out теряется).
+     */
+    public void transform(double[] xs, double[] ys, int from, int to, PointBuffer out) {
+        int count = to - from;
+        out.ensureCapacity(count);
+        double[] outX = out.xs();
+        double[] outY = out.ys();
+        double originX = this.originX;
+        double originY = this.originY;
+        double scale = this.scale;
+        // Простой цикл без ветвлений - JIT-компилятор векторизует его
+        for (int i = 0; i < count; i++) {
+            outX[i] = (xs[from + i] - originX) * scale;
+            outY[i] = (originY - ys[from + i]) * scale;
+        }
+        out.setSize(count);
+    }
+
+    // Перевести точку окна в координаты графика; null, если преобразование необратимо
+    public Point2D.Double deviceToWorld(double x, double y) {
+        Point2D.Double point = new Point2D.Double(x, y);
+        try {
+            worldToDevice.inverseTransform(point, point);
+        } catch (NoninvertibleTransformException ex) {
+            return null;
+        }
+        return point;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public AffineTransform getWorldToUser() {
+        return new AffineTransform(worldToUser);
+    }
+
+    public AffineTransform getUserToDevice() {
+        return new AffineTransform(userToDevice);
+    }
+
+    public AffineTransform getWorldToDevice() {
+        return new AffineTransform(worldToDevice);
+    }
+}
@@ -0,0 +1,115 @@
+import java.awt.geom.GeneralPath;
+
+/* Подготовка линии одного набора точек к рисованию: выбор уровня пирамиды,
+ * прореживание и перевод в координаты холста. Результат - путь в координатах холста,
+ * который остаётся только обвести пером.
+ * У каждого набора свой объект со своими буферами, поэтому разные наборы можно готовить
+ * одновременно в разных потоках (общий ScreenTransform при этом только читается).
+ */
+public class SeriesRenderer {
+    private final Decimator decimator = new Decimator();
+    // Точки, выбранные из пирамиды для прореживания
+    private final PointBuffer pyramidPoints = new PointBuffer();
+    // Точки в координатах холста
+    private final PointBuffer screenPoints = new PointBuffer();
+    private final GeneralPath path = new GeneralPath();
+    // Параметры, для которых подготовлен путь (null - путь не готов)
+    private Object preparedKey = null;
+    // Сколько точек попало в путь и сколько отброшено при последней подготовке
+    private int pointsDrawn;
+    private int pointsCulled;
+
+    /* Подготовить путь по точкам [from, to) набора data.
+     * (minX, maxY) - левый верхний угол области отображения, ppuX, ppuY - пикселов устройства
+     * на единицу длины, columns - число столбцов пикселов, на которые ложится область по X.
+     */
+    public GeneralPath prepare(PointSeries data, MinMaxPyramid pyramid, int from, int to, Decimator.Mode mode,
+                               double minX, double maxY, double ppuX, double ppuY, int columns,
+                               ScreenTransform screen) {
+/* Сначала точки прореживаются: на один столбец пикселов остаётся не больше
+* четырёх точек, поэтому длина пути пропорциональна ширине окна, а не числу точек.
+* Для большого числа видимых точек прореживаются не сами точки, а минимумы и максимумы
+* корзин пирамиды, поэтому просматривается не больше нескольких значений на столбец
+*/
+        int level = pyramid == null ? -1 : pyramid.chooseLevel(to - from, columns);
+        int count;
+        if (level >= 0) {
+            int candidates = pyramid.collect(from, to, level, pyramidPoints);
+            count = decimator.decimate(pyramidPoints.xs(), pyramidPoints.ys(), true, 0, candidates, mode,
+                    minX, maxY, ppuX, ppuY, columns);
+        } else {
+            count = decimator.decimate(data, from, to, mode, minX, maxY, ppuX, ppuY, columns);
+        }
+// Преобразовать все оставшиеся точки в координаты холста одним проходом
+        screen.transform(decimator.xs(), decimator.ys(), 0, count, screenPoints);
+        double[] xs = screenPoints.xs();
+        double[] ys = screenPoints.ys();
+/* Линия графика - путь, состоящий из множества сегментов (GeneralPath).
+* Начало пути устанавливается в первую точку, после чего прямой соединяется со
+* следующими точками. Объект пути переиспользуется между кадрами
+*/
+        path.reset();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                path.lineTo(xs[i], ys[i]);
+            } else {
+                path.moveTo(xs[i], ys[i]);
+            }
+        }
+        pointsDrawn = count;
+        pointsCulled = (to - from) - count;
+        preparedKey = null;
+        return path;
+    }
+
+    /* Подготовить путь по точкам [from, to) набора data так же, как prepare, и запомнить key -
+     * параметры, для которых путь построен. Если путь уже построен для тех же параметров,
+     * он не пересчитывается.
+     */
+    public GeneralPath prepare(Object key, PointSeries data, MinMaxPyramid pyramid, int from, int to,
+                               Decimator.Mode mode, double minX, double maxY, double ppuX, double ppuY, int columns,
+                               ScreenTransform screen) {
+        if (key.equals(preparedKey)) {
+            return path;
+        }
+        prepare(data, pyramid, from, to, mode, minX, maxY, ppuX, ppuY, columns, screen);
+        preparedKey = key;
+        return path;
+    }
+
+    /* Подготовить путь по точкам набора, попадающим в область [minX, maxX] по X,
+     * и запомнить key - параметры, для которых путь построен. Если путь уже построен
+     * для тех же параметров, он не пересчитывается.
+     */
+    public GeneralPath prepareVisible(Object key, PointSeries data, Decimator.Mode mode,
+                                      double minX, double maxX, double maxY, double ppuX, double ppuY, int columns,
+                                      ScreenTransform screen) {
+        if (key.equals(preparedKey)) {
+            return path;
+        }
+        int from = 0;
+        int to = data.size();
+// Для упорядоченных по X данных двоичным поиском найти точки видимой области
+// (плюс по одной соседней точке с каждой стороны, чтобы линия доходила до края окна)
+        if (data.isSortedByX()) {
+            from = Math.max(0, data.lowerBound(minX) - 1);
+            to = Math.min(data.size(), data.upperBound(maxX) + 1);
+        }
+        prepare(data, data.pyramid(), from, to, mode, minX, maxY, ppuX, ppuY, columns, screen);
+        pointsCulled += data.size() - (to - from);
+        preparedKey = key;
+        return path;
+    }
+
+    public GeneralPath getPath() {
+        return path;
+    }
+
+    public int getPointsDrawn() {
+        return pointsDrawn;
+    }
+
+    public int getPointsCulled() {
+        return pointsCulled;
+    }
+}
@@ -0,0 +1,316 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/* Статистика значений Y набора точек для панели сводки: минимум и максимум с их положением,
+ * среднее и дисперсия, интеграл по X методом трапеций, количество пересечений нуля и количество
+ * значений, целая часть которых состоит только из чётных цифр (такие точки выделяются маркерами).
+ * Всё вычисляется одним проходом по массивам; части большого набора обрабатываются параллельно
+ * и объединяются (merge), поэтому статистику можно собирать и по частям файла, не загружая его.
+ * Точки с нечисловыми координатами не учитываются, а соседними считаются соседние конечные точки.
+ */
+public class SeriesStatistics {
+    // Начиная с этого количества точек вычисление распараллеливается (fork-join)
+    public static final int PARALLEL_THRESHOLD = 1 << 20;
+    // Размер части массива, обрабатываемой одной задачей без дальнейшего деления
+    private static final int SPLIT_SIZE = 1 << 18;
+    // Размер статистики, записанной writeTo, в байтах
+    public static final int BYTES = 3 * 4 + 4 * Long.BYTES + 11 * Double.BYTES;
+
+    // Количество конечных точек
+    private int count;
+    // Наименьшее и наибольшее Y, индексы и X этих точек (первых, если таких несколько)
+    private double minY = Double.NaN;
+    private double maxY = Double.NaN;
+    private long minIndex = -1;
+    private long maxIndex = -1;
+    private double minAtX = Double.NaN;
+    private double maxAtX = Double.NaN;
+    // Среднее и сумма квадратов отклонений от среднего
+    private double mean;
+    private double m2;
+    private double integral;
+    private long zeroCrossings;
+    private long evenDigitCount;
+    // Крайние конечные точки и знаки крайних ненулевых Y - нужны для объединения соседних частей
+    private double firstX = Double.NaN;
+    private double firstY = Double.NaN;
+    private double lastX = Double.NaN;
+    private double lastY = Double.NaN;
+    private int firstSign;
+    private int lastSign;
+
+    private SeriesStatistics() {
+    }
+
+    // Вычислить статистику точек [0, count)
+    public static SeriesStatistics compute(double[] xs, double[] ys, int count) {
+        if (count >= PARALLEL_THRESHOLD) {
+            return ForkJoinPool.commonPool().invoke(new ScanTask(xs, ys, 0, count));
+        }
+        return scan(xs, ys, 0, count, 0);
+    }
+
+    /* Дополнить статистику previous, вычисленную по точкам [0, from), точками [from, to).
+     * Просматриваются только новые точки.
+     */
+    public static SeriesStatistics append(SeriesStatistics previous, double[] xs, double[] ys, int from, int to) {
+        SeriesStatistics added;
+        if (to - from >= PARALLEL_THRESHOLD) {
+            added = ForkJoinPool.commonPool().invoke(new ScanTask(xs, ys, from, to));
+        } else {
+            added = scan(xs, ys, from, to, from);
+        }
+        return merge(previous, added);
+    }
+
+    /* Статистика точек [from, to) массивов; firstIndex - номер точки from во всём наборе
+     * (используется для положения минимума и максимума при вычислении по частям).
+     */
+    public static SeriesStatistics scan(double[] xs, double[] ys, int from, int to, long firstIndex) {
+        SeriesStatistics s = new SeriesStatistics();
+        // Суммы считаются относительно первого значения - так дисперсия не теряет точность
+        // при большом среднем. Цикл без делений; сравнения для минимума и максимума
+        // JIT-компилятор переводит в условные пересылки
+        double shift = Double.NaN;
+        double sum = 0;
+        double sumSquares = 0;
+        double integral = 0;
+        long crossings = 0;
+        long even = 0;
+        int count = 0;
+        int sign = 0;
+        double previousX = Double.NaN;
+        double previousY = Double.NaN;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        int minAt = -1;
+        int maxAt = -1;
+        for (int i = from; i < to; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            if (!Double.isFinite(x) || !Double.isFinite(y)) {
+                continue;
+            }
+            if (count == 0) {
+                shift = y;
+                s.firstX = x;
+                s.firstY = y;
+            } else {
+                integral += (x - previousX) * (y + previousY) * 0.5;
+            }
+            double d = y - shift;
+            sum += d;
+            sumSquares += d * d;
+            if (y < minY) {
+                minY = y;
+                minAt = i;
+            }
+            if (y > maxY) {
+                maxY = y;
+                maxAt = i;
+            }
+            int ySign = y > 0 ? 1 : y < 0 ? -1 : 0;
+            if (ySign != 0) {
+                if (sign == 0) {
+                    s.firstSign = ySign;
+                } else if (ySign != sign) {
+                    crossings++;
+                }
+                sign = ySign;
+            }
+            if (MarkerClassification.hasOnlyEvenDigits(y)) {
+                even++;
+            }
+            previousX = x;
+            previousY = y;
+            count++;
+        }
+        s.count = count;
+        if (count > 0) {
+            s.mean = shift + sum / count;
+            s.m2 = Math.max(0, sumSquares - sum * sum / count);
+            s.minY = minY;
+            s.maxY = maxY;
+            s.minIndex = firstIndex + (minAt - from);
+            s.maxIndex = firstIndex + (maxAt - from);
+            s.minAtX = xs[minAt];
+            s.maxAtX = xs[maxAt];
+            s.lastX = previousX;
+            s.lastY = previousY;
+        }
+        s.integral = integral;
+        s.zeroCrossings = crossings;
+        s.evenDigitCount = even;
+        s.lastSign = sign;
+        return s;
+    }
+
+    // Статистика соседних частей набора: left - точки, идущие до точек right
+    public static SeriesStatistics merge(SeriesStatistics left, SeriesStatistics right) {
+        if (left.count == 0) {
+            return right;
+        }
+        if (right.count == 0) {
+            return left;
+        }
+        SeriesStatistics s = new SeriesStatistics();
+        s.count = left.count + right.count;
+        // Объединение средних и сумм квадратов отклонений (формула Чана)
+        double delta = right.mean - left.mean;
+        s.mean = left.mean + delta * right.count / s.count;
+        s.m2 = left.m2 + right.m2 + delta * delta * ((double) left.count * right.count / s.count);
+        // При равенстве берётся более ранняя точка, как и при просмотре подряд
+        boolean leftMin = !(right.minY < left.minY);
+        s.minY = leftMin ? left.minY : right.minY;
+        s.minIndex = leftMin ? left.minIndex : right.minIndex;
+        s.minAtX = leftMin ? left.minAtX : right.minAtX;
+        boolean leftMax = !(right.maxY > left.maxY);
+        s.maxY = leftMax ? left.maxY : right.maxY;
+        s.maxIndex = leftMax ? left.maxIndex : right.maxIndex;
+        s.maxAtX = leftMax ? left.maxAtX : right.maxAtX;
+        // Трапеция и пересечение нуля на стыке частей
+        s.integral = left.integral + right.integral + (right.firstX - left.lastX) * (right.firstY + left.lastY) * 0.5;
+        s.zeroCrossings = left.zeroCrossings + right.zeroCrossings
+                + (left.lastSign != 0 && right.firstSign != 0 && left.lastSign != right.firstSign ? 1 : 0);
+        s.evenDigitCount = left.evenDigitCount + right.evenDigitCount;
+        s.firstX = left.firstX;
+        s.firstY = left.firstY;
+        s.lastX = right.lastX;
+        s.lastY = right.lastY;
+        s.firstSign = left.firstSign != 0 ? left.firstSign : right.firstSign;
+        s.lastSign = right.lastSign != 0 ? right.lastSign : left.lastSign;
+        return s;
+    }
+
+    // Записать статистику в буфер (для файла сводок SummaryCache)
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(count);
+        buffer.putDouble(minY);
+        buffer.putDouble(maxY);
+        buffer.putLong(minIndex);
+        buffer.putLong(maxIndex);
+        buffer.putDouble(minAtX);
+        buffer.putDouble(maxAtX);
+        buffer.putDouble(mean);
+        buffer.putDouble(m2);
+        buffer.putDouble(integral);
+        buffer.putLong(zeroCrossings);
+        buffer.putLong(evenDigitCount);
+        buffer.putDouble(firstX);
+        buffer.putDouble(firstY);
+        buffer.putDouble(lastX);
+        buffer.putDouble(lastY);
+        buffer.putInt(firstSign);
+        buffer.putInt(lastSign);
+    }
+
+    // Прочитать статистику, записанную writeTo
+    public static SeriesStatistics readFrom(ByteBuffer buffer) {
+        SeriesStatistics s = new SeriesStatistics();
+        s.count = buffer.getInt();
+        s.minY = buffer.getDouble();
+        s.maxY = buffer.getDouble();
+        s.minIndex = buffer.getLong();
+        s.maxIndex = buffer.getLong();
+        s.minAtX = buffer.getDouble();
+        s.maxAtX = buffer.getDouble();
+        s.mean = buffer.getDouble();
+        s.m2 = buffer.getDouble();
+        s.integral = buffer.getDouble();
+        s.zeroCrossings = buffer.getLong();
+        s.evenDigitCount = buffer.getLong();
+        s.firstX = buffer.getDouble();
+        s.firstY = buffer.getDouble();
+        s.lastX = buffer.getDouble();
+        s.lastY = buffer.getDouble();
+        s.firstSign = buffer.getInt();
+        s.lastSign = buffer.getInt();
+        return s;
+    }
+
+    // Количество точек с конечными координатами, по которым вычислена статистика
+    public int getCount() {
+        return count;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    // Номер точки с наименьшим Y в наборе (-1, если конечных точек нет)
+    public long getMinIndex() {
+        return minIndex;
+    }
+
+    public long getMaxIndex() {
+        return maxIndex;
+    }
+
+    public double getMinAtX() {
+        return minAtX;
+    }
+
+    public double getMaxAtX() {
+        return maxAtX;
+    }
+
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    // Дисперсия Y (по всем точкам, без поправки Бесселя)
+    public double getVariance() {
+        return count > 0 ? m2 / count : Double.NaN;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    // Интеграл Y по X методом трапеций (по соседним в порядке следования точкам)
+    public double getIntegral() {
+        return integral;
+    }
+
+    // Сколько раз Y меняет знак (нулевые значения пропускаются)
+    public long getZeroCrossings() {
+        return zeroCrossings;
+    }
+
+    // Количество точек, целая часть модуля Y которых состоит только из чётных цифр
+    public long getEvenDigitCount() {
+        return evenDigitCount;
+    }
+
+    // Задача fork-join: делит диапазон пополам, пока он не станет достаточно мал
+    @SuppressWarnings("serial")
+    private static class ScanTask extends RecursiveTask<SeriesStatistics> {
+        private final double[] xs;
+        private final double[] ys;
+        private final int from;
+        private final int to;
+
+        ScanTask(double[] xs, double[] ys, int from, int to) {
+            this.xs = xs;
+            this.ys = ys;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected SeriesStatistics compute() {
+            if (to - from <= SPLIT_SIZE) {
+                return scan(xs, ys, from, to, from);
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(xs, ys, from, middle);
+            left.fork();
+            SeriesStatistics right = new ScanTask(xs, ys, middle, to).compute();
+            return merge(left.join(), right);
+        }
+    }
+}
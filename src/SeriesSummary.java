@@ -0,0 +1,246 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/* Сводные характеристики набора точек: границы по X и Y, количество точек,
+ * упорядоченность по X и количество нечисловых значений (NaN, бесконечности).
+ * Вычисляются один раз при загрузке данных, а не при каждой перерисовке.
+ * Нечисловые значения в границы не включаются.
+ */
+public class SeriesSummary {
+    // Начиная с этого количества точек вычисление распараллеливается (fork-join)
+    public static final int PARALLEL_THRESHOLD = 1 << 20;
+    // Размер части массива, обрабатываемой одной задачей без дальнейшего деления
+    private static final int SPLIT_SIZE = 1 << 18;
+    // Размер сводки, записанной writeTo, в байтах
+    public static final int BYTES = 4 + 6 * Double.BYTES + 4 + 1;
+
+    private final int count;
+    private final double minX;
+    private final double maxX;
+    private final double minY;
+    private final double maxY;
+    // Количество точек, у которых X или Y - NaN или бесконечность
+    private final int nonFiniteCount;
+    private final boolean sortedByX;
+    // Крайние по порядку значения X - нужны, чтобы дополнять сводку новыми точками
+    private final double firstX;
+    private final double lastX;
+
+    private SeriesSummary(int count, double minX, double maxX, double minY, double maxY,
+                          int nonFiniteCount, boolean sortedByX, double firstX, double lastX) {
+        this.count = count;
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.nonFiniteCount = nonFiniteCount;
+        this.sortedByX = sortedByX;
+        this.firstX = firstX;
+        this.lastX = lastX;
+    }
+
+    // Сводка с уже известными характеристиками (например, из заголовка файла-контейнера)
+    public static SeriesSummary of(int count, double minX, double maxX, double minY, double maxY,
+                                   int nonFiniteCount, boolean sortedByX, double firstX, double lastX) {
+        return new SeriesSummary(count, minX, maxX, minY, maxY, nonFiniteCount, sortedByX, firstX, lastX);
+    }
+
+    // Вычислить характеристики точек с индексами [0, count)
+    public static SeriesSummary compute(double[] xs, double[] ys, int count) {
+        Partial result;
+        if (count >= PARALLEL_THRESHOLD) {
+            result = ForkJoinPool.commonPool().invoke(new ScanTask(xs, ys, 0, count));
+        } else {
+            result = scan(xs, ys, 0, count);
+        }
+        return result.toSummary(count);
+    }
+
+    /* Дополнить сводку previous, вычисленную по точкам [0, from), точками [from, to).
+     * Просматриваются только новые точки.
+     */
+    public static SeriesSummary append(SeriesSummary previous, double[] xs, double[] ys, int from, int to) {
+        Partial added;
+        if (to - from >= PARALLEL_THRESHOLD) {
+            added = ForkJoinPool.commonPool().invoke(new ScanTask(xs, ys, from, to));
+        } else {
+            added = scan(xs, ys, from, to);
+        }
+        if (previous.count == 0) {
+            return added.toSummary(to);
+        }
+        if (from == to) {
+            return previous;
+        }
+        return previous.toPartial().merge(added).toSummary(to);
+    }
+
+    // Сводка соседних частей набора: left - точки, идущие до точек right
+    public static SeriesSummary merge(SeriesSummary left, SeriesSummary right) {
+        if (left.count == 0) {
+            return right;
+        }
+        if (right.count == 0) {
+            return left;
+        }
+        return left.toPartial().merge(right.toPartial()).toSummary(left.count + right.count);
+    }
+
+    // Записать сводку в буфер (для файла сводок SummaryCache)
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(count);
+        buffer.putDouble(minX);
+        buffer.putDouble(maxX);
+        buffer.putDouble(minY);
+        buffer.putDouble(maxY);
+        buffer.putDouble(firstX);
+        buffer.putDouble(lastX);
+        buffer.putInt(nonFiniteCount);
+        buffer.put((byte) (sortedByX ? 1 : 0));
+    }
+
+    // Прочитать сводку, записанную writeTo
+    public static SeriesSummary readFrom(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        double minX = buffer.getDouble();
+        double maxX = buffer.getDouble();
+        double minY = buffer.getDouble();
+        double maxY = buffer.getDouble();
+        double firstX = buffer.getDouble();
+        double lastX = buffer.getDouble();
+        int nonFiniteCount = buffer.getInt();
+        boolean sortedByX = buffer.get() != 0;
+        return new SeriesSummary(count, minX, maxX, minY, maxY, nonFiniteCount, sortedByX, firstX, lastX);
+    }
+
+    private Partial toPartial() {
+        Partial p = new Partial();
+        p.minX = minX;
+        p.maxX = maxX;
+        p.minY = minY;
+        p.maxY = maxY;
+        p.nonFiniteCount = nonFiniteCount;
+        p.sortedByX = sortedByX;
+        p.firstX = firstX;
+        p.lastX = lastX;
+        return p;
+    }
+
+    // Последовательный просмотр части массивов [from, to)
+    private static Partial scan(double[] xs, double[] ys, int from, int to) {
+        Partial p = new Partial();
+        if (from >= to) {
+            return p;
+        }
+        p.firstX = xs[from];
+        p.lastX = xs[to - 1];
+        for (int i = from; i < to; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            if (i > from && x < xs[i - 1]) {
+                p.sortedByX = false;
+            }
+            if (!Double.isFinite(x) || !Double.isFinite(y)) {
+                p.nonFiniteCount++;
+                continue;
+            }
+            if (x < p.minX) p.minX = x;
+            if (x > p.maxX) p.maxX = x;
+            if (y < p.minY) p.minY = y;
+            if (y > p.maxY) p.maxY = y;
+        }
+        return p;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    public int getNonFiniteCount() {
+        return nonFiniteCount;
+    }
+
+    // Количество точек с обеими конечными координатами
+    public int getFiniteCount() {
+        return count - nonFiniteCount;
+    }
+
+    public boolean isSortedByX() {
+        return sortedByX;
+    }
+
+    // Промежуточный результат просмотра части массива
+    private static class Partial {
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        int nonFiniteCount = 0;
+        boolean sortedByX = true;
+        // Крайние значения X части - нужны для проверки упорядоченности на стыке частей
+        double firstX = Double.NaN;
+        double lastX = Double.NaN;
+
+        // Объединить результаты двух соседних частей (this - левая)
+        Partial merge(Partial right) {
+            Partial p = new Partial();
+            p.minX = Math.min(minX, right.minX);
+            p.maxX = Math.max(maxX, right.maxX);
+            p.minY = Math.min(minY, right.minY);
+            p.maxY = Math.max(maxY, right.maxY);
+            p.nonFiniteCount = nonFiniteCount + right.nonFiniteCount;
+            p.sortedByX = sortedByX && right.sortedByX && !(right.firstX < lastX);
+            p.firstX = firstX;
+            p.lastX = right.lastX;
+            return p;
+        }
+
+        SeriesSummary toSummary(int count) {
+            return new SeriesSummary(count, minX, maxX, minY, maxY, nonFiniteCount, sortedByX, firstX, lastX);
+        }
+    }
+
+    // Задача fork-join: делит диапазон пополам, пока он не станет достаточно мал
+    @SuppressWarnings("serial")
+    private static class ScanTask extends RecursiveTask<Partial> {
+        private final double[] xs;
+        private final double[] ys;
+        private final int from;
+        private final int to;
+
+        ScanTask(double[] xs, double[] ys, int from, int to) {
+            this.xs = xs;
+            this.ys = ys;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected Partial compute() {
+            if (to - from <= SPLIT_SIZE) {
+                return scan(xs, ys, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(xs, ys, from, middle);
+            left.fork();
+            Partial right = new ScanTask(xs, ys, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/* Равномерная сетка для поиска ближайшей точки в неупорядоченном по X наборе.
+ * Область, занимаемая точками, делится на одинаковое число столбцов и строк так,
+ * чтобы в ячейке было в среднем POINTS_PER_CELL точек; индексы точек сортируются
+ * по ячейкам (сортировка подсчётом), поэтому точки ячейки лежат подряд.
+ * Поиск просматривает ячейки кольцами вокруг ячейки запроса, пока кольцо может
+ * содержать точку ближе уже найденной. Точки с нечисловыми координатами в сетку не входят.
+ */
+public class SpatialGrid {
+    // Среднее количество точек в ячейке
+    public static final int POINTS_PER_CELL = 16;
+
+    private final double[] xs;
+    private final double[] ys;
+    private final double minX;
+    private final double minY;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int columns;
+    private final int rows;
+    // Точки ячейки c - order[cellStart[c]] ... order[cellStart[c + 1] - 1]; ячейки нумеруются по строкам
+    private final int[] cellStart;
+    private final int[] order;
+
+    private SpatialGrid(double[] xs, double[] ys, double minX, double minY, double cellWidth, double cellHeight,
+                        int columns, int rows, int[] cellStart, int[] order) {
+        this.xs = xs;
+        this.ys = ys;
+        this.minX = minX;
+        this.minY = minY;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.columns = columns;
+        this.rows = rows;
+        this.cellStart = cellStart;
+        this.order = order;
+    }
+
+    public static SpatialGrid build(PointSeries series) {
+        SeriesSummary summary = series.summary();
+        int finite = summary.getFiniteCount();
+        int side = (int) Math.max(1, Math.ceil(Math.sqrt((double) finite / POINTS_PER_CELL)));
+        double minX = finite > 0 ? summary.getMinX() : 0;
+        double minY = finite > 0 ? summary.getMinY() : 0;
+        double width = finite > 0 ? summary.getMaxX() - minX : 0;
+        double height = finite > 0 ? summary.getMaxY() - minY : 0;
+        // Для вырожденной по оси области - один столбец (строка) любой ширины
+        int columns = width > 0 ? side : 1;
+        int rows = height > 0 ? side : 1;
+        double cellWidth = width > 0 ? width / columns : 1;
+        double cellHeight = height > 0 ? height / rows : 1;
+        double[] xs = series.xs();
+        double[] ys = series.ys();
+        int size = series.size();
+        // Сортировка подсчётом: сначала размеры ячеек, затем начала ячеек, затем раскладка индексов
+        int[] cellStart = new int[columns * rows + 1];
+        int[] cells = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (!Double.isFinite(xs[i]) || !Double.isFinite(ys[i])) {
+                cells[i] = -1;
+                continue;
+            }
+            int column = Math.min(columns - 1, (int) ((xs[i] - minX) / cellWidth));
+            int row = Math.min(rows - 1, (int) ((ys[i] - minY) / cellHeight));
+            cells[i] = row * columns + column;
+            cellStart[cells[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] order = new int[finite];
+        int[] next = cellStart.clone();
+        for (int i = 0; i < size; i++) {
+            if (cells[i] >= 0) {
+                order[next[cells[i]]++] = i;
+            }
+        }
+        return new SpatialGrid(xs, ys, minX, minY, cellWidth, cellHeight, columns, rows, cellStart, order);
+    }
+
+    /* Индекс точки, ближайшей к (x, y) в пикселах окна (разность по X умножается на
+     * pixelsPerUnitX, по Y - на pixelsPerUnitY), не дальше maxDistance пикселов; -1, если таких нет.
+     */
+    public int nearest(double x, double y, double pixelsPerUnitX, double pixelsPerUnitY, double maxDistance) {
+        // Ячейка запроса (для точки вне сетки - ближайшая ячейка края)
+        int column = (int) Math.max(0, Math.min(columns - 1, Math.floor((x - minX) / cellWidth)));
+        int row = (int) Math.max(0, Math.min(rows - 1, Math.floor((y - minY) / cellHeight)));
+        // Между точкой запроса и кольцом r лежат не меньше r - 1 целых ячеек
+        double cellPixels = Math.min(cellWidth * pixelsPerUnitX, cellHeight * pixelsPerUnitY);
+        double best = maxDistance * maxDistance;
+        int index = -1;
+        int rings = Math.max(columns, rows);
+        for (int r = 0; r <= rings; r++) {
+            double gap = (r - 1) * cellPixels;
+            if (r > 1 && gap * gap >= best) {
+                break;
+            }
+            for (int w = row - r; w <= row + r; w++) {
+                if (w < 0 || w >= rows) {
+                    continue;
+                }
+                // В верхней и нижней строках кольца - все ячейки, в остальных - только крайние
+                int step = (w == row - r || w == row + r) ? 1 : Math.max(1, 2 * r);
+                for (int c = column - r; c <= column + r; c += step) {
+                    if (c < 0 || c >= columns) {
+                        continue;
+                    }
+                    int cell = w * columns + c;
+                    if (cellStart[cell] == cellStart[cell + 1]
+                            || cellDistance(c, w, x, y, pixelsPerUnitX, pixelsPerUnitY) >= best) {
+                        continue;
+                    }
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                        int i = order[k];
+                        double dx = (xs[i] - x) * pixelsPerUnitX;
+                        double dy = (ys[i] - y) * pixelsPerUnitY;
+                        double distance = dx * dx + dy * dy;
+                        if (distance < best) {
+                            best = distance;
+                            index = i;
+                        }
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    // Квадрат расстояния (в пикселах) от точки (x, y) до ячейки
+    private double cellDistance(int column, int row, double x, double y, double pixelsPerUnitX, double pixelsPerUnitY) {
+        double left = minX + column * cellWidth;
+        double bottom = minY + row * cellHeight;
+        double dx = x < left ? left - x : x > left + cellWidth ? x - left - cellWidth : 0;
+        double dy = y < bottom ? bottom - y : y > bottom + cellHeight ? y - bottom - cellHeight : 0;
+        dx *= pixelsPerUnitX;
+        dy *= pixelsPerUnitY;
+        return dx * dx + dy * dy;
+    }
+}
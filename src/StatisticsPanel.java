@@ -0,0 +1,71 @@
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+/* Боковая панель сводки данных основного графика. Показывает готовые SeriesSummary
+ * и SeriesStatistics, вычисленные при загрузке, поэтому сама по данным не проходит.
+ */
+@SuppressWarnings("serial")
+public class StatisticsPanel extends JPanel {
+    // Названия строк панели
+    private static final String[] NAMES = {
+            "Точек", "Нечисловых", "Минимум Y", "  при X", "Максимум Y", "  при X",
+            "Среднее Y", "Ст. отклонение Y", "Интеграл (трапеции)", "Пересечений нуля", "Y из чётных цифр"
+    };
+
+    // Поля значений, по одному на строку
+    private final JLabel[] values = new JLabel[NAMES.length];
+
+    public StatisticsPanel() {
+        super(new GridBagLayout());
+        setBorder(BorderFactory.createTitledBorder("Сводка данных"));
+        GridBagConstraints constraints = new GridBagConstraints();
+        constraints.anchor = GridBagConstraints.WEST;
+        constraints.insets = new Insets(2, 4, 2, 4);
+        for (int i = 0; i < NAMES.length; i++) {
+            constraints.gridy = i;
+            constraints.gridx = 0;
+            constraints.weightx = 0;
+            add(new JLabel(NAMES[i]), constraints);
+            values[i] = new JLabel();
+            constraints.gridx = 1;
+            constraints.weightx = 1;
+            add(values[i], constraints);
+        }
+        // Свободное место под строками
+        constraints.gridy = NAMES.length;
+        constraints.weighty = 1;
+        add(new JLabel(), constraints);
+        clear();
+    }
+
+    // Показать сводку и статистику набора точек
+    public void show(SeriesSummary summary, SeriesStatistics statistics) {
+        boolean any = statistics.getCount() > 0;
+        values[0].setText(String.valueOf(summary.getCount()));
+        values[1].setText(String.valueOf(summary.getNonFiniteCount()));
+        values[2].setText(any ? format(statistics.getMinY()) : "-");
+        values[3].setText(any ? format(statistics.getMinAtX()) + " (№ " + statistics.getMinIndex() + ")" : "-");
+        values[4].setText(any ? format(statistics.getMaxY()) : "-");
+        values[5].setText(any ? format(statistics.getMaxAtX()) + " (№ " + statistics.getMaxIndex() + ")" : "-");
+        values[6].setText(any ? format(statistics.getMean()) : "-");
+        values[7].setText(any ? format(statistics.getStandardDeviation()) : "-");
+        values[8].setText(format(statistics.getIntegral()));
+        values[9].setText(String.valueOf(statistics.getZeroCrossings()));
+        values[10].setText(String.valueOf(statistics.getEvenDigitCount()));
+    }
+
+    // Очистить панель (данные не загружены или ещё загружаются)
+    public void clear() {
+        for (JLabel value : values) {
+            value.setText("-");
+        }
+    }
+
+    private static String format(double value) {
+        return String.format("%.6g", value);
+    }
+}
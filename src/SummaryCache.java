@@ -0,0 +1,446 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/* Файл сводок - соседний с файлом данных файл (имя данных + EXTENSION), в котором сохраняется
+ * всё, что вычисляется при открытии большого файла: сводка, статистика, границы частей и обзор
+ * (как у OutOfCoreSeries), а для файлов, загружавшихся в память, - ещё раскраска маркеров
+ * и пирамида минимумов и максимумов. При повторном открытии файл сводок отображается в память
+ * и читается вместо просмотра данных: файл без загрузки открывается сразу, а при загрузке
+ * в память обзор показывается до того, как прочитаны точки.
+ * Файл сводок привязан к пути, размеру, времени изменения и отпечатку (CRC32 начала и конца)
+ * файла данных, а его содержимое - к контрольной сумме CRC32. Устаревший или повреждённый
+ * файл сводок удаляется при чтении и строится заново после открытия данных.
+ *
+ * Расположение (все числа big-endian):
+ *   заголовок, HEADER_BYTES байт:
+ *     0  магическое число MAGIC (8 байт)
+ *     8  int версия формата
+ *     12 int резерв
+ *     16 long размер файла данных
+ *     24 long время изменения файла данных, мкс
+ *     32 long отпечаток файла данных
+ *     40 long длина содержимого (всё после заголовка)
+ *     48 long CRC32 содержимого
+ *     56 int количество точек
+ *   содержимое:
+ *     int длина пути в байтах, путь файла данных (UTF-8)
+ *     сводка (SeriesSummary.BYTES), статистика (SeriesStatistics.BYTES)
+ *     int количество частей, double minX частей, double maxX частей
+ *     int количество точек обзора, double X обзора, double Y обзора
+ *     int количество слов маски маркеров (-1 - маски нет), long слова маски
+ *     int количество уровней пирамиды (0 - пирамиды нет), для каждого уровня -
+ *       int количество корзин, int индексы минимумов, int индексы максимумов
+ */
+public class SummaryCache {
+    // Окончание имени файла сводок
+    public static final String EXTENSION = ".l4sum";
+    // Окончание имени временного файла, в который записывается файл сводок перед заменой прежнего
+    public static final String TEMPORARY_EXTENSION = EXTENSION + ".tmp";
+    private static final byte[] MAGIC = {(byte) 0x89, 'L', '4', 'S', 'U', 'M', '\r', '\n'};
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 64;
+    // Файлы с меньшим количеством точек открываются быстро, и сводки для них не сохраняются
+    public static final int MIN_POINTS = 1 << 20;
+    // Сколько байт начала и конца файла данных входит в отпечаток
+    private static final int FINGERPRINT_BYTES = 64 * 1024;
+    // Размер буфера записи
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    // Сохраняемые характеристики набора точек
+    public static class Entry {
+        private final SeriesSummary summary;
+        private final SeriesStatistics statistics;
+        private final OutOfCoreSeries.Chunks chunks;
+        // Маска раскраски маркеров и уровни пирамиды (null, если файл не загружался в память
+        // или, для пирамиды, если точки не упорядочены по X)
+        private final long[] markerWords;
+        private final int[][] pyramidMin;
+        private final int[][] pyramidMax;
+
+        Entry(SeriesSummary summary, SeriesStatistics statistics, OutOfCoreSeries.Chunks chunks,
+              long[] markerWords, int[][] pyramidMin, int[][] pyramidMax) {
+            this.summary = summary;
+            this.statistics = statistics;
+            this.chunks = chunks;
+            this.markerWords = markerWords;
+            this.pyramidMin = pyramidMin;
+            this.pyramidMax = pyramidMax;
+        }
+
+        /* Характеристики набора, загруженного в память; недостающие вычисляются
+         * (сведения о частях - одним дополнительным проходом по точкам).
+         */
+        public static Entry of(PointSeries series) {
+            MinMaxPyramid pyramid = series.pyramid();
+            int[][] pyramidMin = null;
+            int[][] pyramidMax = null;
+            if (pyramid != null) {
+                pyramidMin = new int[pyramid.levels()][];
+                pyramidMax = new int[pyramid.levels()][];
+                for (int level = 0; level < pyramid.levels(); level++) {
+                    pyramidMin[level] = pyramid.minIndex(level);
+                    pyramidMax[level] = pyramid.maxIndex(level);
+                }
+            }
+            return new Entry(series.summary(), series.statistics(), OutOfCoreSeries.describe(series),
+                    series.markerClasses().words(), pyramidMin, pyramidMax);
+        }
+
+        // Характеристики файла, открытого без загрузки в память
+        public static Entry of(OutOfCoreSeries source) {
+            return new Entry(source.summary(), source.statistics(), source.chunks(), null, null, null);
+        }
+
+        public SeriesSummary summary() {
+            return summary;
+        }
+
+        public SeriesStatistics statistics() {
+            return statistics;
+        }
+
+        public OutOfCoreSeries.Chunks chunks() {
+            return chunks;
+        }
+
+        // Истина, если сохранена раскраска маркеров (файл загружался в память)
+        public boolean hasMarkerClasses() {
+            return markerWords != null;
+        }
+
+        /* Набор из точек loaded, прочитанных из файла данных, с сохранёнными характеристиками,
+         * так что они не вычисляются заново. Если количество точек не совпадает, возвращается loaded.
+         */
+        public PointSeries attach(PointSeries loaded) {
+            int size = loaded.size();
+            if (size != summary.getCount()) {
+                return loaded;
+            }
+            MinMaxPyramid pyramid = null;
+            MarkerClassification markerClasses = null;
+            try {
+                if (pyramidMin != null) {
+                    pyramid = MinMaxPyramid.of(loaded.xs(), loaded.ys(), size, pyramidMin, pyramidMax);
+                }
+                if (markerWords != null) {
+                    markerClasses = MarkerClassification.of(markerWords, size);
+                }
+            } catch (IllegalArgumentException ex) {
+                // Не подошедшие пирамида и маска вычисляются по точкам, как без файла сводок
+            }
+            return new PointSeries(loaded.xs(), loaded.ys(), size, summary, pyramid, markerClasses, statistics);
+        }
+    }
+
+    private final File sidecar;
+    private final File temporary;
+    // Признаки версии файла данных
+    private final String path;
+    private final long length;
+    private final long modified;
+    private final long fingerprint;
+
+    private SummaryCache(File file, String path, long length, long modified, long fingerprint) {
+        this.sidecar = new File(file.getPath() + EXTENSION);
+        this.temporary = new File(file.getPath() + TEMPORARY_EXTENSION);
+        this.path = path;
+        this.length = length;
+        this.modified = modified;
+        this.fingerprint = fingerprint;
+    }
+
+    /* Файл сводок для текущей версии файла данных: запоминаются путь, размер, время изменения
+     * и отпечаток файла. Вызывается до чтения данных, поэтому изменение файла во время
+     * чтения делает записанные потом сводки устаревшими, а не ошибочными.
+     */
+    public static SummaryCache of(File file) throws IOException {
+        Path source = file.toPath();
+        long modified = Files.getLastModifiedTime(source).to(TimeUnit.MICROSECONDS);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long length = channel.size();
+            CRC32 crc = new CRC32();
+            int head = (int) Math.min(FINGERPRINT_BYTES, length);
+            crc.update(readFully(channel, 0, head));
+            int tail = (int) Math.min(FINGERPRINT_BYTES, length - head);
+            crc.update(readFully(channel, length - tail, tail));
+            return new SummaryCache(file, file.getCanonicalPath(), length, modified, crc.getValue());
+        }
+    }
+
+    // Файл сводок или его временный файл - служебный файл программы, а не файл с точками
+    public static boolean isSidecar(File file) {
+        String name = file.getName();
+        return name.endsWith(EXTENSION) || name.endsWith(TEMPORARY_EXTENSION);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Файл изменился во время чтения");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public File getSidecar() {
+        return sidecar;
+    }
+
+    /* Прочитать сохранённые характеристики; null, если файла сводок нет, он относится
+     * к другой версии файла данных или повреждён (в двух последних случаях он удаляется).
+     */
+    public Entry read() {
+        if (!sidecar.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(sidecar.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Неверный размер файла сводок");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (buffer.get(i) != MAGIC[i]) {
+                    throw new IOException("Файл не является файлом сводок");
+                }
+            }
+            if (buffer.getInt(8) != VERSION || buffer.getLong(16) != length || buffer.getLong(24) != modified
+                    || buffer.getLong(32) != fingerprint) {
+                throw new IOException("Файл сводок устарел");
+            }
+            long payload = buffer.getLong(40);
+            if (payload != size - HEADER_BYTES) {
+                throw new IOException("Файл сводок обрезан");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(HEADER_BYTES, (int) payload));
+            if (crc.getValue() != buffer.getLong(48)) {
+                throw new IOException("Неверная контрольная сумма файла сводок");
+            }
+            int count = buffer.getInt(56);
+            buffer.position(HEADER_BYTES);
+            byte[] pathBytes = new byte[arrayLength(buffer, 1)];
+            buffer.get(pathBytes);
+            if (!path.equals(new String(pathBytes, StandardCharsets.UTF_8))) {
+                throw new IOException("Файл сводок относится к другому файлу");
+            }
+            SeriesSummary summary = SeriesSummary.readFrom(buffer);
+            SeriesStatistics statistics = SeriesStatistics.readFrom(buffer);
+            int chunkCount = arrayLength(buffer, 2 * Double.BYTES);
+            double[] chunkMinX = getDoubles(buffer, chunkCount);
+            double[] chunkMaxX = getDoubles(buffer, chunkCount);
+            int overviewSize = arrayLength(buffer, 2 * Double.BYTES);
+            double[] overviewXs = getDoubles(buffer, overviewSize);
+            double[] overviewYs = getDoubles(buffer, overviewSize);
+            long[] markerWords = null;
+            if (buffer.getInt(buffer.position()) >= 0) {
+                markerWords = new long[arrayLength(buffer, Long.BYTES)];
+                buffer.asLongBuffer().get(markerWords);
+                buffer.position(buffer.position() + markerWords.length * Long.BYTES);
+            } else {
+                buffer.getInt();
+            }
+            int levels = arrayLength(buffer, Integer.BYTES);
+            int[][] pyramidMin = levels > 0 ? new int[levels][] : null;
+            int[][] pyramidMax = levels > 0 ? new int[levels][] : null;
+            for (int level = 0; level < levels; level++) {
+                int buckets = arrayLength(buffer, 2 * Integer.BYTES);
+                pyramidMin[level] = getInts(buffer, buckets);
+                pyramidMax[level] = getInts(buffer, buckets);
+            }
+            // Размер части зависит от формата файла (у контейнера часть - блок), точное количество
+            // частей сверяет OutOfCoreSeries.open
+            if (buffer.hasRemaining() || summary.getCount() != count
+                    || chunkCount > count || (count > 0) != (chunkCount > 0)) {
+                throw new IOException("Файл сводок не согласован");
+            }
+            return new Entry(summary, statistics, new OutOfCoreSeries.Chunks(chunkMinX, chunkMaxX,
+                    new PointSeries(overviewXs, overviewYs, overviewSize)), markerWords, pyramidMin, pyramidMax);
+        } catch (IOException | RuntimeException ex) {
+            // Устаревший или повреждённый файл сводок не нужен - он будет построен заново
+            sidecar.delete();
+            return null;
+        }
+    }
+
+    // Прочитать длину массива и проверить, что массив с элементами по elementBytes байт помещается в файл
+    private static int arrayLength(ByteBuffer buffer, int elementBytes) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining() / elementBytes) {
+            throw new IOException("Неверная длина массива в файле сводок");
+        }
+        return length;
+    }
+
+    private static double[] getDoubles(ByteBuffer buffer, int count) {
+        double[] values = new double[count];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + count * Double.BYTES);
+        return values;
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    /* Записать характеристики в файл сводок (для небольших файлов данных ничего не записывается).
+     * Файл сначала пишется под временным именем и затем переименовывается, поэтому прерванная
+     * запись не оставляет повреждённого файла сводок. Ошибка записи (например, каталог недоступен
+     * для записи) не считается ошибкой открытия данных: возвращается false.
+     */
+    public boolean write(Entry entry) {
+        int count = entry.summary.getCount();
+        if (count < MIN_POINTS) {
+            return false;
+        }
+        try {
+            try (Output out = new Output(FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+                byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+                out.reserve(Integer.BYTES + pathBytes.length);
+                out.buffer.putInt(pathBytes.length);
+                out.buffer.put(pathBytes);
+                out.reserve(SeriesSummary.BYTES + SeriesStatistics.BYTES);
+                entry.summary.writeTo(out.buffer);
+                entry.statistics.writeTo(out.buffer);
+                OutOfCoreSeries.Chunks chunks = entry.chunks;
+                out.putInt(chunks.count());
+                out.putDoubles(chunks.minX(), chunks.count());
+                out.putDoubles(chunks.maxX(), chunks.count());
+                PointSeries overview = chunks.overview();
+                out.putInt(overview.size());
+                out.putDoubles(overview.xs(), overview.size());
+                out.putDoubles(overview.ys(), overview.size());
+                if (entry.markerWords != null) {
+                    out.putInt(entry.markerWords.length);
+                    out.putLongs(entry.markerWords);
+                } else {
+                    out.putInt(-1);
+                }
+                int levels = entry.pyramidMin != null ? entry.pyramidMin.length : 0;
+                out.putInt(levels);
+                for (int level = 0; level < levels; level++) {
+                    out.putInt(entry.pyramidMin[level].length);
+                    out.putInts(entry.pyramidMin[level]);
+                    out.putInts(entry.pyramidMax[level]);
+                }
+                out.finish(length, modified, fingerprint, count);
+            }
+            try {
+                Files.move(temporary.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporary.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException ex) {
+            temporary.delete();
+            return false;
+        }
+    }
+
+    /* Запись содержимого файла сводок через буфер; содержимое начинается после заголовка,
+     * контрольная сумма считается по мере записи, а заголовок пишется последним.
+     */
+    private static class Output implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private final CRC32 crc = new CRC32();
+        private long written = 0;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        // Освободить в буфере место под bytes байт (bytes не больше размера буфера)
+        void reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void putInt(int value) throws IOException {
+            reserve(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putInts(int[] values) throws IOException {
+            for (int from = 0; from < values.length; ) {
+                reserve(Integer.BYTES);
+                int count = Math.min(values.length - from, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, from, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                from += count;
+            }
+        }
+
+        void putLongs(long[] values) throws IOException {
+            for (int from = 0; from < values.length; ) {
+                reserve(Long.BYTES);
+                int count = Math.min(values.length - from, buffer.remaining() / Long.BYTES);
+                buffer.asLongBuffer().put(values, from, count);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                from += count;
+            }
+        }
+
+        void putDoubles(double[] values, int length) throws IOException {
+            for (int from = 0; from < length; ) {
+                reserve(Double.BYTES);
+                int count = Math.min(length - from, buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().put(values, from, count);
+                buffer.position(buffer.position() + count * Double.BYTES);
+                from += count;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, HEADER_BYTES + written);
+            }
+            buffer.clear();
+        }
+
+        // Дописать содержимое и записать заголовок
+        void finish(long length, long modified, long fingerprint, int count) throws IOException {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.put(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(0);
+            header.putLong(length);
+            header.putLong(modified);
+            header.putLong(fingerprint);
+            header.putLong(written);
+            header.putLong(crc.getValue());
+            header.putInt(count);
+            header.position(HEADER_BYTES);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/* Запись фигур холста VectorGraphics2D в файл SVG. Каждая фигура - отдельный элемент path,
+ * который пишется в поток сразу (без построения дерева документа); данные пути
+ * выводятся по частям, поэтому даже длинный путь не собирается в одну строку.
+ */
+public class SvgOutput extends VectorGraphics2D.Output {
+    // Знаков после точки у координат и у коэффициентов преобразования
+    private static final int COORDINATE_DECIMALS = 3;
+    private static final int MATRIX_DECIMALS = 6;
+    // Сколько символов данных пути накапливается перед записью в поток
+    private static final int FLUSH_LENGTH = 8192;
+
+    private final Writer writer;
+    private final StringBuilder text = new StringBuilder();
+    private final double[] coordinates = new double[6];
+
+    // Начать документ размером width x height пикселов
+    public SvgOutput(OutputStream out, int width, int height) throws IOException {
+        writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height
+                + "\" viewBox=\"0 0 " + width + " " + height + "\">\n");
+    }
+
+    public void fill(Shape shape, AffineTransform transform, Color color) throws IOException {
+        PathIterator path = shape.getPathIterator(null);
+        text.setLength(0);
+        text.append("<path fill=\"");
+        appendColor(color);
+        text.append('"');
+        if (color.getAlpha() < 255) {
+            text.append(" fill-opacity=\"");
+            appendNumber(text, color.getAlpha() / 255.0, 3);
+            text.append('"');
+        }
+        if (path.getWindingRule() == PathIterator.WIND_EVEN_ODD) {
+            text.append(" fill-rule=\"evenodd\"");
+        }
+        writePath(path, transform);
+    }
+
+    public void stroke(Shape shape, AffineTransform transform, BasicStroke stroke, Color color) throws IOException {
+        text.setLength(0);
+        text.append("<path fill=\"none\" stroke=\"");
+        appendColor(color);
+        text.append('"');
+        if (color.getAlpha() < 255) {
+            text.append(" stroke-opacity=\"");
+            appendNumber(text, color.getAlpha() / 255.0, 3);
+            text.append('"');
+        }
+        text.append(" stroke-width=\"");
+        appendNumber(text, stroke.getLineWidth(), COORDINATE_DECIMALS);
+        text.append("\" stroke-linecap=\"");
+        text.append(stroke.getEndCap() == BasicStroke.CAP_BUTT ? "butt"
+                : stroke.getEndCap() == BasicStroke.CAP_ROUND ? "round" : "square");
+        text.append("\" stroke-linejoin=\"");
+        text.append(stroke.getLineJoin() == BasicStroke.JOIN_MITER ? "miter"
+                : stroke.getLineJoin() == BasicStroke.JOIN_ROUND ? "round" : "bevel");
+        text.append('"');
+        if (stroke.getLineJoin() == BasicStroke.JOIN_MITER) {
+            text.append(" stroke-miterlimit=\"");
+            appendNumber(text, stroke.getMiterLimit(), COORDINATE_DECIMALS);
+            text.append('"');
+        }
+        float[] dash = stroke.getDashArray();
+        if (dash != null) {
+            text.append(" stroke-dasharray=\"");
+            for (int i = 0; i < dash.length; i++) {
+                if (i > 0) {
+                    text.append(' ');
+                }
+                appendNumber(text, dash[i], COORDINATE_DECIMALS);
+            }
+            text.append('"');
+            if (stroke.getDashPhase() != 0) {
+                text.append(" stroke-dashoffset=\"");
+                appendNumber(text, stroke.getDashPhase(), COORDINATE_DECIMALS);
+                text.append('"');
+            }
+        }
+        writePath(shape.getPathIterator(null), transform);
+    }
+
+    // Дописать преобразование и данные пути к уже начатому элементу и закончить его
+    private void writePath(PathIterator path, AffineTransform transform) throws IOException {
+        if (!transform.isIdentity()) {
+            text.append(" transform=\"matrix(");
+            appendNumber(text, transform.getScaleX(), MATRIX_DECIMALS);
+            text.append(' ');
+            appendNumber(text, transform.getShearY(), MATRIX_DECIMALS);
+            text.append(' ');
+            appendNumber(text, transform.getShearX(), MATRIX_DECIMALS);
+            text.append(' ');
+            appendNumber(text, transform.getScaleY(), MATRIX_DECIMALS);
+            text.append(' ');
+            appendNumber(text, transform.getTranslateX(), MATRIX_DECIMALS);
+            text.append(' ');
+            appendNumber(text, transform.getTranslateY(), MATRIX_DECIMALS);
+            text.append(")\"");
+        }
+        text.append(" d=\"");
+        for (; !path.isDone(); path.next()) {
+            int type = path.currentSegment(coordinates);
+            switch (type) {
+                case PathIterator.SEG_MOVETO:
+                    appendSegment('M', 1);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    appendSegment('L', 1);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    appendSegment('Q', 2);
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    appendSegment('C', 3);
+                    break;
+                default:
+                    text.append('Z');
+                    break;
+            }
+            if (text.length() >= FLUSH_LENGTH) {
+                writer.append(text);
+                text.setLength(0);
+            }
+        }
+        text.append("\"/>\n");
+        writer.append(text);
+    }
+
+    private void appendSegment(char command, int points) {
+        text.append(command);
+        for (int i = 0; i < 2 * points; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            appendNumber(text, coordinates[i], COORDINATE_DECIMALS);
+        }
+    }
+
+    private void appendColor(Color color) {
+        text.append('#');
+        int rgb = color.getRGB() & 0xFFFFFF;
+        for (int shift = 20; shift >= 0; shift -= 4) {
+            text.append(Character.forDigit((rgb >> shift) & 0xF, 16));
+        }
+    }
+
+    // Закончить документ
+    public void close() throws IOException {
+        writer.write("</svg>\n");
+        writer.close();
+    }
+}
@@ -0,0 +1,530 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/* Импорт точек из текстового файла: в строке два числа X и Y, разделённые пробелами,
+ * табуляцией, запятой или точкой с запятой (CSV). Пустые строки и строки, начинающиеся
+ * с '#', пропускаются; первая строка файла может быть заголовком столбцов.
+ *
+ * Файл отображается в память и делится по границам строк на части, которые разбираются
+ * параллельно в общем пуле потоков. Сначала в каждой части считаются строки - их сумма
+ * ограничивает количество точек, поэтому массивы координат выделяются один раз, и каждая
+ * часть записывает числа прямо в свой участок массивов (номер её первой строки известен).
+ * Затем пропуски от пустых и ошибочных строк убираются сдвигом участков.
+ * Числа разбираются без создания строк; строки с ошибками пропускаются и перечисляются в результате.
+ */
+public class TextImporter {
+    /* Получатель сведений о ходе импорта; вызывается в потоке импорта после разбора каждой части:
+     * bytes - разобрано байт, total - длина файла.
+     */
+    public interface ProgressListener {
+        void parsed(long bytes, long total);
+    }
+
+    // Сколько сообщений об ошибочных строках сохраняется (остальные только подсчитываются)
+    public static final int MAX_REPORTED_ERRORS = 100;
+    // Примерный размер части файла, разбираемой одной задачей
+    private static final long CHUNK_BYTES = 8L * 1024 * 1024;
+    // Размер буфера при поиске границ строк
+    private static final int SCAN_BUFFER = 4096;
+    // Наибольшая длина фрагмента строки в сообщении об ошибке
+    private static final int EXCERPT_LENGTH = 40;
+
+    // Результат импорта: точки и ошибочные строки
+    public static class Result {
+        private final PointSeries series;
+        private final long malformedCount;
+        private final List<String> errors;
+
+        private Result(PointSeries series, long malformedCount, List<String> errors) {
+            this.series = series;
+            this.malformedCount = malformedCount;
+            this.errors = errors;
+        }
+
+        public PointSeries getSeries() {
+            return series;
+        }
+
+        // Количество пропущенных строк с ошибками
+        public long getMalformedCount() {
+            return malformedCount;
+        }
+
+        // Сообщения о первых MAX_REPORTED_ERRORS ошибочных строках, с номерами строк
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+
+    // Истина, если файл по расширению текстовый (.csv или .txt)
+    public static boolean isTextFile(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".csv") || name.endsWith(".txt");
+    }
+
+    public static Result read(File file) throws IOException {
+        return read(file, null);
+    }
+
+    /* Прочитать точки из текстового файла (listener может быть null).
+     * Если поток импорта прерван, разбор останавливается с InterruptedIOException.
+     */
+    public static Result read(File file, ProgressListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            long[] bounds = chunkBounds(channel, length);
+            int chunkCount = bounds.length - 1;
+            AtomicBoolean cancelled = new AtomicBoolean();
+            // Первый проход: отображение частей и подсчёт строк
+            MappedByteBuffer[] buffers = new MappedByteBuffer[chunkCount];
+            List<Future<Integer>> counts = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]);
+                ByteBuffer buffer = buffers[i];
+                counts.add(ForkJoinPool.commonPool().submit(() -> countLines(buffer)));
+            }
+            long[] firstLine = new long[chunkCount + 1];
+            for (int i = 0; i < chunkCount; i++) {
+                firstLine[i + 1] = firstLine[i] + await(counts.get(i), cancelled);
+            }
+            long lines = firstLine[chunkCount];
+            if (lines > Integer.MAX_VALUE - 8) {
+                throw new IOException("Файл слишком велик: " + lines + " строк");
+            }
+            // Второй проход: разбор чисел прямо в массивы координат
+            double[] xs = new double[(int) lines];
+            double[] ys = new double[(int) lines];
+            List<Future<ChunkParser>> parsers = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                ChunkParser parser = new ChunkParser(buffers[i], xs, ys, (int) firstLine[i], i == 0, cancelled);
+                parsers.add(ForkJoinPool.commonPool().submit(() -> {
+                    parser.parse();
+                    return parser;
+                }));
+            }
+            // Участки частей сдвигаются к началу массивов по порядку
+            int size = 0;
+            long malformed = 0;
+            List<String> errors = new ArrayList<>();
+            for (int i = 0; i < chunkCount; i++) {
+                ChunkParser parser = await(parsers.get(i), cancelled);
+                if (size != firstLine[i]) {
+                    System.arraycopy(xs, (int) firstLine[i], xs, size, parser.count);
+                    System.arraycopy(ys, (int) firstLine[i], ys, size, parser.count);
+                }
+                size += parser.count;
+                malformed += parser.malformed;
+                for (String error : parser.errors) {
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add(error);
+                    }
+                }
+                if (listener != null) {
+                    listener.parsed(bounds[i + 1], length);
+                }
+            }
+            return new Result(new PointSeries(xs, ys, size), malformed, Collections.unmodifiableList(errors));
+        }
+    }
+
+    // Дождаться результата задачи; при отмене или ошибке остальные задачи останавливаются
+    private static <T> T await(Future<T> task, AtomicBoolean cancelled) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException | CancellationException ex) {
+            cancelled.set(true);
+            throw new InterruptedIOException("Импорт файла отменён");
+        } catch (ExecutionException ex) {
+            cancelled.set(true);
+            throw new IOException("Ошибка разбора файла: " + ex.getCause(), ex.getCause());
+        }
+    }
+
+    // Границы частей файла: каждая часть, кроме последней, заканчивается переводом строки
+    private static long[] chunkBounds(FileChannel channel, long length) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER);
+        long position = CHUNK_BYTES;
+        search:
+        while (position < length) {
+            // Найти перевод строки, начиная с position
+            while (position < length) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break search;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        long end = position + i + 1;
+                        if (end < length) {
+                            bounds.add(end);
+                        }
+                        position = end + CHUNK_BYTES;
+                        continue search;
+                    }
+                }
+                position += read;
+            }
+        }
+        bounds.add(length);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // Количество строк части (последняя строка может не заканчиваться переводом строки)
+    private static int countLines(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        int lines = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                lines++;
+            }
+        }
+        if (limit > 0 && buffer.get(limit - 1) != '\n') {
+            lines++;
+        }
+        return lines;
+    }
+
+    /* Разбор одной части: числа строки с номером firstLine + k (от нуля) записываются
+     * в элемент firstLine + count массивов, где count - количество уже разобранных точек части.
+     */
+    private static class ChunkParser {
+        private final ByteBuffer buffer;
+        // Байты части, скопированные из отображения (обращение к массиву быстрее, чем к буферу)
+        private byte[] bytes;
+        private final double[] xs;
+        private final double[] ys;
+        private final int firstLine;
+        // Истина для первой части файла - в ней может быть заголовок столбцов
+        private final boolean first;
+        private final AtomicBoolean cancelled;
+
+        int count;
+        long malformed;
+        final List<String> errors = new ArrayList<>();
+
+        // Результат последнего вызова number: истина, если число разобрано
+        private boolean valid;
+
+        ChunkParser(ByteBuffer buffer, double[] xs, double[] ys, int firstLine, boolean first, AtomicBoolean cancelled) {
+            this.buffer = buffer;
+            this.xs = xs;
+            this.ys = ys;
+            this.firstLine = firstLine;
+            this.first = first;
+            this.cancelled = cancelled;
+        }
+
+        void parse() {
+            bytes = new byte[buffer.limit()];
+            buffer.get(0, bytes);
+            int limit = bytes.length;
+            int line = 0;
+            boolean headerAllowed = first;
+            int start = 0;
+            while (start < limit) {
+                // Проверка отмены раз в 64К строк
+                if ((line & 0xFFFF) == 0 && cancelled.get()) {
+                    return;
+                }
+                int end = start;
+                while (end < limit && bytes[end] != '\n') {
+                    end++;
+                }
+                int result = parseLine(start, end, firstLine + count);
+                if (result < 0) {
+                    // Нечисловая первая строка с буквами считается заголовком
+                    if (!(headerAllowed && hasLetters(start, end))) {
+                        malformed++;
+                        if (errors.size() < MAX_REPORTED_ERRORS) {
+                            errors.add("строка " + (firstLine + line + 1L) + ": " + (result == -1
+                                    ? "ожидались два числа" : "не число") + " - \"" + excerpt(start, end) + "\"");
+                        }
+                    }
+                    headerAllowed = false;
+                } else if (result > 0) {
+                    count++;
+                    headerAllowed = false;
+                }
+                line++;
+                start = end + 1;
+            }
+        }
+
+        /* Разобрать строку [from, to) и записать точку в элемент index массивов.
+         * 1 - точка записана, 0 - пустая строка или комментарий,
+         * -1 - количество чисел не два, -2 - одно из полей не число.
+         */
+        private int parseLine(int from, int to, int index) {
+            int p = skipSpaces(from, to);
+            if (p == to || bytes[p] == '#') {
+                return 0;
+            }
+            int xStart = p;
+            p = skipField(p, to);
+            int xEnd = p;
+            p = skipSpaces(p, to);
+            if (p < to && (bytes[p] == ',' || bytes[p] == ';')) {
+                p = skipSpaces(p + 1, to);
+            }
+            int yStart = p;
+            p = skipField(p, to);
+            int yEnd = p;
+            // Допускается завершающий разделитель (например, "1,2,")
+            p = skipSpaces(p, to);
+            if (p < to && (bytes[p] == ',' || bytes[p] == ';')) {
+                p = skipSpaces(p + 1, to);
+            }
+            if (xStart == xEnd || yStart == yEnd || p != to) {
+                return -1;
+            }
+            double x = number(xStart, xEnd);
+            if (!valid) {
+                return -2;
+            }
+            double y = number(yStart, yEnd);
+            if (!valid) {
+                return -2;
+            }
+            xs[index] = x;
+            ys[index] = y;
+            return 1;
+        }
+
+        private int skipSpaces(int p, int to) {
+            while (p < to) {
+                byte b = bytes[p];
+                if (b != ' ' && b != '\t' && b != '\r') {
+                    break;
+                }
+                p++;
+            }
+            return p;
+        }
+
+        private int skipField(int p, int to) {
+            while (p < to) {
+                byte b = bytes[p];
+                if (b == ' ' || b == '\t' || b == '\r' || b == ',' || b == ';') {
+                    break;
+                }
+                p++;
+            }
+            return p;
+        }
+
+        /* Разобрать число из байт [from, to). Десятичная запись с не более чем 19 значащими
+         * цифрами переводится без создания строк; остальные записи (NaN, Infinity, очень длинные
+         * числа) и редкие неоднозначные случаи округления передаются Double.parseDouble.
+         */
+        private double number(int from, int to) {
+            valid = true;
+            int p = from;
+            boolean negative = false;
+            byte b = bytes[p];
+            if (b == '-' || b == '+') {
+                negative = b == '-';
+                p++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean any = false;
+            // Ведущие нули не считаются значащими цифрами
+            while (p < to && (b = bytes[p]) >= '0' && b <= '9') {
+                any = true;
+                if (mantissa != 0 || b != '0') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                }
+                p++;
+            }
+            if (p < to && bytes[p] == '.') {
+                p++;
+                while (p < to && (b = bytes[p]) >= '0' && b <= '9') {
+                    any = true;
+                    if (mantissa != 0 || b != '0') {
+                        mantissa = mantissa * 10 + (b - '0');
+                        digits++;
+                    }
+                    exponent--;
+                    p++;
+                }
+            }
+            if (any && p < to && ((b = bytes[p]) == 'e' || b == 'E')) {
+                p++;
+                boolean negativeExponent = false;
+                if (p < to && ((b = bytes[p]) == '-' || b == '+')) {
+                    negativeExponent = b == '-';
+                    p++;
+                }
+                int value = 0;
+                boolean exponentDigits = false;
+                while (p < to && (b = bytes[p]) >= '0' && b <= '9') {
+                    exponentDigits = true;
+                    // Ограничение, чтобы показатель не переполнился; результат всё равно 0 или бесконечность
+                    if (value < 100000) {
+                        value = value * 10 + (b - '0');
+                    }
+                    p++;
+                }
+                if (!exponentDigits) {
+                    any = false;
+                }
+                exponent += negativeExponent ? -value : value;
+            }
+            if (any && p == to && digits <= 19) {
+                if (mantissa == 0) {
+                    return negative ? -0.0 : 0.0;
+                }
+                // Точный случай: мантисса и степень десяти представимы в double без округления.
+                // 19 цифр могут не поместиться в long со знаком - тогда мантисса беззнаковая
+                if (mantissa > 0 && mantissa < 1L << 53 && exponent >= -22 && exponent <= 22) {
+                    double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent]
+                            : mantissa / POWERS_OF_TEN[-exponent];
+                    return negative ? -value : value;
+                }
+                long bits = eiselLemire(mantissa, exponent);
+                if (bits >= 0) {
+                    double value = Double.longBitsToDouble(bits);
+                    return negative ? -value : value;
+                }
+            }
+            return slowNumber(from, to);
+        }
+
+        private double slowNumber(int from, int to) {
+            try {
+                return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+            } catch (NumberFormatException ex) {
+                valid = false;
+                return Double.NaN;
+            }
+        }
+
+        private boolean hasLetters(int from, int to) {
+            for (int p = from; p < to; p++) {
+                byte b = bytes[p];
+                if ((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || b < 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private String excerpt(int from, int to) {
+            if (to > from && bytes[to - 1] == '\r') {
+                to--;
+            }
+            String text = new String(bytes, from, Math.min(to - from, EXCERPT_LENGTH), StandardCharsets.UTF_8);
+            return to - from > EXCERPT_LENGTH ? text + "..." : text;
+        }
+    }
+
+    // Точные степени десяти, представимые в double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /* 128-битные приближения (с округлением вниз) степеней десяти 10^q для q от MIN_POWER
+     * до MAX_POWER: старший бит старшей половины равен единице. Вычисляются при загрузке класса.
+     */
+    private static final int MIN_POWER = -348;
+    private static final int MAX_POWER = 347;
+    private static final long[] POWER_HIGH = new long[MAX_POWER - MIN_POWER + 1];
+    private static final long[] POWER_LOW = new long[MAX_POWER - MIN_POWER + 1];
+
+    static {
+        for (int q = MIN_POWER; q <= MAX_POWER; q++) {
+            BigInteger value;
+            if (q >= 0) {
+                value = BigInteger.TEN.pow(q);
+            } else {
+                BigInteger divisor = BigInteger.TEN.pow(-q);
+                value = BigInteger.ONE.shiftLeft(divisor.bitLength() + 128).divide(divisor);
+            }
+            int shift = value.bitLength() - 128;
+            value = shift > 0 ? value.shiftRight(shift) : value.shiftLeft(-shift);
+            POWER_HIGH[q - MIN_POWER] = value.shiftRight(64).longValue();
+            POWER_LOW[q - MIN_POWER] = value.longValue();
+        }
+    }
+
+    /* Битовое представление числа mantissa * 10^exponent (mantissa - ненулевое беззнаковое), правильно округлённого
+     * до double (алгоритм Эйзеля - Лемира), или -1, если этим способом результат
+     * определить нельзя (неоднозначное округление, денормализованные числа, переполнение).
+     */
+    private static long eiselLemire(long mantissa, int exponent) {
+        if (exponent < MIN_POWER || exponent > MAX_POWER) {
+            return -1;
+        }
+        int leadingZeros = Long.numberOfLeadingZeros(mantissa);
+        long w = mantissa << leadingZeros;
+        long resultExponent = ((217706L * exponent) >> 16) + 64 + 1023 - leadingZeros;
+        long high = POWER_HIGH[exponent - MIN_POWER];
+        long low = POWER_LOW[exponent - MIN_POWER];
+        long productHigh = unsignedMultiplyHigh(w, high);
+        long productLow = w * high;
+        // Младшие биты произведения могут повлиять на округление - уточнить младшей половиной степени
+        if ((productHigh & 0x1FF) == 0x1FF && Long.compareUnsigned(productLow + w, w) < 0) {
+            long correctionHigh = unsignedMultiplyHigh(w, low);
+            long correctionLow = w * low;
+            long mergedHigh = productHigh;
+            long mergedLow = productLow + correctionHigh;
+            if (Long.compareUnsigned(mergedLow, productLow) < 0) {
+                mergedHigh++;
+            }
+            if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow + 1 == 0
+                    && Long.compareUnsigned(correctionLow + w, w) < 0) {
+                return -1;
+            }
+            productHigh = mergedHigh;
+            productLow = mergedLow;
+        }
+        long top = productHigh >>> 63;
+        long result = productHigh >>> (top + 9);
+        resultExponent -= 1 ^ top;
+        // Ровно посередине между соседними double - нужен точный разбор
+        if (productLow == 0 && (productHigh & 0x1FF) == 0 && (result & 3) == 1) {
+            return -1;
+        }
+        result += result & 1;
+        result >>>= 1;
+        if (result >>> 53 > 0) {
+            result >>>= 1;
+            resultExponent++;
+        }
+        if (resultExponent <= 0 || resultExponent >= 0x7FF) {
+            return -1;
+        }
+        return resultExponent << 52 | (result & 0x000FFFFFFFFFFFFFL);
+    }
+
+    // Старшие 64 бита беззнакового 128-битного произведения
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+}
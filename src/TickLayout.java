@@ -0,0 +1,170 @@
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.Rectangle2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* Расположение делений шкалы одной оси: шаг основных делений, их значения и подписи.
+ * Шаг выбирается из ряда 1, 2, 5 * 10^k так, чтобы делений было около DESIRED_DIVISIONS,
+ * и увеличивается, пока соседние подписи перекрываются. Результат вычисляется один раз
+ * для области отображения и запоминается; подписи хранятся готовыми GlyphVector
+ * (с кэшем по тексту), поэтому при перерисовке строки не форматируются заново.
+ */
+public class TickLayout {
+    // Желаемое количество основных делений на оси
+    public static final int DESIRED_DIVISIONS = 10;
+    // Количество дополнительных делений в одном основном
+    public static final int MINOR_DIVISIONS = 10;
+    // Наименьший промежуток между соседними подписями, пикселов
+    private static final double LABEL_GAP = 8;
+    // Больше делений не строится (защита от вырожденной области)
+    private static final int MAX_TICKS = 1000;
+    // Сколько подписей хранится в кэше
+    private static final int GLYPH_CACHE_SIZE = 256;
+    private static final double[] NICE_STEPS = {1, 2, 5};
+
+    // Подписи располагаются вдоль оси (ось X) или друг над другом (ось Y)
+    private final boolean horizontal;
+
+    // Параметры, для которых вычислено расположение
+    private double layoutMin = Double.NaN;
+    private double layoutMax = Double.NaN;
+    private double layoutPixelsPerUnit = Double.NaN;
+    private Font layoutFont;
+    private FontRenderContext layoutContext;
+
+    // Результат: шаг, значения основных делений, их подписи и размеры подписей
+    private double step;
+    private double[] ticks = new double[0];
+    private GlyphVector[] labels = new GlyphVector[0];
+    private Rectangle2D[] labelBounds = new Rectangle2D[0];
+
+    private final Map<String, GlyphVector> glyphCache = new LinkedHashMap<String, GlyphVector>(64, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<String, GlyphVector> eldest) {
+            return size() > GLYPH_CACHE_SIZE;
+        }
+    };
+    private Font glyphFont;
+    private FontRenderContext glyphContext;
+
+    public TickLayout(boolean horizontal) {
+        this.horizontal = horizontal;
+    }
+
+    /* Вычислить деления для области [min, max], на единицу длины которой приходится
+     * pixelsPerUnit пикселов; подписи - шрифтом font. Если параметры не изменились
+     * с прошлого вызова, ничего не пересчитывается.
+     */
+    public void layout(double min, double max, double pixelsPerUnit, Font font, FontRenderContext context) {
+        if (min == layoutMin && max == layoutMax && pixelsPerUnit == layoutPixelsPerUnit
+                && font.equals(layoutFont) && context.equals(layoutContext)) {
+            return;
+        }
+        layoutMin = min;
+        layoutMax = max;
+        layoutPixelsPerUnit = pixelsPerUnit;
+        layoutFont = font;
+        layoutContext = context;
+        if (!font.equals(glyphFont) || !context.equals(glyphContext)) {
+            glyphCache.clear();
+            glyphFont = font;
+            glyphContext = context;
+        }
+        double range = max - min;
+        if (!(range > 0) || !(pixelsPerUnit > 0) || Double.isInfinite(range)) {
+            step = Double.NaN;
+            ticks = new double[0];
+            labels = new GlyphVector[0];
+            labelBounds = new Rectangle2D[0];
+            return;
+        }
+        // Начальный шаг - наименьший "красивый" шаг не меньше range / DESIRED_DIVISIONS
+        double rough = range / DESIRED_DIVISIONS;
+        int exponent = (int) Math.floor(Math.log10(rough));
+        int index = 0;
+        while (niceStep(index, exponent) < rough) {
+            index++;
+        }
+        // Увеличивать шаг, пока подписи не перестанут перекрываться
+        while (true) {
+            step = niceStep(index, exponent);
+            if (range / step <= MAX_TICKS && build(min, max, pixelsPerUnit)) {
+                return;
+            }
+            index++;
+        }
+    }
+
+    // index-й шаг ряда 1, 2, 5, 10, 20, 50, ... начиная с 10^exponent
+    private static double niceStep(int index, int exponent) {
+        int power = exponent + Math.floorDiv(index, NICE_STEPS.length);
+        double step = NICE_STEPS[Math.floorMod(index, NICE_STEPS.length)];
+        // Отрицательные степени делением, чтобы 0.1 было ближайшим к 1/10 числом double
+        return power >= 0 ? step * Math.pow(10, power) : step / Math.pow(10, -power);
+    }
+
+    // Построить деления с шагом step; ложь, если подписи перекрываются
+    private boolean build(double min, double max, double pixelsPerUnit) {
+        long first = (long) Math.ceil(min / step);
+        long last = (long) Math.floor(max / step);
+        int count = (int) Math.max(0, last - first + 1);
+        double[] newTicks = new double[count];
+        GlyphVector[] newLabels = new GlyphVector[count];
+        Rectangle2D[] newBounds = new Rectangle2D[count];
+        // Достаточно столько знаков после запятой, сколько их в шаге
+        int decimals = Math.max(0, (int) -Math.floor(Math.log10(step) + 1e-9));
+        double largest = 0;
+        for (int i = 0; i < count; i++) {
+            // Значение вычисляется умножением, а не накоплением шага, чтобы не копить погрешность
+            newTicks[i] = (first + i) * step;
+            newLabels[i] = glyphs(format(newTicks[i], decimals));
+            newBounds[i] = newLabels[i].getLogicalBounds();
+            largest = Math.max(largest, horizontal ? newBounds[i].getWidth() : newBounds[i].getHeight());
+        }
+        if (count > 1 && step * pixelsPerUnit < largest + LABEL_GAP) {
+            return false;
+        }
+        ticks = newTicks;
+        labels = newLabels;
+        labelBounds = newBounds;
+        return true;
+    }
+
+    private static String format(double value, int decimals) {
+        // -0.0 подписывается как 0
+        if (value == 0) {
+            value = 0;
+        }
+        return String.format("%." + decimals + "f", value);
+    }
+
+    private GlyphVector glyphs(String text) {
+        return glyphCache.computeIfAbsent(text, key -> glyphFont.createGlyphVector(glyphContext, key));
+    }
+
+    // Шаг основных делений (NaN, если делений нет)
+    public double getStep() {
+        return step;
+    }
+
+    public double getMinorStep() {
+        return step / MINOR_DIVISIONS;
+    }
+
+    public int getTickCount() {
+        return ticks.length;
+    }
+
+    public double getTick(int index) {
+        return ticks[index];
+    }
+
+    public GlyphVector getLabel(int index) {
+        return labels[index];
+    }
+
+    public Rectangle2D getLabelBounds(int index) {
+        return labelBounds[index];
+    }
+}
@@ -0,0 +1,280 @@
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/* Параллельная растеризация контуров полосами.
+ * Холст делится на вертикальные полосы (в пикселах устройства), каждая полоса рисуется
+ * в собственное изображение в общем пуле потоков, затем полосы накладываются на холст.
+ * В полосу попадают только части отрезков контуров, лежащие в ней (с запасом на толщину пера):
+ * длинный отрезок, пересекающий много полос, обрезается по каждой, поэтому штрихи и обводка
+ * вычисляются для каждой части контура один раз, а не в каждой полосе заново.
+ * Пиксели за пределами полосы отсекаются. Для штриховых перьев непрерывный участок
+ * отрезков рисуется пером со сдвигом штриха (dash phase), равным длине контура до начала
+ * участка, поэтому штрихи на стыке полос совпадают с рисованием контура целиком
+ * (с точностью до сглаживания: у обрезанного участка края штрихов вычисляются от другой
+ * начальной точки, и отдельные пиксели могут отличаться на одну субпиксельную выборку).
+ * Для этого контуры рисуются без нормализации (KEY_STROKE_CONTROL = VALUE_STROKE_PURE):
+ * нормализация сдвигает точки к центрам пикселов и меняет длину контура, от которой
+ * зависит расположение штрихов.
+ */
+public class TiledRasterizer {
+    // Контур, обводимый пером заданного цвета
+    public static class Outline {
+        final Shape path;
+        final BasicStroke stroke;
+        final Color color;
+
+        public Outline(Shape path, BasicStroke stroke, Color color) {
+            this.path = path;
+            this.stroke = stroke;
+            this.color = color;
+        }
+    }
+
+    // Полосы уже этой ширины (в пикселах) не создаются - накладные расходы превысят выигрыш
+    private static final int MIN_STRIP_WIDTH = 64;
+    // Точность спрямления кривых участков контура (у графиков их нет, но контур может быть любым)
+    private static final double FLATNESS = 0.25;
+
+    private final int strips;
+    // Изображения полос, переиспользуются между кадрами (по одному на полосу)
+    private BufferedImage[] images = new BufferedImage[0];
+
+    public TiledRasterizer() {
+        this(ForkJoinPool.getCommonPoolParallelism() + 1);
+    }
+
+    public TiledRasterizer(int strips) {
+        this.strips = Math.max(1, strips);
+    }
+
+    /* Нарисовать контуры на холсте canvas размером width x height пикселов устройства
+     * (размер изображения, на котором рисуется холст, а не окна в координатах пользователя).
+     * Преобразование холста (масштаб экрана, поворот осей) учитывается.
+     */
+    public void draw(Graphics2D canvas, int width, int height, List<Outline> outlines) {
+        int count = Math.min(strips, Math.max(1, width / MIN_STRIP_WIDTH));
+        if (count == 1) {
+            // Делить нечего - контуры рисуются как обычно (подсказка холста восстанавливается)
+            Object strokeControl = canvas.getRenderingHint(RenderingHints.KEY_STROKE_CONTROL);
+            canvas.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            try {
+                for (Outline outline : outlines) {
+                    canvas.setStroke(outline.stroke);
+                    canvas.setColor(outline.color);
+                    canvas.draw(outline.path);
+                }
+            } finally {
+                if (strokeControl != null) {
+                    canvas.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, strokeControl);
+                }
+            }
+            return;
+        }
+        AffineTransform userToDevice = canvas.getTransform();
+        RenderingHints hints = (RenderingHints) canvas.getRenderingHints().clone();
+        ensureImages(count, (width + count - 1) / count, height);
+        List<Callable<Void>> tasks = new ArrayList<>(count);
+        int stripWidth = (width + count - 1) / count;
+        for (int i = 0; i < count; i++) {
+            int left = i * stripWidth;
+            int right = Math.min(width, left + stripWidth);
+            BufferedImage image = images[i];
+            tasks.add(() -> {
+                drawStrip(image, left, right, height, userToDevice, hints, outlines);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> strip : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                strip.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Ошибка рисования полосы", ex.getCause());
+        }
+        // Наложить полосы на холст в координатах устройства
+        Graphics2D device = (Graphics2D) canvas.create();
+        try {
+            device.setTransform(new AffineTransform());
+            for (int i = 0; i < count; i++) {
+                int left = i * stripWidth;
+                int right = Math.min(width, left + stripWidth);
+                device.drawImage(images[i], left, 0, right, height, 0, 0, right - left, height, null);
+            }
+        } finally {
+            device.dispose();
+        }
+    }
+
+    private void ensureImages(int count, int stripWidth, int height) {
+        if (images.length != count) {
+            images = new BufferedImage[count];
+        }
+        for (int i = 0; i < count; i++) {
+            if (images[i] == null || images[i].getWidth() != stripWidth || images[i].getHeight() != height) {
+                images[i] = new BufferedImage(stripWidth, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            }
+        }
+    }
+
+    // Нарисовать в image часть контуров, попадающую в полосу [left, right) пикселов устройства
+    private static void drawStrip(BufferedImage image, int left, int right, int height,
+                                  AffineTransform userToDevice, RenderingHints hints, List<Outline> outlines) {
+        Graphics2D canvas = image.createGraphics();
+        try {
+            canvas.setComposite(AlphaComposite.Clear);
+            canvas.fillRect(0, 0, image.getWidth(), image.getHeight());
+            canvas.setComposite(AlphaComposite.SrcOver);
+            canvas.setRenderingHints(hints);
+            canvas.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            canvas.clipRect(0, 0, right - left, height);
+            canvas.translate(-left, 0);
+            canvas.transform(userToDevice);
+            for (Outline outline : outlines) {
+                canvas.setColor(outline.color);
+                drawClipped(canvas, outline, left, right, userToDevice);
+            }
+        } finally {
+            canvas.dispose();
+        }
+    }
+
+    /* Обвести части отрезков контура, лежащие в полосе [left, right) по X устройства
+     * (с запасом). Отрезок, выходящий за полосу, обрезается по её границам; так как
+     * преобразование холста аффинное, точка обрезки вычисляется в координатах пользователя
+     * той же долей длины отрезка. Непрерывные участки рисуются отдельно: для штрихового пера
+     * со сдвигом штриха, равным длине подконтура до начала участка.
+     */
+    private static void drawClipped(Graphics2D canvas, Outline outline, int left, int right,
+                                    AffineTransform userToDevice) {
+        BasicStroke stroke = outline.stroke;
+        boolean dashed = stroke.getDashArray() != null;
+        double dashLength = 0;
+        if (dashed) {
+            for (float dash : stroke.getDashArray()) {
+                dashLength += dash;
+            }
+        }
+        // Запас на толщину пера, концы линий и острые углы, в пикселах устройства
+        double deviceScale = Math.max(Math.abs(userToDevice.getScaleX()) + Math.abs(userToDevice.getShearX()),
+                Math.abs(userToDevice.getShearY()) + Math.abs(userToDevice.getScaleY()));
+        double margin = stroke.getLineWidth() / 2 * Math.max(stroke.getMiterLimit(), Math.sqrt(2)) * deviceScale + 2;
+        double low = left - margin;
+        double high = right + margin;
+        double m00 = userToDevice.getScaleX();
+        double m01 = userToDevice.getShearX();
+        double m02 = userToDevice.getTranslateX();
+
+        GeneralPath run = new GeneralPath();
+        boolean inRun = false;
+        // Длина подконтура от последнего moveTo до текущей точки и сдвиг штриха текущего участка
+        double length = 0;
+        double runPhase = 0;
+        double startX = 0, startY = 0, lastX = 0, lastY = 0;
+        double[] coords = new double[6];
+        for (PathIterator it = outline.path.getPathIterator(null, FLATNESS); !it.isDone(); it.next()) {
+            int type = it.currentSegment(coords);
+            double x, y;
+            if (type == PathIterator.SEG_MOVETO) {
+                // Новый подконтур начинает штрих заново
+                if (inRun && dashed) {
+                    strokeRun(canvas, run, stroke, runPhase);
+                    run.reset();
+                }
+                inRun = false;
+                length = 0;
+                startX = lastX = coords[0];
+                startY = lastY = coords[1];
+                continue;
+            } else if (type == PathIterator.SEG_CLOSE) {
+                x = startX;
+                y = startY;
+            } else {
+                x = coords[0];
+                y = coords[1];
+            }
+            double x0 = m00 * lastX + m01 * lastY + m02;
+            double x1 = m00 * x + m01 * y + m02;
+            double segment = dashed ? Math.hypot(x - lastX, y - lastY) : 0;
+            // Доли длины отрезка [t0, t1], которые лежат в полосе
+            double t0 = 0;
+            double t1 = 1;
+            boolean inside;
+            if (x0 == x1) {
+                inside = x0 >= low && x0 <= high;
+            } else {
+                double tLow = (low - x0) / (x1 - x0);
+                double tHigh = (high - x0) / (x1 - x0);
+                t0 = Math.max(0, Math.min(tLow, tHigh));
+                t1 = Math.min(1, Math.max(tLow, tHigh));
+                inside = t0 <= t1;
+            }
+            if (inside) {
+                if (!inRun || t0 > 0) {
+                    // Участок начинается с начала отрезка или с точки входа в полосу. Штриховой участок
+                    // начинается раньше точки входа - с начала периода штриха, чтобы сдвиг штриха был
+                    // точно нулевым (сдвиг передаётся перу как float и округляется), а если период
+                    // начался на предыдущем отрезке - с начала отрезка
+                    if (dashed && t0 > 0) {
+                        double back = (stroke.getDashPhase() + length + segment * t0) % dashLength;
+                        t0 = Math.max(0, t0 - back / segment);
+                    }
+                    run.moveTo(lastX + (x - lastX) * t0, lastY + (y - lastY) * t0);
+                    runPhase = dashed && t0 == 0 ? (stroke.getDashPhase() + length) % dashLength : 0;
+                    inRun = true;
+                }
+                if (t1 < 1) {
+                    // Отрезок выходит из полосы - участок заканчивается в точке выхода
+                    run.lineTo(lastX + (x - lastX) * t1, lastY + (y - lastY) * t1);
+                    inRun = false;
+                    if (dashed) {
+                        strokeRun(canvas, run, stroke, runPhase);
+                        run.reset();
+                    }
+                } else {
+                    run.lineTo(x, y);
+                }
+            } else if (inRun) {
+                inRun = false;
+                if (dashed) {
+                    strokeRun(canvas, run, stroke, runPhase);
+                    run.reset();
+                }
+            }
+            length += segment;
+            lastX = x;
+            lastY = y;
+        }
+        if (dashed) {
+            if (inRun) {
+                strokeRun(canvas, run, stroke, runPhase);
+            }
+        } else {
+            // Сплошное перо: все участки обводятся одним вызовом
+            canvas.setStroke(stroke);
+            canvas.draw(run);
+        }
+    }
+
+    private static void strokeRun(Graphics2D canvas, GeneralPath run, BasicStroke stroke, double phase) {
+        canvas.setStroke(new BasicStroke(stroke.getLineWidth(), stroke.getEndCap(), stroke.getLineJoin(),
+                stroke.getMiterLimit(), stroke.getDashArray(), (float) phase));
+        canvas.draw(run);
+    }
+}
@@ -0,0 +1,60 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+/* Экспорт изображения графика в векторный файл (SVG или PDF). Компонент рисует себя
+ * на холсте VectorGraphics2D тем же кодом, что и на экране, поэтому в файл попадают
+ * оси, сетка, линия с её пером и маркеры с раскраской, а линия прорежена так же,
+ * как на экране: размер файла зависит от размера окна, а не от количества точек.
+ */
+public class VectorExporter {
+    // Формат файла и его расширение
+    public enum Format {
+        SVG("svg"), PDF("pdf");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    // Формат по расширению имени файла (null, если расширение не известно)
+    public static Format formatOf(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        for (Format format : Format.values()) {
+            if (name.endsWith("." + format.getExtension())) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /* Нарисовать компонент display в файл. Компонент не должен одновременно рисоваться
+     * в другом потоке - для экспорта в фоновом потоке используется копия (GraphicsDisplay.snapshot).
+     */
+    public static void export(GraphicsDisplay display, File file, Format format) throws IOException {
+        int width = Math.max(1, display.getWidth());
+        int height = Math.max(1, display.getHeight());
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+             VectorGraphics2D.Output output = format == Format.SVG
+                     ? new SvgOutput(out, width, height) : new PdfOutput(out, width, height)) {
+            VectorGraphics2D canvas = new VectorGraphics2D(output);
+            try {
+                display.paintComponent(canvas);
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            } finally {
+                canvas.dispose();
+            }
+        }
+    }
+}
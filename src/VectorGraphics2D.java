@@ -0,0 +1,480 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.AttributedCharacterIterator;
+import java.util.Map;
+
+/* Холст, который не растрирует фигуры, а сразу передаёт их в векторный файл (Output):
+ * каждая обводка или заливка записывается в файл в момент рисования, поэтому файл не
+ * собирается в памяти целиком. Фигуры передаются в координатах пользователя вместе с текущим
+ * преобразованием, поэтому толщина и штрих пера преобразуются так же, как при рисовании на экране.
+ * Текст выводится контурами букв (шрифты в файл не встраиваются).
+ * Поддерживается то, что нужно GraphicsDisplay: заливка цветом, перья BasicStroke, преобразования.
+ * Изображения, режим XOR и составные режимы наложения не выводятся; область отсечения
+ * запоминается, но в файл не передаётся (файл и так ограничен размером страницы).
+ * Ошибки записи передаются исключением UncheckedIOException.
+ */
+public class VectorGraphics2D extends Graphics2D {
+    // Векторный файл, в который записываются фигуры
+    public abstract static class Output implements Closeable {
+        // Залить фигуру shape, заданную в координатах пользователя и преобразуемую transform
+        public abstract void fill(Shape shape, AffineTransform transform, Color color) throws IOException;
+
+        // Обвести фигуру пером stroke (толщина и штрих пера тоже преобразуются transform)
+        public abstract void stroke(Shape shape, AffineTransform transform, BasicStroke stroke, Color color)
+                throws IOException;
+
+        /* Дописать к out число не более чем с decimals знаками после точки, без показателя
+         * степени (его не понимают ни SVG-атрибуты старых программ, ни PDF). Нечисловые значения
+         * записываются нулём, очень большие ограничиваются.
+         */
+        protected static void appendNumber(StringBuilder out, double value, int decimals) {
+            if (!Double.isFinite(value)) {
+                value = 0;
+            }
+            value = Math.max(-LARGEST_NUMBER, Math.min(LARGEST_NUMBER, value));
+            long factor = 1;
+            for (int i = 0; i < decimals; i++) {
+                factor *= 10;
+            }
+            long scaled = Math.round(value * factor);
+            if (scaled < 0) {
+                out.append('-');
+                scaled = -scaled;
+            }
+            out.append(scaled / factor);
+            long fraction = scaled % factor;
+            if (fraction != 0) {
+                out.append('.');
+                // Ведущие нули дробной части и без завершающих нулей
+                for (long digit = factor / 10; digit > 0 && fraction != 0; digit /= 10) {
+                    out.append((char) ('0' + fraction / digit));
+                    fraction %= digit;
+                }
+            }
+        }
+    }
+
+    // Наибольшее по модулю записываемое число (точки далеко за страницей)
+    private static final double LARGEST_NUMBER = 1e7;
+
+    private final Output output;
+    // Холст изображения - источник метрик шрифтов и конфигурации устройства
+    private final Graphics2D metricsSource;
+    private AffineTransform transform;
+    private Color color = Color.BLACK;
+    private Paint paint = Color.BLACK;
+    private Stroke stroke = new BasicStroke();
+    private Font font = new Font(Font.DIALOG, Font.PLAIN, 12);
+    private Color background = Color.WHITE;
+    private Composite composite;
+    private final RenderingHints hints = new RenderingHints(null);
+    // Область отсечения в координатах устройства (null - без отсечения)
+    private Shape clip;
+    // Контуры букв строятся без округления до пикселов
+    private final FontRenderContext fontContext = new FontRenderContext(null, true, true);
+
+    public VectorGraphics2D(Output output) {
+        this.output = output;
+        this.metricsSource = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+        this.transform = new AffineTransform();
+        this.composite = metricsSource.getComposite();
+    }
+
+    // Копия состояния холста, пишущая в тот же файл (для create)
+    private VectorGraphics2D(VectorGraphics2D source) {
+        this.output = source.output;
+        this.metricsSource = source.metricsSource;
+        this.transform = new AffineTransform(source.transform);
+        this.color = source.color;
+        this.paint = source.paint;
+        this.stroke = source.stroke;
+        this.font = source.font;
+        this.background = source.background;
+        this.composite = source.composite;
+        this.hints.putAll(source.hints);
+        this.clip = source.clip;
+    }
+
+    public Graphics create() {
+        return new VectorGraphics2D(this);
+    }
+
+    public void dispose() {
+    }
+
+    // Рисование фигур
+
+    public void draw(Shape shape) {
+        try {
+            if (stroke instanceof BasicStroke) {
+                output.stroke(shape, transform, (BasicStroke) stroke, color);
+            } else {
+                output.fill(stroke.createStrokedShape(shape), transform, color);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public void fill(Shape shape) {
+        try {
+            output.fill(shape, transform, color);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        draw(new Line2D.Float(x1, y1, x2, y2));
+    }
+
+    public void drawRect(int x, int y, int width, int height) {
+        draw(new Rectangle(x, y, width, height));
+    }
+
+    public void fillRect(int x, int y, int width, int height) {
+        fill(new Rectangle(x, y, width, height));
+    }
+
+    public void clearRect(int x, int y, int width, int height) {
+        Color previous = color;
+        color = background;
+        fillRect(x, y, width, height);
+        color = previous;
+    }
+
+    public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        draw(new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight));
+    }
+
+    public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        fill(new RoundRectangle2D.Float(x, y, width, height, arcWidth, arcHeight));
+    }
+
+    public void drawOval(int x, int y, int width, int height) {
+        draw(new Ellipse2D.Float(x, y, width, height));
+    }
+
+    public void fillOval(int x, int y, int width, int height) {
+        fill(new Ellipse2D.Float(x, y, width, height));
+    }
+
+    public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        draw(new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN));
+    }
+
+    public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        fill(new Arc2D.Float(x, y, width, height, startAngle, arcAngle, Arc2D.PIE));
+    }
+
+    public void drawPolyline(int[] xPoints, int[] yPoints, int count) {
+        if (count <= 0) {
+            return;
+        }
+        Path2D.Float path = new Path2D.Float();
+        path.moveTo(xPoints[0], yPoints[0]);
+        for (int i = 1; i < count; i++) {
+            path.lineTo(xPoints[i], yPoints[i]);
+        }
+        draw(path);
+    }
+
+    public void drawPolygon(int[] xPoints, int[] yPoints, int count) {
+        draw(new Polygon(xPoints, yPoints, count));
+    }
+
+    public void fillPolygon(int[] xPoints, int[] yPoints, int count) {
+        fill(new Polygon(xPoints, yPoints, count));
+    }
+
+    // Текст - контурами букв
+
+    public void drawString(String text, int x, int y) {
+        drawString(text, (float) x, (float) y);
+    }
+
+    public void drawString(String text, float x, float y) {
+        if (!text.isEmpty()) {
+            drawGlyphVector(font.createGlyphVector(fontContext, text), x, y);
+        }
+    }
+
+    public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+        drawString(iterator, (float) x, (float) y);
+    }
+
+    public void drawString(AttributedCharacterIterator iterator, float x, float y) {
+        if (iterator.getEndIndex() > iterator.getBeginIndex()) {
+            fill(new TextLayout(iterator, fontContext).getOutline(AffineTransform.getTranslateInstance(x, y)));
+        }
+    }
+
+    public void drawGlyphVector(GlyphVector glyphs, float x, float y) {
+        fill(glyphs.getOutline(x, y));
+    }
+
+    // Изображения в векторный файл не выводятся
+
+    public boolean drawImage(Image image, AffineTransform xform, ImageObserver observer) {
+        return true;
+    }
+
+    public void drawImage(BufferedImage image, BufferedImageOp op, int x, int y) {
+    }
+
+    public void drawRenderedImage(RenderedImage image, AffineTransform xform) {
+    }
+
+    public void drawRenderableImage(RenderableImage image, AffineTransform xform) {
+    }
+
+    public boolean drawImage(Image image, int x, int y, ImageObserver observer) {
+        return true;
+    }
+
+    public boolean drawImage(Image image, int x, int y, int width, int height, ImageObserver observer) {
+        return true;
+    }
+
+    public boolean drawImage(Image image, int x, int y, Color bgcolor, ImageObserver observer) {
+        return true;
+    }
+
+    public boolean drawImage(Image image, int x, int y, int width, int height, Color bgcolor, ImageObserver observer) {
+        return true;
+    }
+
+    public boolean drawImage(Image image, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2,
+                             ImageObserver observer) {
+        return true;
+    }
+
+    public boolean drawImage(Image image, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2,
+                             Color bgcolor, ImageObserver observer) {
+        return true;
+    }
+
+    public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+    }
+
+    public boolean hit(Rectangle rect, Shape shape, boolean onStroke) {
+        if (onStroke) {
+            shape = stroke.createStrokedShape(shape);
+        }
+        return transform.createTransformedShape(shape).intersects(rect);
+    }
+
+    // Состояние холста
+
+    public GraphicsConfiguration getDeviceConfiguration() {
+        return metricsSource.getDeviceConfiguration();
+    }
+
+    public FontRenderContext getFontRenderContext() {
+        return fontContext;
+    }
+
+    public FontMetrics getFontMetrics(Font f) {
+        return metricsSource.getFontMetrics(f);
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public void setColor(Color c) {
+        if (c != null) {
+            color = c;
+            paint = c;
+        }
+    }
+
+    public Paint getPaint() {
+        return paint;
+    }
+
+    // Градиенты и текстуры не поддерживаются - для них остаётся прежний цвет
+    public void setPaint(Paint p) {
+        if (p instanceof Color) {
+            setColor((Color) p);
+        } else if (p != null) {
+            paint = p;
+        }
+    }
+
+    public void setPaintMode() {
+    }
+
+    public void setXORMode(Color c) {
+    }
+
+    public Font getFont() {
+        return font;
+    }
+
+    public void setFont(Font f) {
+        if (f != null) {
+            font = f;
+        }
+    }
+
+    public Stroke getStroke() {
+        return stroke;
+    }
+
+    public void setStroke(Stroke s) {
+        stroke = s;
+    }
+
+    public Color getBackground() {
+        return background;
+    }
+
+    public void setBackground(Color c) {
+        background = c;
+    }
+
+    public Composite getComposite() {
+        return composite;
+    }
+
+    public void setComposite(Composite c) {
+        composite = c;
+    }
+
+    public void setRenderingHint(RenderingHints.Key key, Object value) {
+        hints.put(key, value);
+    }
+
+    public Object getRenderingHint(RenderingHints.Key key) {
+        return hints.get(key);
+    }
+
+    public void setRenderingHints(Map<?, ?> newHints) {
+        hints.clear();
+        hints.putAll(newHints);
+    }
+
+    public void addRenderingHints(Map<?, ?> newHints) {
+        hints.putAll(newHints);
+    }
+
+    public RenderingHints getRenderingHints() {
+        return (RenderingHints) hints.clone();
+    }
+
+    // Преобразования
+
+    public void translate(int x, int y) {
+        transform.translate(x, y);
+    }
+
+    public void translate(double tx, double ty) {
+        transform.translate(tx, ty);
+    }
+
+    public void rotate(double theta) {
+        transform.rotate(theta);
+    }
+
+    public void rotate(double theta, double x, double y) {
+        transform.rotate(theta, x, y);
+    }
+
+    public void scale(double sx, double sy) {
+        transform.scale(sx, sy);
+    }
+
+    public void shear(double shx, double shy) {
+        transform.shear(shx, shy);
+    }
+
+    public void transform(AffineTransform tx) {
+        transform.concatenate(tx);
+    }
+
+    public void setTransform(AffineTransform tx) {
+        transform = new AffineTransform(tx);
+    }
+
+    public AffineTransform getTransform() {
+        return new AffineTransform(transform);
+    }
+
+    // Отсечение (хранится в координатах устройства)
+
+    public void clip(Shape s) {
+        if (s == null) {
+            clip = null;
+            return;
+        }
+        Shape device = transform.createTransformedShape(s);
+        if (clip == null) {
+            clip = device;
+        } else {
+            Area area = new Area(clip);
+            area.intersect(new Area(device));
+            clip = area;
+        }
+    }
+
+    public void clipRect(int x, int y, int width, int height) {
+        clip(new Rectangle(x, y, width, height));
+    }
+
+    public void setClip(int x, int y, int width, int height) {
+        setClip(new Rectangle(x, y, width, height));
+    }
+
+    public void setClip(Shape s) {
+        clip = s == null ? null : transform.createTransformedShape(s);
+    }
+
+    public Shape getClip() {
+        if (clip == null) {
+            return null;
+        }
+        try {
+            return transform.createInverse().createTransformedShape(clip);
+        } catch (NoninvertibleTransformException ex) {
+            return null;
+        }
+    }
+
+    public Rectangle getClipBounds() {
+        Shape userClip = getClip();
+        return userClip == null ? null : userClip.getBounds();
+    }
+}